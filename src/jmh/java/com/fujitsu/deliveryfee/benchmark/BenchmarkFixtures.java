@@ -0,0 +1,190 @@
+package com.fujitsu.deliveryfee.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fujitsu.deliveryfee.DeliveryFeeCalculatorApplication;
+import com.fujitsu.deliveryfee.config.QuoteLogProperties;
+import com.fujitsu.deliveryfee.config.WeatherProperties;
+import com.fujitsu.deliveryfee.model.WeatherPhenomenon;
+import com.fujitsu.deliveryfee.repository.BaseFeeRuleRepository;
+import com.fujitsu.deliveryfee.repository.CityRepository;
+import com.fujitsu.deliveryfee.repository.ExtraFeeRuleRepository;
+import com.fujitsu.deliveryfee.repository.LeaderLeaseRepository;
+import com.fujitsu.deliveryfee.repository.VehicleTypeRepository;
+import com.fujitsu.deliveryfee.repository.WeatherDataRepository;
+import com.fujitsu.deliveryfee.service.DefaultFeeRules;
+import com.fujitsu.deliveryfee.service.DeliveryFeeMetrics;
+import com.fujitsu.deliveryfee.service.DeliveryFeeService;
+import com.fujitsu.deliveryfee.service.FeeRuleEngine;
+import com.fujitsu.deliveryfee.service.QuoteLog;
+import com.fujitsu.deliveryfee.service.WeatherHistoryService;
+import com.fujitsu.deliveryfee.service.WeatherLookupBulkhead;
+import com.fujitsu.deliveryfee.service.WeatherSnapshotService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+
+/**
+ * Shared fixtures for the benchmarks: realistic weather phenomena, fee rules without a database,
+ * a delivery fee service on an in-memory weather snapshot and an application context backed by an
+ * in-memory H2 database filled with hourly observations.
+ */
+final class BenchmarkFixtures {
+
+    static final List<String> STATIONS = List.of("Tallinn-Harku", "Tartu-Tõravere", "Pärnu");
+
+    // Phenomena reported by the Estonian Environment Agency observation feed
+    static final List<String> PHENOMENA = List.of(
+            "Clear", "Few clouds", "Variable clouds", "Cloudy with clear spells", "Overcast",
+            "Light snow shower", "Moderate snow shower", "Heavy snow shower",
+            "Light shower", "Moderate shower", "Heavy shower",
+            "Light rain", "Moderate rain", "Heavy rain",
+            "Light sleet", "Moderate sleet",
+            "Light snowfall", "Moderate snowfall", "Heavy snowfall", "Blowing snow", "Drifting snow",
+            "Glaze", "Hail", "Mist", "Fog", "Thunder", "Thunderstorm");
+
+    static final LocalDateTime DATA_START = LocalDateTime.of(2023, 1, 1, 0, 15);
+
+    private BenchmarkFixtures() {
+    }
+
+
+    /**
+     * @return a fee rule engine compiled from the default fee rules without a database
+     */
+    static FeeRuleEngine defaultFeeRuleEngine() {
+        FeeRuleEngine feeRuleEngine = new FeeRuleEngine(
+                readOnlyRepository(BaseFeeRuleRepository.class, DefaultFeeRules.baseFeeRules()),
+                readOnlyRepository(ExtraFeeRuleRepository.class, DefaultFeeRules.extraFeeRules()),
+                readOnlyRepository(CityRepository.class, DefaultFeeRules.cities()),
+                readOnlyRepository(VehicleTypeRepository.class, DefaultFeeRules.vehicleTypes()),
+                readOnlyRepository(LeaderLeaseRepository.class, List.of()),
+                new WeatherProperties());
+        feeRuleEngine.reload();
+        return feeRuleEngine;
+    }
+
+
+    /**
+     * Creates a delivery fee service that serves all weather data from the given snapshot and fails on any database access.
+     */
+    static DeliveryFeeService snapshotDeliveryFeeService(WeatherSnapshotService weatherSnapshotService, QuoteLog quoteLog) {
+        WeatherDataRepository weatherDataRepository = readOnlyRepository(WeatherDataRepository.class, List.of());
+        FeeRuleEngine feeRuleEngine = defaultFeeRuleEngine();
+        return new DeliveryFeeService(
+                weatherDataRepository,
+                weatherSnapshotService,
+                new WeatherHistoryService(weatherDataRepository, new WeatherProperties(), feeRuleEngine),
+                feeRuleEngine,
+                new WeatherLookupBulkhead(8, Duration.ofSeconds(2)),
+                new DeliveryFeeMetrics(new SimpleMeterRegistry(), new WeatherProperties(), weatherSnapshotService),
+                quoteLog,
+                new WeatherProperties());
+    }
+
+
+    /**
+     * @return a quote log logging one in the given number of successful quotes
+     */
+    static QuoteLog quoteLog(int sampleRate) {
+        QuoteLogProperties quoteLogProperties = new QuoteLogProperties();
+        quoteLogProperties.setSampleRate(sampleRate);
+        return new QuoteLog(quoteLogProperties, new ObjectMapper());
+    }
+
+
+    /**
+     * Creates a repository that answers findAll and count with the given rows and fails on anything else,
+     * which makes unexpected database access visible in a benchmark.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T readOnlyRepository(Class<T> repositoryType, List<?> rows) {
+        return (T) Proxy.newProxyInstance(repositoryType.getClassLoader(), new Class<?>[]{repositoryType},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findAll" -> rows;
+                    case "count" -> (long) rows.size();
+                    case "toString" -> repositoryType.getSimpleName();
+                    default -> throw new UnsupportedOperationException("Unexpected repository call: " + method.getName());
+                });
+    }
+
+
+    /**
+     * Starts the application without a web server and without scheduled imports against a fresh in-memory H2 database.
+     */
+    static ConfigurableApplicationContext startApplication(String databaseName) {
+        return startApplication(databaseName, Map.of());
+    }
+
+
+    /**
+     * Starts the application against a fresh in-memory H2 database. The given properties override the defaults
+     * of the benchmarks, which run without a web server and without scheduled imports or retention runs.
+     */
+    static ConfigurableApplicationContext startApplication(String databaseName, Map<String, String> properties) {
+        Map<String, String> arguments = new LinkedHashMap<>();
+        arguments.put("spring.main.web-application-type", "none");
+        arguments.put("spring.main.banner-mode", "off");
+        arguments.put("spring.datasource.url", "jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1");
+        arguments.put("weather.feed.cron", "-");
+        arguments.put("weather.feed.import-on-startup", "false");
+        arguments.put("weather.retention.cron", "-");
+        // The benchmark data is older than any staleness bound
+        arguments.put("weather.lookup.max-staleness", "0");
+        arguments.putAll(properties);
+        // Passed as command line arguments, which take precedence over application.properties
+        return new SpringApplication(DeliveryFeeCalculatorApplication.class).run(arguments.entrySet().stream()
+                .map(argument -> "--" + argument.getKey() + "=" + argument.getValue())
+                .toArray(String[]::new));
+    }
+
+
+    /**
+     * Inserts hourly observations for every station, starting at {@link #DATA_START}.
+     *
+     * @param context the application context
+     * @param hoursPerStation the number of hourly observations per station
+     */
+    static void insertHourlyWeatherData(ConfigurableApplicationContext context, int hoursPerStation) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        String sql = "INSERT INTO weather_data (id, station_name, air_temperature, wind_speed, weather_phenomenon, phenomenon_flags, timestamp) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        SplittableRandom random = new SplittableRandom(42);
+        long id = 1;
+        for (String station : STATIONS) {
+            List<Object[]> rows = new ArrayList<>(10_000);
+            for (int hour = 0; hour < hoursPerStation; hour++) {
+                String phenomenon = PHENOMENA.get(random.nextInt(PHENOMENA.size()));
+                rows.add(new Object[]{id++, station, random.nextDouble(-25.0, 30.0), random.nextDouble(0.0, 25.0),
+                        phenomenon, WeatherPhenomenon.classify(phenomenon), DATA_START.plusHours(hour)});
+                if (rows.size() == 10_000) {
+                    jdbcTemplate.batchUpdate(sql, rows);
+                    rows.clear();
+                }
+            }
+            jdbcTemplate.batchUpdate(sql, rows);
+        }
+    }
+
+
+    /**
+     * @return random datetimes within the first given number of hours after {@link #DATA_START}
+     */
+    static LocalDateTime[] randomDateTimes(int count, int hours) {
+        SplittableRandom random = new SplittableRandom(7);
+        LocalDateTime[] dateTimes = new LocalDateTime[count];
+        for (int i = 0; i < count; i++) {
+            dateTimes[i] = DATA_START.plusMinutes(random.nextLong(60L, hours * 60L));
+        }
+        return dateTimes;
+    }
+}
@@ -0,0 +1,81 @@
+package com.fujitsu.deliveryfee.benchmark;
+
+import com.fujitsu.deliveryfee.exception.VehicleUseForbiddenException;
+import com.fujitsu.deliveryfee.model.WeatherData;
+import com.fujitsu.deliveryfee.service.DeliveryFeeService;
+import com.fujitsu.deliveryfee.service.WeatherSnapshotService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks {@link DeliveryFeeService#calculateDeliveryFee} for every city, vehicle type and weather scenario,
+ * with the weather data served from the in-memory snapshot. Forbidden combinations measure the exception path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DeliveryFeeCalculationBenchmark {
+
+    @Param({"Tallinn", "Tartu", "Pärnu"})
+    public String city;
+
+    @Param({"car", "scooter", "bike"})
+    public String vehicleType;
+
+    @Param
+    public WeatherScenario weather;
+
+    private DeliveryFeeService deliveryFeeService;
+    private LocalDateTime dateTime;
+
+    @Setup
+    public void setUp() {
+        LocalDateTime observedAt = BenchmarkFixtures.DATA_START;
+        WeatherSnapshotService weatherSnapshotService = new WeatherSnapshotService();
+        weatherSnapshotService.refresh(BenchmarkFixtures.STATIONS.stream()
+                .map(station -> new WeatherData(station, weather.airTemperature, weather.windSpeed, weather.phenomenon, observedAt))
+                .toList());
+        deliveryFeeService = BenchmarkFixtures.snapshotDeliveryFeeService(weatherSnapshotService, BenchmarkFixtures.quoteLog(100));
+        dateTime = observedAt.plusMinutes(5);
+    }
+
+    @Benchmark
+    public double calculateDeliveryFee() {
+        try {
+            return deliveryFeeService.calculateDeliveryFee(city, vehicleType, dateTime);
+        } catch (VehicleUseForbiddenException e) {
+            return -1.0;
+        }
+    }
+
+
+    public enum WeatherScenario {
+        CLEAR(10.0, 5.0, "Clear"),
+        FREEZING(-15.0, 5.0, "Overcast"),
+        WINDY(5.0, 15.0, "Variable clouds"),
+        STORM(5.0, 25.0, "Cloudy with clear spells"),
+        SNOW(-2.0, 5.0, "Light snow shower"),
+        RAIN(5.0, 5.0, "Moderate rain"),
+        THUNDER(15.0, 5.0, "Thunderstorm");
+
+        private final double airTemperature;
+        private final double windSpeed;
+        private final String phenomenon;
+
+        WeatherScenario(double airTemperature, double windSpeed, String phenomenon) {
+            this.airTemperature = airTemperature;
+            this.windSpeed = windSpeed;
+            this.phenomenon = phenomenon;
+        }
+    }
+}
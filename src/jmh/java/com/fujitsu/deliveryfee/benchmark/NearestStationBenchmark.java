@@ -0,0 +1,73 @@
+package com.fujitsu.deliveryfee.benchmark;
+
+import com.fujitsu.deliveryfee.service.StationIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks the nearest station lookup of quotes by coordinates, with stations spread over the area of the
+ * Baltic states and locations drawn from the same area.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NearestStationBenchmark {
+
+    private static final int LOCATION_COUNT = 1024;
+
+    @Param({"100", "5000"})
+    public int stationCount;
+
+    private StationIndex stationIndex;
+    private double[] latitudes;
+    private double[] longitudes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Map<String, StationIndex.Position> positions = new HashMap<>();
+        for (int i = 0; i < stationCount; i++) {
+            positions.put("Station-" + i, new StationIndex.Position(53.9 + random.nextDouble() * 5.7, 21.0 + random.nextDouble() * 7.3));
+        }
+        stationIndex = StationIndex.build(positions);
+        latitudes = new double[LOCATION_COUNT];
+        longitudes = new double[LOCATION_COUNT];
+        for (int i = 0; i < LOCATION_COUNT; i++) {
+            latitudes[i] = 53.9 + random.nextDouble() * 5.7;
+            longitudes[i] = 21.0 + random.nextDouble() * 7.3;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOCATION_COUNT)
+    public int nearestStation() {
+        int found = 0;
+        for (int i = 0; i < LOCATION_COUNT; i++) {
+            found += stationIndex.findNearest(latitudes[i], longitudes[i], 1, 50).size();
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOCATION_COUNT)
+    public int nearestEightStations() {
+        int found = 0;
+        for (int i = 0; i < LOCATION_COUNT; i++) {
+            found += stationIndex.findNearest(latitudes[i], longitudes[i], 8, 50).size();
+        }
+        return found;
+    }
+}
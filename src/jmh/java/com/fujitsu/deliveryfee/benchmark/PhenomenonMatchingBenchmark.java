@@ -0,0 +1,63 @@
+package com.fujitsu.deliveryfee.benchmark;
+
+import com.fujitsu.deliveryfee.model.WeatherPhenomenon;
+import com.fujitsu.deliveryfee.service.CompiledFeeRules;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks the weather phenomenon handling over all phenomena reported by the observation feed:
+ * the classification done once per imported observation, and the fee lookup done on every quote.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PhenomenonMatchingBenchmark {
+
+    private static final int PHENOMENON_COUNT = BenchmarkFixtures.PHENOMENA.size();
+
+    private CompiledFeeRules rules;
+    private int bikeIndex;
+    private String[] phenomena;
+    private int[] phenomenonFlags;
+
+    @Setup
+    public void setUp() {
+        rules = BenchmarkFixtures.defaultFeeRuleEngine().getRules();
+        bikeIndex = rules.getVehicleTypeIndex("bike");
+        phenomena = BenchmarkFixtures.PHENOMENA.toArray(new String[0]);
+        phenomenonFlags = new int[PHENOMENON_COUNT];
+        for (int i = 0; i < PHENOMENON_COUNT; i++) {
+            phenomenonFlags[i] = WeatherPhenomenon.classify(phenomena[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(27)
+    public int classifyPhenomenon() {
+        int flags = 0;
+        for (int i = 0; i < PHENOMENON_COUNT; i++) {
+            flags ^= WeatherPhenomenon.classify(phenomena[i]);
+        }
+        return flags;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(27)
+    public double phenomenonFee() {
+        double fee = 0.0;
+        for (int i = 0; i < PHENOMENON_COUNT; i++) {
+            fee += rules.getPhenomenonFee(bikeIndex, phenomenonFlags[i]);
+        }
+        return fee;
+    }
+}
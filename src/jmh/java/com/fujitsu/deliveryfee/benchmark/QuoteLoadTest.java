@@ -0,0 +1,117 @@
+package com.fujitsu.deliveryfee.benchmark;
+
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Load test comparing quote throughput and tail latency of the web layer on platform threads and on
+ * virtual threads. For each mode, the application is started with a web server on a random port and one
+ * year of hourly observations, and many concurrent clients request historical quotes, each of which
+ * queries the database through the weather lookup bulkhead.
+ *
+ * Run with ./gradlew loadTest, optionally with -PloadTestClients=<count> and -PloadTestRequests=<count per client>.
+ */
+public final class QuoteLoadTest {
+
+    private static final int HOURS_PER_YEAR = 365 * 24;
+    private static final int DATE_TIME_COUNT = 4096;
+    private static final int WARM_UP_REQUESTS = 2000;
+
+    private QuoteLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int requestsPerClient = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        Result platformThreads = run(false, clients, requestsPerClient);
+        Result virtualThreads = run(true, clients, requestsPerClient);
+        System.out.printf("%d clients x %d requests%n", clients, requestsPerClient);
+        System.out.println(platformThreads.format("platform threads"));
+        System.out.println(virtualThreads.format("virtual threads"));
+    }
+
+    private static Result run(boolean virtualThreads, int clients, int requestsPerClient) throws Exception {
+        try (ConfigurableApplicationContext context = BenchmarkFixtures.startApplication("quoteLoadTest" + virtualThreads, Map.of(
+                "spring.main.web-application-type", "servlet",
+                "server.port", "0",
+                "spring.threads.virtual.enabled", String.valueOf(virtualThreads)))) {
+            BenchmarkFixtures.insertHourlyWeatherData(context, HOURS_PER_YEAR);
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            LocalDateTime[] dateTimes = BenchmarkFixtures.randomDateTimes(DATE_TIME_COUNT, HOURS_PER_YEAR);
+
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                HttpClient httpClient = HttpClient.newBuilder().executor(executor).build();
+                runClients(executor, httpClient, port, dateTimes, 100, WARM_UP_REQUESTS / 100, new long[WARM_UP_REQUESTS]);
+
+                long[] latencies = new long[clients * requestsPerClient];
+                long start = System.nanoTime();
+                int[] statusCounts = runClients(executor, httpClient, port, dateTimes, clients, requestsPerClient, latencies);
+                long elapsedNanos = System.nanoTime() - start;
+                Arrays.sort(latencies);
+                return new Result(latencies, elapsedNanos, statusCounts);
+            }
+        }
+    }
+
+    // Runs the clients to completion and returns the number of responses per status class (index 2 for 2xx, 5 for 5xx, 0 for I/O errors)
+    private static int[] runClients(ExecutorService executor, HttpClient httpClient, int port, LocalDateTime[] dateTimes,
+                                    int clients, int requestsPerClient, long[] latencies) throws Exception {
+        AtomicInteger[] statusCounts = new AtomicInteger[6];
+        Arrays.setAll(statusCounts, i -> new AtomicInteger());
+        List<Future<?>> futures = new ArrayList<>(clients);
+        for (int client = 0; client < clients; client++) {
+            int offset = client * requestsPerClient;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < requestsPerClient; i++) {
+                    LocalDateTime dateTime = dateTimes[(offset + i) & (DATE_TIME_COUNT - 1)];
+                    HttpRequest request = HttpRequest.newBuilder(
+                            URI.create("http://localhost:" + port + "/delivery-fee/Tallinn/car?dateTime=" + dateTime)).build();
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                        statusCounts[response.statusCode() / 100].incrementAndGet();
+                    } catch (IOException e) {
+                        statusCounts[0].incrementAndGet();
+                    }
+                    latencies[offset + i] = System.nanoTime() - start;
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        return Arrays.stream(statusCounts).mapToInt(AtomicInteger::get).toArray();
+    }
+
+
+    private record Result(long[] sortedLatencies, long elapsedNanos, int[] statusCounts) {
+
+        String format(String mode) {
+            // 403 responses are quotes for forbidden weather and count as served
+            return String.format("%-17s %,10.0f req/s   p50 %7.2f ms   p99 %7.2f ms   served %d, rejected (5xx) %d, failed %d",
+                    mode, sortedLatencies.length * 1e9 / elapsedNanos, percentile(0.50), percentile(0.99),
+                    statusCounts[2] + statusCounts[4], statusCounts[5], statusCounts[0]);
+        }
+
+        private double percentile(double percentile) {
+            return sortedLatencies[(int) Math.ceil(percentile * sortedLatencies.length) - 1] / 1e6;
+        }
+    }
+}
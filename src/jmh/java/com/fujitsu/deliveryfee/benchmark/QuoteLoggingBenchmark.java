@@ -0,0 +1,100 @@
+package com.fujitsu.deliveryfee.benchmark;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.joran.JoranConfigurator;
+import ch.qos.logback.core.joran.spi.JoranException;
+import com.fujitsu.deliveryfee.model.WeatherData;
+import com.fujitsu.deliveryfee.service.DeliveryFeeService;
+import com.fujitsu.deliveryfee.service.WeatherSnapshotService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks the logging cost of quotes on four threads, with the logging setup before and after the quote log.
+ * {@code legacyQuoteLogging} writes the two log lines per quote that the fee calculation used to write, and
+ * {@code sampledQuoteLogging} only logs one in a hundred quotes through the quote log. The appenders are
+ * configured from {@code quote-logging-<appenders>.xml}: synchronous file writes as before, asynchronous
+ * appenders as in logback-spring.xml, and asynchronous appenders with the quote audit stream enabled.
+ * The log files are written to a temporary directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class QuoteLoggingBenchmark {
+
+    // Logs as the fee calculation did, so the legacy lines end up in the same appenders
+    private static final Logger legacyLog = LoggerFactory.getLogger(DeliveryFeeService.class);
+
+    @Param({"synchronous", "asynchronous", "asynchronous-audit"})
+    public String appenders;
+
+    private LoggerContext loggerContext;
+    private Path logDirectory;
+    private DeliveryFeeService legacyDeliveryFeeService;
+    private DeliveryFeeService sampledDeliveryFeeService;
+    private LocalDateTime dateTime;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, JoranException {
+        logDirectory = Files.createTempDirectory("quote-logging-benchmark");
+        loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+        loggerContext.reset();
+        loggerContext.putProperty("LOGS", logDirectory.toString());
+        JoranConfigurator configurator = new JoranConfigurator();
+        configurator.setContext(loggerContext);
+        configurator.doConfigure(QuoteLoggingBenchmark.class.getResource("/quote-logging-" + appenders + ".xml"));
+
+        LocalDateTime observedAt = BenchmarkFixtures.DATA_START;
+        WeatherSnapshotService weatherSnapshotService = new WeatherSnapshotService();
+        weatherSnapshotService.refresh(BenchmarkFixtures.STATIONS.stream()
+                .map(station -> new WeatherData(station, 5.0, 5.0, "Clear", observedAt))
+                .toList());
+        // The legacy setup logged no sampled quotes, only the two lines per quote
+        legacyDeliveryFeeService = BenchmarkFixtures.snapshotDeliveryFeeService(weatherSnapshotService, BenchmarkFixtures.quoteLog(Integer.MAX_VALUE));
+        sampledDeliveryFeeService = BenchmarkFixtures.snapshotDeliveryFeeService(weatherSnapshotService, BenchmarkFixtures.quoteLog(100));
+        dateTime = observedAt.plusMinutes(5);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        // Stopping the context flushes the asynchronous appenders before the files are reported
+        loggerContext.stop();
+        try (var files = Files.list(logDirectory)) {
+            files.forEach(file -> System.out.println("Log file " + file.getFileName() + ": " + file.toFile().length() + " bytes"));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Benchmark
+    public double legacyQuoteLogging() {
+        legacyLog.info("Calculating delivery fee for city: {}, vehicle type: {}, dateTime: {}", "Tallinn", "car", dateTime);
+        double totalFee = legacyDeliveryFeeService.calculateDeliveryFee("Tallinn", "car", dateTime);
+        legacyLog.info("Total delivery fee calculated: {} for city: {}, vehicle type: {}, dateTime: {}", totalFee, "Tallinn", "car", dateTime);
+        return totalFee;
+    }
+
+    @Benchmark
+    public double sampledQuoteLogging() {
+        return sampledDeliveryFeeService.calculateDeliveryFee("Tallinn", "car", dateTime);
+    }
+}
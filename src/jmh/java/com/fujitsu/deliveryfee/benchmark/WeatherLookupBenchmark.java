@@ -0,0 +1,103 @@
+package com.fujitsu.deliveryfee.benchmark;
+
+import com.fujitsu.deliveryfee.exception.VehicleUseForbiddenException;
+import com.fujitsu.deliveryfee.model.WeatherObservation;
+import com.fujitsu.deliveryfee.repository.WeatherDataRepository;
+import com.fujitsu.deliveryfee.service.DeliveryFeeService;
+import com.fujitsu.deliveryfee.service.WeatherHistoryService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks historical weather lookups against an in-memory H2 database holding hourly observations
+ * for all stations, through the repository, through the in-memory weather history and through the full
+ * fee calculation, which is answered by the history. The row count ranges from 1k to 10M rows; with the
+ * (stationName, timestamp DESC) index and the binary search of the history, the lookup latency should
+ * stay flat across that range. The largest row count needs a heap of several gigabytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WeatherLookupBenchmark {
+
+    private static final int DATE_TIME_COUNT = 4096;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int rowCount;
+
+    private ConfigurableApplicationContext context;
+    private WeatherDataRepository weatherDataRepository;
+    private WeatherHistoryService weatherHistoryService;
+    private DeliveryFeeService deliveryFeeService;
+    private LocalDateTime[] dateTimes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int hoursPerStation = rowCount / BenchmarkFixtures.STATIONS.size();
+        // The retention covers all inserted observations, which start in the past and may reach far into the future
+        context = BenchmarkFixtures.startApplication("weatherLookupBenchmark" + rowCount, Map.of("weather.history.retention", "36500d"));
+        BenchmarkFixtures.insertHourlyWeatherData(context, hoursPerStation);
+        weatherDataRepository = context.getBean(WeatherDataRepository.class);
+        weatherHistoryService = context.getBean(WeatherHistoryService.class);
+        weatherHistoryService.loadHistory();
+        deliveryFeeService = context.getBean(DeliveryFeeService.class);
+        dateTimes = BenchmarkFixtures.randomDateTimes(DATE_TIME_COUNT, hoursPerStation);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<WeatherObservation> findObservationsAtOrBefore(Cursor cursor) {
+        return weatherDataRepository.findObservationsAtOrBefore("Tallinn-Harku", dateTimes[cursor.next()], PageRequest.of(0, 1));
+    }
+
+    @Benchmark
+    public List<WeatherObservation> findLatestObservations() {
+        return weatherDataRepository.findLatestObservations("Tallinn-Harku", PageRequest.of(0, 1));
+    }
+
+    @Benchmark
+    public WeatherObservation findInWeatherHistory(Cursor cursor) {
+        return weatherHistoryService.findAtOrBefore("Tallinn-Harku", dateTimes[cursor.next()]);
+    }
+
+    @Benchmark
+    public double calculateHistoricalDeliveryFee(Cursor cursor) {
+        try {
+            return deliveryFeeService.calculateDeliveryFee("Tartu", "bike", dateTimes[cursor.next()]);
+        } catch (VehicleUseForbiddenException e) {
+            return -1.0;
+        }
+    }
+
+
+    // Per-thread position in the random datetimes, so threads do not contend on a shared counter
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int position;
+
+        int next() {
+            position = (position + 1) & (DATE_TIME_COUNT - 1);
+            return position;
+        }
+    }
+}
@@ -1,13 +1,18 @@
 package com.fujitsu.deliveryfee;
 
+import com.fujitsu.deliveryfee.config.QuoteLogProperties;
 import com.fujitsu.deliveryfee.config.WeatherProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+
 
 
 /**
@@ -17,7 +22,7 @@ import org.springframework.web.client.RestTemplate;
  */
 @EnableScheduling
 @SpringBootApplication
-@EnableConfigurationProperties(WeatherProperties.class)
+@EnableConfigurationProperties({WeatherProperties.class, QuoteLogProperties.class})
 public class DeliveryFeeCalculatorApplication {
 
 	/**
@@ -29,12 +34,26 @@ public class DeliveryFeeCalculatorApplication {
 
 	/**
 	 * Creates a RestTemplate bean to be used for making HTTP requests.
+	 * Requests are sent by a single JDK HttpClient, which keeps connections to the feed open between imports
+	 * and negotiates HTTP/2 where the server supports it. Connections and reads are bounded by the timeouts
+	 * of the weather feed settings.
 	 *
+	 * @param restTemplateBuilder the builder configured by Spring Boot
+	 * @param weatherProperties the weather settings holding the timeouts
 	 * @return the configured RestTemplate bean
 	 */
 	@Bean
-	public RestTemplate restTemplate() {
-		return new RestTemplate();
+	public RestTemplate restTemplate(RestTemplateBuilder restTemplateBuilder, WeatherProperties weatherProperties) {
+		HttpClient httpClient = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.connectTimeout(weatherProperties.getFeed().getConnectTimeout())
+				.build();
+		JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+		requestFactory.setReadTimeout(weatherProperties.getFeed().getReadTimeout());
+		return restTemplateBuilder
+				.requestFactory(() -> requestFactory)
+				.build();
 	}
 
 }
@@ -0,0 +1,29 @@
+package com.fujitsu.deliveryfee.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+
+/**
+ * Configuration properties class for the quote log, binding properties prefixed with 'quote-log'.
+ * Every failed quote is logged, while successful quotes are only logged with a probability of
+ * one in the sample rate, which keeps logging off the hot path at high request rates.
+ *
+ * Example usage in application.properties:
+ * quote-log.sample-rate=100
+ */
+@Configuration
+@ConfigurationProperties(prefix = "quote-log")
+public class QuoteLogProperties {
+
+    // 1 logs every successful quote
+    private int sampleRate = 100;
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+}
@@ -3,23 +3,41 @@ package com.fujitsu.deliveryfee.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 
 
 /**
  * Configuration properties class for externalizing weather station configuration.
  * This class binds properties prefixed with 'weather' from application.properties file
- * to a list of weather stations. It simplifies the management of weather stations' data,
- * allowing easy updates without code changes.
+ * to a list of weather stations and the settings of the observations feed. It simplifies
+ * the management of weather stations' data, allowing easy updates without code changes.
  *
  * Example usage in application.properties:
  * weather.stations=Tallinn-Harku,Tartu-Tõravere,Pärnu
+ * weather.import-all-stations=true
+ * weather.feed.cron=0 * * * * *
+ * weather.providers[0].name=latvia
+ * weather.providers[0].url=https://example.com/observations.json
+ * weather.lookup.max-concurrent-queries=8
+ * weather.lookup.nearest-station-max-distance-km=50
+ * weather.history.retention=30d
+ * weather.retention.full-resolution=90d
+ * weather.cluster.enabled=true
  */
 @Configuration
 @ConfigurationProperties(prefix = "weather")
 public class WeatherProperties {
 
     private List<String> stations;
+    private boolean importAllStations; // Imports every station of the feeds, e.g. to quote by coordinates anywhere
+    private Feed feed = new Feed();
+    private List<Provider> providers = new ArrayList<>();
+    private Lookup lookup = new Lookup();
+    private History history = new History();
+    private Retention retention = new Retention();
+    private Cluster cluster = new Cluster();
 
     public List<String> getStations() {
         return stations;
@@ -28,4 +46,394 @@ public class WeatherProperties {
     public void setStations(List<String> stations) {
         this.stations = stations;
     }
+
+    public boolean isImportAllStations() {
+        return importAllStations;
+    }
+
+    public void setImportAllStations(boolean importAllStations) {
+        this.importAllStations = importAllStations;
+    }
+
+    public Feed getFeed() {
+        return feed;
+    }
+
+    public void setFeed(Feed feed) {
+        this.feed = feed;
+    }
+
+    public List<Provider> getProviders() {
+        return providers;
+    }
+
+    public void setProviders(List<Provider> providers) {
+        this.providers = providers;
+    }
+
+    public Lookup getLookup() {
+        return lookup;
+    }
+
+    public void setLookup(Lookup lookup) {
+        this.lookup = lookup;
+    }
+
+    public History getHistory() {
+        return history;
+    }
+
+    public void setHistory(History history) {
+        this.history = history;
+    }
+
+    public Retention getRetention() {
+        return retention;
+    }
+
+    public void setRetention(Retention retention) {
+        this.retention = retention;
+    }
+
+    public Cluster getCluster() {
+        return cluster;
+    }
+
+    public void setCluster(Cluster cluster) {
+        this.cluster = cluster;
+    }
+
+
+    /**
+     * Settings of the Estonian observations feed, and of the imports that fetch it and the other weather providers.
+     * The retry and circuit breaker settings apply to every provider.
+     */
+    public static class Feed {
+
+        private String url = "https://ilmateenistus.ee/ilma_andmed/xml/observations.php";
+
+        // Read by the @Scheduled annotation of the importer through the same property key
+        private String cron = "0 15 * * * *";
+
+        // Imports once as soon as the application is ready, instead of waiting for the first scheduled import
+        private boolean importOnStartup = true;
+
+        // Bound every feed request, so a hung upstream never holds the scheduler thread
+        private Duration connectTimeout = Duration.ofSeconds(5);
+        private Duration readTimeout = Duration.ofSeconds(30);
+
+        // Bounds the whole fetch of the feed including retries, the other providers are not waited for longer
+        private Duration timeout = Duration.ofSeconds(60);
+
+        // Failed requests are retried after an exponential backoff with full jitter, capped at the maximum backoff
+        private int maxAttempts = 3;
+        private Duration retryBackoff = Duration.ofSeconds(1);
+        private Duration maxRetryBackoff = Duration.ofSeconds(10);
+
+        // After this many consecutive failed imports, imports are skipped until the open duration has passed
+        private int circuitBreakerFailureThreshold = 5;
+        private Duration circuitBreakerOpenDuration = Duration.ofMinutes(10);
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getCron() {
+            return cron;
+        }
+
+        public void setCron(String cron) {
+            this.cron = cron;
+        }
+
+        public boolean isImportOnStartup() {
+            return importOnStartup;
+        }
+
+        public void setImportOnStartup(boolean importOnStartup) {
+            this.importOnStartup = importOnStartup;
+        }
+
+        public Duration getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public Duration getReadTimeout() {
+            return readTimeout;
+        }
+
+        public void setReadTimeout(Duration readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public Duration getRetryBackoff() {
+            return retryBackoff;
+        }
+
+        public void setRetryBackoff(Duration retryBackoff) {
+            this.retryBackoff = retryBackoff;
+        }
+
+        public Duration getMaxRetryBackoff() {
+            return maxRetryBackoff;
+        }
+
+        public void setMaxRetryBackoff(Duration maxRetryBackoff) {
+            this.maxRetryBackoff = maxRetryBackoff;
+        }
+
+        public int getCircuitBreakerFailureThreshold() {
+            return circuitBreakerFailureThreshold;
+        }
+
+        public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+            this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+        }
+
+        public Duration getCircuitBreakerOpenDuration() {
+            return circuitBreakerOpenDuration;
+        }
+
+        public void setCircuitBreakerOpenDuration(Duration circuitBreakerOpenDuration) {
+            this.circuitBreakerOpenDuration = circuitBreakerOpenDuration;
+        }
+    }
+
+
+    /**
+     * Settings of an additional weather provider serving observations as JSON.
+     */
+    public static class Provider {
+
+        private String name;
+        private String url;
+
+        // The provider is imported by itself on this schedule, null imports it on the schedule of weather.feed.cron
+        private String cron;
+
+        // Bounds the whole fetch including retries
+        private Duration timeout = Duration.ofSeconds(30);
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getCron() {
+            return cron;
+        }
+
+        public void setCron(String cron) {
+            this.cron = cron;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+    }
+
+
+    /**
+     * Settings of the weather lookups that quotes make.
+     */
+    public static class Lookup {
+
+        // Should stay below the connection pool size, so lookups leave connections for the importer
+        private int maxConcurrentQueries = 8;
+        private Duration acquireTimeout = Duration.ofSeconds(2);
+
+        // Quotes fail if the observation is older than this at the quoted time, zero or null allows any age
+        private Duration maxStaleness;
+
+        // Quotes by coordinates use the nearest stations within this distance, and skip up to the given
+        // number of nearer stations without fresh enough data
+        private double nearestStationMaxDistanceKm = 50.0;
+        private int nearestStationCandidates = 8;
+
+        public int getMaxConcurrentQueries() {
+            return maxConcurrentQueries;
+        }
+
+        public void setMaxConcurrentQueries(int maxConcurrentQueries) {
+            this.maxConcurrentQueries = maxConcurrentQueries;
+        }
+
+        public Duration getAcquireTimeout() {
+            return acquireTimeout;
+        }
+
+        public void setAcquireTimeout(Duration acquireTimeout) {
+            this.acquireTimeout = acquireTimeout;
+        }
+
+        public Duration getMaxStaleness() {
+            return maxStaleness;
+        }
+
+        public void setMaxStaleness(Duration maxStaleness) {
+            this.maxStaleness = maxStaleness;
+        }
+
+        public double getNearestStationMaxDistanceKm() {
+            return nearestStationMaxDistanceKm;
+        }
+
+        public void setNearestStationMaxDistanceKm(double nearestStationMaxDistanceKm) {
+            this.nearestStationMaxDistanceKm = nearestStationMaxDistanceKm;
+        }
+
+        public int getNearestStationCandidates() {
+            return nearestStationCandidates;
+        }
+
+        public void setNearestStationCandidates(int nearestStationCandidates) {
+            this.nearestStationCandidates = nearestStationCandidates;
+        }
+    }
+
+
+    /**
+     * Settings of the in-memory weather history that answers backdated quotes without the database.
+     */
+    public static class History {
+
+        // Observations older than this are only looked up in the database, zero disables the in-memory history
+        private Duration retention = Duration.ofDays(30);
+
+        public Duration getRetention() {
+            return retention;
+        }
+
+        public void setRetention(Duration retention) {
+            this.retention = retention;
+        }
+    }
+
+
+    /**
+     * Settings of the job that downsamples and archives old weather data.
+     */
+    public static class Retention {
+
+        // Weather data younger than this is kept at full resolution
+        private Duration fullResolution = Duration.ofDays(90);
+
+        // Read by the @Scheduled annotation of the retention job through the same property key
+        private String cron = "0 30 3 * * *";
+
+        private String archiveDirectory = "weather-archive";
+
+        public Duration getFullResolution() {
+            return fullResolution;
+        }
+
+        public void setFullResolution(Duration fullResolution) {
+            this.fullResolution = fullResolution;
+        }
+
+        public String getCron() {
+            return cron;
+        }
+
+        public void setCron(String cron) {
+            this.cron = cron;
+        }
+
+        public String getArchiveDirectory() {
+            return archiveDirectory;
+        }
+
+        public void setArchiveDirectory(String archiveDirectory) {
+            this.archiveDirectory = archiveDirectory;
+        }
+    }
+
+
+    /**
+     * Settings of running several instances against a shared database, where one leader imports the weather data.
+     */
+    public static class Cluster {
+
+        private boolean enabled = false;
+
+        // Identifies this instance as the holder of the leader lease, a random id is used if not set
+        private String nodeId;
+
+        // The leader renews the lease on every import; another node takes over once it has expired
+        private Duration leaseDuration = Duration.ofMinutes(5);
+
+        // Read by the @Scheduled annotation of the snapshot synchronization through the same property key
+        private Duration syncInterval = Duration.ofSeconds(10);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public void setNodeId(String nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        public Duration getLeaseDuration() {
+            return leaseDuration;
+        }
+
+        public void setLeaseDuration(Duration leaseDuration) {
+            this.leaseDuration = leaseDuration;
+        }
+
+        public Duration getSyncInterval() {
+            return syncInterval;
+        }
+
+        public void setSyncInterval(Duration syncInterval) {
+            this.syncInterval = syncInterval;
+        }
+    }
 }
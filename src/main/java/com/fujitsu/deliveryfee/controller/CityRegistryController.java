@@ -0,0 +1,137 @@
+package com.fujitsu.deliveryfee.controller;
+
+import com.fujitsu.deliveryfee.model.City;
+import com.fujitsu.deliveryfee.model.VehicleType;
+import com.fujitsu.deliveryfee.service.CityRegistryService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+
+
+/**
+ * Rest controller for managing the registry of cities, their weather stations and the vehicle types
+ * that delivery fees can be quoted for. Changes take effect for quotes immediately, without a restart.
+ */
+@Tag(name = "City Registry", description = "Operations for the cities, weather stations and vehicle types of the registry")
+@RestController
+@RequestMapping("/api/registry")
+public class CityRegistryController {
+
+    private final CityRegistryService cityRegistryService;
+
+    @Autowired
+    public CityRegistryController(CityRegistryService cityRegistryService) {
+        this.cityRegistryService = cityRegistryService;
+    }
+
+
+    @Operation(summary = "Get All Cities",
+            description = "Retrieves all cities of the registry with their primary and fallback weather stations.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Successfully retrieved list",
+                            content = @Content(schema = @Schema(implementation = City.class))),
+            })
+    @GetMapping("/cities")
+    public ResponseEntity<List<City>> getAllCities() {
+        return ResponseEntity.ok(cityRegistryService.getAllCities());
+    }
+
+
+    @Operation(summary = "Get City by Name",
+            description = "Retrieves a city of the registry by its name, in any case.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Found the city",
+                            content = @Content(schema = @Schema(implementation = City.class))),
+                    @ApiResponse(responseCode = "404", description = "City not found")
+            })
+    @GetMapping("/cities/{name}")
+    public ResponseEntity<City> getCityByName(@PathVariable String name) {
+        return cityRegistryService.getCityByName(name)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+
+    @Operation(summary = "Save City",
+            description = "Creates or replaces a city of the registry with its primary weather station and comma-separated fallback stations.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "City saved successfully",
+                            content = @Content(schema = @Schema(implementation = City.class))),
+                    @ApiResponse(responseCode = "400", description = "Bad request")
+            })
+    @PutMapping("/cities/{name}")
+    public ResponseEntity<City> saveCity(@PathVariable String name, @RequestBody City cityDetails) {
+        return ResponseEntity.ok(cityRegistryService.saveCity(name, cityDetails));
+    }
+
+
+    @Operation(summary = "Delete City",
+            description = "Deletes a city of the registry, after which fees can no longer be quoted for it.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "City deleted successfully"),
+                    @ApiResponse(responseCode = "404", description = "City not found")
+            })
+    @DeleteMapping("/cities/{name}")
+    public ResponseEntity<Void> deleteCity(@PathVariable String name) {
+        cityRegistryService.deleteCity(name);
+        return ResponseEntity.ok().build();
+    }
+
+
+    @Operation(summary = "Get All Vehicle Types",
+            description = "Retrieves all vehicle types of the registry.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Successfully retrieved list",
+                            content = @Content(schema = @Schema(implementation = VehicleType.class))),
+            })
+    @GetMapping("/vehicle-types")
+    public ResponseEntity<List<VehicleType>> getAllVehicleTypes() {
+        return ResponseEntity.ok(cityRegistryService.getAllVehicleTypes());
+    }
+
+
+    @Operation(summary = "Save Vehicle Type",
+            description = "Adds a vehicle type to the registry. Base fee rules define the cities it is offered in.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Vehicle type saved successfully",
+                            content = @Content(schema = @Schema(implementation = VehicleType.class))),
+                    @ApiResponse(responseCode = "400", description = "Bad request")
+            })
+    @PutMapping("/vehicle-types/{name}")
+    public ResponseEntity<VehicleType> saveVehicleType(@PathVariable String name) {
+        return ResponseEntity.ok(cityRegistryService.saveVehicleType(name));
+    }
+
+
+    @Operation(summary = "Delete Vehicle Type",
+            description = "Deletes a vehicle type of the registry, after which fees can no longer be quoted for it.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Vehicle type deleted successfully"),
+                    @ApiResponse(responseCode = "404", description = "Vehicle type not found")
+            })
+    @DeleteMapping("/vehicle-types/{name}")
+    public ResponseEntity<Void> deleteVehicleType(@PathVariable String name) {
+        cityRegistryService.deleteVehicleType(name);
+        return ResponseEntity.ok().build();
+    }
+
+
+    @Operation(summary = "Reload Registry",
+            description = "Recompiles the registry and fee rules from the database, e.g. after they were edited there directly, "
+                    + "and returns the version of the recompiled rules.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Registry reloaded successfully")
+            })
+    @PostMapping("/reload")
+    public ResponseEntity<Long> reload() {
+        return ResponseEntity.ok(cityRegistryService.reload());
+    }
+}
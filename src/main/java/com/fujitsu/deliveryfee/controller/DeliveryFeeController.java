@@ -1,50 +1,154 @@
 package com.fujitsu.deliveryfee.controller;
 
 import com.fujitsu.deliveryfee.dto.DeliveryFeeRequest;
+import com.fujitsu.deliveryfee.dto.DeliveryFeeResult;
+import com.fujitsu.deliveryfee.dto.FeeMatrixResponse;
+import com.fujitsu.deliveryfee.service.FeeMatrix;
+import com.fujitsu.deliveryfee.service.FeeQuote;
+import com.fujitsu.deliveryfee.service.QuoteCachePolicy;
 import com.fujitsu.deliveryfee.service.DeliveryFeeService;
+import com.fujitsu.deliveryfee.service.DeliveryFeeStreamService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
+import java.util.List;
 
 
 /**
  * Rest controller for calculating delivery fees.
  * Provides endpoints to calculate delivery fees based on city, vehicle type, and optionally, time.
+ * Active on the servlet stack; {@link ReactiveDeliveryFeeController} serves the same endpoints on the reactive stack.
  */
 @Tag(name = "Delivery Fee Calculator", description = "Endpoints for calculating delivery fees based on various conditions.")
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/delivery-fee")
 public class DeliveryFeeController {
 
+    static final int MAX_BATCH_SIZE = 10_000;
+
     private final DeliveryFeeService deliveryFeeService;
+    private final DeliveryFeeStreamService deliveryFeeStreamService;
+    private final QuoteCachePolicy quoteCachePolicy;
 
     @Autowired
-    public DeliveryFeeController(DeliveryFeeService deliveryFeeService) {
+    public DeliveryFeeController(DeliveryFeeService deliveryFeeService, DeliveryFeeStreamService deliveryFeeStreamService,
+                                 QuoteCachePolicy quoteCachePolicy) {
         this.deliveryFeeService = deliveryFeeService;
+        this.deliveryFeeStreamService = deliveryFeeStreamService;
+        this.quoteCachePolicy = quoteCachePolicy;
     }
 
 
 
     @Operation(summary = "Calculate Delivery Fee",
-            description = "Calculates the delivery fee based on city, vehicle type, and an optional date-time parameter.",
+            description = "Calculates the delivery fee based on city, vehicle type, and an optional date-time parameter. "
+                    + "The ETag and Last-Modified headers identify the weather observation and fee of the answer, which may "
+                    + "be cached until the next scheduled weather import.",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Delivery fee calculated successfully",
                             content = @Content(schema = @Schema(implementation = Double.class))),
+                    @ApiResponse(responseCode = "304", description = "The cached fee is still current"),
                     @ApiResponse(responseCode = "404", description = "City or vehicle type not supported")
             })
     @GetMapping("/{city}/{vehicleType}")
     public ResponseEntity<Double> calculateDeliveryFee(@PathVariable String city, @PathVariable String vehicleType,
-                                                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateTime) {
-        double fee = deliveryFeeService.calculateDeliveryFee(city, vehicleType, dateTime != null ? dateTime : LocalDateTime.now());
-        return ResponseEntity.ok(fee);
+                                                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateTime,
+                                                       WebRequest webRequest) {
+        FeeQuote quote = deliveryFeeService.quoteDeliveryFee(city, vehicleType, dateTime);
+        // Sets the 304 status and the validator headers if the client's copy is current
+        if (webRequest.checkNotModified(quote.eTag(), quote.lastModified().toEpochMilli())) {
+            return notModified();
+        }
+        return ResponseEntity.ok()
+                .eTag(quote.eTag())
+                .lastModified(quote.lastModified())
+                .cacheControl(quoteCachePolicy.getCacheControl())
+                .body(quote.fee());
+    }
+
+
+
+    @Operation(summary = "Calculate Delivery Fee by Coordinates",
+            description = "Calculates the delivery fee for a location given by its latitude and longitude, using the weather of the "
+                    + "nearest reporting station, or interpolated from the given number of nearest stations. The base fee is that "
+                    + "of the city of the nearest station belonging to a supported city.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Delivery fee calculated successfully",
+                            content = @Content(schema = @Schema(implementation = Double.class))),
+                    @ApiResponse(responseCode = "304", description = "The cached fee is still current"),
+                    @ApiResponse(responseCode = "400", description = "Invalid coordinates or no supported city nearby"),
+                    @ApiResponse(responseCode = "404", description = "No weather data available near the location")
+            })
+    @GetMapping("/nearest")
+    public ResponseEntity<Double> calculateDeliveryFeeNear(@RequestParam double latitude, @RequestParam double longitude,
+                                                           @RequestParam String vehicleType,
+                                                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateTime,
+                                                           @RequestParam(defaultValue = "1") int stations,
+                                                           WebRequest webRequest) {
+        FeeQuote quote = deliveryFeeService.quoteDeliveryFeeNear(latitude, longitude, vehicleType, dateTime, stations);
+        if (webRequest.checkNotModified(quote.eTag(), quote.lastModified().toEpochMilli())) {
+            return notModified();
+        }
+        return ResponseEntity.ok()
+                .eTag(quote.eTag())
+                .lastModified(quote.lastModified())
+                .cacheControl(quoteCachePolicy.getCacheControl())
+                .body(quote.fee());
+    }
+
+
+
+    @Operation(summary = "Get Delivery Fee Matrix",
+            description = "Returns the current delivery fee or error of every city and vehicle type, based on the latest weather. "
+                    + "The response carries an ETag, so clients can revalidate a cached matrix with If-None-Match and price locally. "
+                    + "The ETag only changes with the fees; Last-Modified is the time of the newest weather observation.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Fee matrix returned",
+                            content = @Content(schema = @Schema(implementation = FeeMatrixResponse.class))),
+                    @ApiResponse(responseCode = "304", description = "The cached matrix with the given ETag is still current")
+            })
+    @GetMapping("/matrix")
+    public ResponseEntity<FeeMatrixResponse> getFeeMatrix(WebRequest webRequest) {
+        FeeMatrix matrix = deliveryFeeService.getFeeMatrix();
+        // Sets the 304 status and the ETag header if the client's copy is current
+        if (webRequest.checkNotModified(matrix.getETag())) {
+            return notModified();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(matrix.getETag())
+                .cacheControl(quoteCachePolicy.getCacheControl());
+        // The ETag only changes with the fees, the time of the newest weather they are based on is reported separately
+        if (matrix.getLastModified() != null) {
+            response.lastModified(matrix.getLastModified());
+        }
+        return response.body(new FeeMatrixResponse(matrix.getObservedAtByCity(), matrix.getResults()));
+    }
+
+
+
+    // A 304 carries the Cache-Control of the 200 it stands for, so that caches renew the max-age of their copy;
+    // checkNotModified has already set the validator headers
+    private <T> ResponseEntity<T> notModified() {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .cacheControl(quoteCachePolicy.getCacheControl())
+                .build();
     }
 
 
@@ -63,4 +167,38 @@ public class DeliveryFeeController {
     }
 
 
+
+    @Operation(summary = "Calculate Delivery Fees in Batch",
+            description = "Calculates the delivery fees for an array of requests in a single call. Each result holds either the fee "
+                    + "or an error code, so a failing request does not fail the whole batch.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Batch processed, results are in the order of the requests",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = DeliveryFeeResult.class)))),
+                    @ApiResponse(responseCode = "400", description = "Invalid request body or too many requests in the batch")
+            })
+    @PostMapping("/batch")
+    public ResponseEntity<List<DeliveryFeeResult>> calculateDeliveryFeeBatch(@RequestBody List<DeliveryFeeRequest> requests) {
+        if (requests.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch size " + requests.size() + " exceeds the maximum of " + MAX_BATCH_SIZE);
+        }
+        return ResponseEntity.ok(deliveryFeeService.calculateDeliveryFees(requests));
+    }
+
+
+
+    @Operation(summary = "Calculate Delivery Fees as a Stream",
+            description = "Calculates delivery fees for newline-delimited JSON requests (one request per line) and streams "
+                    + "one result per line back in the same order. Intended for bulk repricing of large request sets.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Requests streamed, results are in the order of the requests",
+                            content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                                    schema = @Schema(implementation = DeliveryFeeResult.class)))
+            })
+    @PostMapping(path = "/stream", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void calculateDeliveryFeeStream(InputStream requestBody, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        deliveryFeeStreamService.streamDeliveryFees(requestBody, response.getOutputStream());
+    }
+
+
 }
@@ -0,0 +1,189 @@
+package com.fujitsu.deliveryfee.controller;
+
+import com.fujitsu.deliveryfee.dto.DeliveryFeeRequest;
+import com.fujitsu.deliveryfee.dto.DeliveryFeeResult;
+import com.fujitsu.deliveryfee.dto.FeeMatrixResponse;
+import com.fujitsu.deliveryfee.service.FeeMatrix;
+import com.fujitsu.deliveryfee.service.FeeQuote;
+import com.fujitsu.deliveryfee.service.QuoteCachePolicy;
+import com.fujitsu.deliveryfee.service.DeliveryFeeService;
+import com.fujitsu.deliveryfee.service.DeliveryFeeStreamService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+
+/**
+ * Reactive rest controller for calculating delivery fees, serving the same endpoints as {@link DeliveryFeeController}
+ * on the WebFlux stack. It is active when the application runs as a reactive web application, i.e. with
+ * {@code spring.main.web-application-type=reactive}.
+ *
+ * The fees are calculated by the same {@link DeliveryFeeService}. Quotes that can be answered from the in-memory
+ * weather snapshot are calculated directly on the event loop; quotes that need a database lookup are offloaded
+ * to the bounded elastic scheduler, so a blocking query never stalls an event loop thread.
+ */
+@Tag(name = "Delivery Fee Calculator", description = "Endpoints for calculating delivery fees based on various conditions.")
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/delivery-fee")
+public class ReactiveDeliveryFeeController {
+
+    private final DeliveryFeeService deliveryFeeService;
+    private final DeliveryFeeStreamService deliveryFeeStreamService;
+    private final QuoteCachePolicy quoteCachePolicy;
+
+    @Autowired
+    public ReactiveDeliveryFeeController(DeliveryFeeService deliveryFeeService, DeliveryFeeStreamService deliveryFeeStreamService,
+                                         QuoteCachePolicy quoteCachePolicy) {
+        this.deliveryFeeService = deliveryFeeService;
+        this.deliveryFeeStreamService = deliveryFeeStreamService;
+        this.quoteCachePolicy = quoteCachePolicy;
+    }
+
+
+
+    @Operation(summary = "Calculate Delivery Fee",
+            description = "Calculates the delivery fee based on city, vehicle type, and an optional date-time parameter. "
+                    + "The ETag and Last-Modified headers identify the weather observation and fee of the answer, which may "
+                    + "be cached until the next scheduled weather import.")
+    @GetMapping("/{city}/{vehicleType}")
+    public Mono<ResponseEntity<Double>> calculateDeliveryFee(@PathVariable String city, @PathVariable String vehicleType,
+                                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateTime,
+                                                             ServerWebExchange exchange) {
+        Mono<FeeQuote> quote = Mono.fromCallable(() -> deliveryFeeService.quoteDeliveryFee(city, vehicleType, dateTime));
+        if (!deliveryFeeService.isCalculatedInMemory(city, dateTime)) {
+            quote = quote.subscribeOn(Schedulers.boundedElastic());
+        }
+        return quote.flatMap(feeQuote -> {
+            // Sets the 304 status and the validator headers if the client's copy is current
+            if (exchange.checkNotModified(feeQuote.eTag(), feeQuote.lastModified())) {
+                return Mono.just(notModified());
+            }
+            return Mono.just(ResponseEntity.ok()
+                    .eTag(feeQuote.eTag())
+                    .lastModified(feeQuote.lastModified())
+                    .cacheControl(quoteCachePolicy.getCacheControl())
+                    .body(feeQuote.fee()));
+        });
+    }
+
+
+
+    @Operation(summary = "Calculate Delivery Fee by Coordinates",
+            description = "Calculates the delivery fee for a location given by its latitude and longitude, using the weather of the "
+                    + "nearest reporting station, or interpolated from the given number of nearest stations. The base fee is that "
+                    + "of the city of the nearest station belonging to a supported city.")
+    @GetMapping("/nearest")
+    public Mono<ResponseEntity<Double>> calculateDeliveryFeeNear(@RequestParam double latitude, @RequestParam double longitude,
+                                                                 @RequestParam String vehicleType,
+                                                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateTime,
+                                                                 @RequestParam(defaultValue = "1") int stations,
+                                                                 ServerWebExchange exchange) {
+        Mono<FeeQuote> quote = Mono.fromCallable(() -> deliveryFeeService.quoteDeliveryFeeNear(latitude, longitude, vehicleType, dateTime, stations));
+        // The latest weather of every station is in the snapshot, older weather may need database lookups
+        if (dateTime != null) {
+            quote = quote.subscribeOn(Schedulers.boundedElastic());
+        }
+        return quote.flatMap(feeQuote -> {
+            if (exchange.checkNotModified(feeQuote.eTag(), feeQuote.lastModified())) {
+                return Mono.just(notModified());
+            }
+            return Mono.just(ResponseEntity.ok()
+                    .eTag(feeQuote.eTag())
+                    .lastModified(feeQuote.lastModified())
+                    .cacheControl(quoteCachePolicy.getCacheControl())
+                    .body(feeQuote.fee()));
+        });
+    }
+
+
+
+    @Operation(summary = "Get Delivery Fee Matrix",
+            description = "Returns the current delivery fee or error of every city and vehicle type, based on the latest weather. "
+                    + "The response carries an ETag, so clients can revalidate a cached matrix with If-None-Match and price locally. "
+                    + "The ETag only changes with the fees; Last-Modified is the time of the newest weather observation.")
+    @GetMapping("/matrix")
+    public Mono<ResponseEntity<FeeMatrixResponse>> getFeeMatrix(ServerWebExchange exchange) {
+        // The matrix is built in memory, so this never blocks the event loop
+        FeeMatrix matrix = deliveryFeeService.getFeeMatrix();
+        if (exchange.checkNotModified(matrix.getETag())) {
+            return Mono.just(notModified());
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(matrix.getETag())
+                .cacheControl(quoteCachePolicy.getCacheControl());
+        // The ETag only changes with the fees, the time of the newest weather they are based on is reported separately
+        if (matrix.getLastModified() != null) {
+            response.lastModified(matrix.getLastModified());
+        }
+        return Mono.just(response.body(new FeeMatrixResponse(matrix.getObservedAtByCity(), matrix.getResults())));
+    }
+
+
+
+    // A 304 carries the Cache-Control of the 200 it stands for, so that caches renew the max-age of their copy;
+    // checkNotModified has already set the validator headers
+    private <T> ResponseEntity<T> notModified() {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .cacheControl(quoteCachePolicy.getCacheControl())
+                .build();
+    }
+
+
+
+    @Operation(summary = "Calculate Delivery Fee with Request Body",
+            description = "Calculates the delivery fee based on provided request body containing city, vehicle type, and optional date-time.")
+    @PostMapping
+    public Mono<Double> calculateDeliveryFeePost(@RequestBody Mono<DeliveryFeeRequest> request) {
+        return request.flatMap(body -> quote(body.getCity(), body.getVehicleType(), body.getDateTime()));
+    }
+
+
+
+    @Operation(summary = "Calculate Delivery Fees in Batch",
+            description = "Calculates the delivery fees for an array of requests in a single call. Each result holds either the fee "
+                    + "or an error code, so a failing request does not fail the whole batch.")
+    @PostMapping("/batch")
+    public Mono<List<DeliveryFeeResult>> calculateDeliveryFeeBatch(@RequestBody Mono<List<DeliveryFeeRequest>> requests) {
+        return requests.flatMap(batch -> {
+            if (batch.size() > DeliveryFeeController.MAX_BATCH_SIZE) {
+                return Mono.error(new IllegalArgumentException(
+                        "Batch size " + batch.size() + " exceeds the maximum of " + DeliveryFeeController.MAX_BATCH_SIZE));
+            }
+            return Mono.fromCallable(() -> deliveryFeeService.calculateDeliveryFees(batch))
+                    .subscribeOn(Schedulers.boundedElastic());
+        });
+    }
+
+
+
+    @Operation(summary = "Calculate Delivery Fees as a Stream",
+            description = "Calculates delivery fees for newline-delimited JSON requests (one request per line) and streams "
+                    + "one result per line back in the same order. Malformed lines produce an INVALID_REQUEST result instead of "
+                    + "failing the stream. Intended for bulk repricing of large request sets.")
+    @PostMapping(path = "/stream", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<DeliveryFeeResult> calculateDeliveryFeeStream(@RequestBody Flux<String> lines) {
+        // The body is decoded line by line, so that each line is parsed on its own like on the servlet stack
+        return deliveryFeeStreamService.streamDeliveryFees(lines);
+    }
+
+
+    // Helper method to calculate a single fee, offloading it if it needs a database lookup
+    private Mono<Double> quote(String city, String vehicleType, LocalDateTime dateTime) {
+        Mono<Double> fee = Mono.fromCallable(() -> deliveryFeeService.calculateDeliveryFee(city, vehicleType, dateTime));
+        return deliveryFeeService.isCalculatedInMemory(city, dateTime) ? fee : fee.subscribeOn(Schedulers.boundedElastic());
+    }
+}
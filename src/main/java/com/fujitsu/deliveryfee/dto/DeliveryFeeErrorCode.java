@@ -0,0 +1,15 @@
+package com.fujitsu.deliveryfee.dto;
+
+
+/**
+ * Error codes reported for single requests of a batch delivery fee calculation.
+ * Each code corresponds to the exception that the single request endpoints respond with.
+ */
+public enum DeliveryFeeErrorCode {
+    INVALID_REQUEST,
+    UNSUPPORTED_CITY,
+    UNSUPPORTED_VEHICLE_TYPE,
+    VEHICLE_USE_FORBIDDEN,
+    WEATHER_DATA_UNAVAILABLE,
+    SERVICE_BUSY
+}
@@ -0,0 +1,43 @@
+package com.fujitsu.deliveryfee.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+
+/**
+ * A data transfer object (DTO) representing the result of a single delivery fee calculation
+ * within a batch. A result holds either the calculated fee or an error code with a message
+ * describing why the fee could not be calculated.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DeliveryFeeResult {
+    private final Double fee;
+    private final DeliveryFeeErrorCode errorCode;
+    private final String errorMessage;
+
+
+    private DeliveryFeeResult(Double fee, DeliveryFeeErrorCode errorCode, String errorMessage) {
+        this.fee = fee;
+        this.errorCode = errorCode;
+        this.errorMessage = errorMessage;
+    }
+
+    public static DeliveryFeeResult success(double fee) {
+        return new DeliveryFeeResult(fee, null, null);
+    }
+
+    public static DeliveryFeeResult failure(DeliveryFeeErrorCode errorCode, String errorMessage) {
+        return new DeliveryFeeResult(null, errorCode, errorMessage);
+    }
+
+    public Double getFee() {
+        return fee;
+    }
+
+    public DeliveryFeeErrorCode getErrorCode() {
+        return errorCode;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+}
@@ -0,0 +1,30 @@
+package com.fujitsu.deliveryfee.dto;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+
+/**
+ * A data transfer object (DTO) representing the current delivery fee of every city and vehicle type.
+ * The fees are keyed by city and then by vehicle type, each holding either the fee or an error code,
+ * and are based on the weather observed at the timestamp given per city. Clients may cache the matrix
+ * and price quotes for the latest weather locally until its ETag changes.
+ */
+public class FeeMatrixResponse {
+    private final Map<String, LocalDateTime> observedAt;
+    private final Map<String, Map<String, DeliveryFeeResult>> fees;
+
+
+    public FeeMatrixResponse(Map<String, LocalDateTime> observedAt, Map<String, Map<String, DeliveryFeeResult>> fees) {
+        this.observedAt = observedAt;
+        this.fees = fees;
+    }
+
+    public Map<String, LocalDateTime> getObservedAt() {
+        return observedAt;
+    }
+
+    public Map<String, Map<String, DeliveryFeeResult>> getFees() {
+        return fees;
+    }
+}
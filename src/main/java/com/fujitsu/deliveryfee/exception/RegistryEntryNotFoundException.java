@@ -0,0 +1,12 @@
+package com.fujitsu.deliveryfee.exception;
+
+
+
+/**
+ * Custom exception thrown when a city or vehicle type is not found in the registry by its name
+ */
+public class RegistryEntryNotFoundException extends RuntimeException {
+    public RegistryEntryNotFoundException(String kind, String name) {
+        super(kind + " not found in the registry: " + name);
+    }
+}
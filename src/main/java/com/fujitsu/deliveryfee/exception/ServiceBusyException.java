@@ -0,0 +1,11 @@
+package com.fujitsu.deliveryfee.exception;
+
+/**
+ * Custom exception thrown when a request cannot be served because the resources it needs,
+ * such as database connections for weather lookups, stay exhausted for too long.
+ */
+public class ServiceBusyException extends RuntimeException{
+    public ServiceBusyException(String message) {
+        super(message);
+    }
+}
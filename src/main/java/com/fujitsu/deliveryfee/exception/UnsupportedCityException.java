@@ -9,4 +9,8 @@ public class UnsupportedCityException extends RuntimeException{
     public UnsupportedCityException(String city) {
         super("Unsupported city: " + city);
     }
+
+    public UnsupportedCityException(double latitude, double longitude) {
+        super("No supported city near " + latitude + ", " + longitude);
+    }
 }
@@ -0,0 +1,124 @@
+package com.fujitsu.deliveryfee.integration;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * Streaming reader for the generic JSON observations feed of additional weather providers:
+ *
+ * {"timestamp": 1711615085, "stations": [{"name": "Riga", "wmocode": "26422", "timestamp": 1711615085,
+ * "latitude": 56.95, "longitude": 24.12, "airtemperature": -2.5, "windspeed": 4.7, "phenomenon": "Light snow shower"}]}
+ *
+ * The field names follow the XML feed, timestamps are epoch seconds, and the timestamp of a station overrides the
+ * one of the feed. The feed is read with the Jackson streaming parser directly from the response stream, and only
+ * stations with a configured name are materialized as {@link StationData}, unless all stations are requested.
+ * Unknown fields are ignored.
+ */
+public final class JsonObservationsReader {
+
+    // Configured once, creating parsers from a configured factory is thread-safe
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .disable(StreamReadFeature.AUTO_CLOSE_SOURCE)
+            .build();
+
+    private JsonObservationsReader() {
+    }
+
+
+    /**
+     * Reads the observation time and the stations with the given names from a JSON observations feed.
+     *
+     * @param inputStream the observations JSON, which is not closed by this method
+     * @param stationNames the names of the stations to read, or null to read all stations
+     * @return the observations of the feed
+     * @throws IOException if the JSON is malformed or a value has the wrong type
+     */
+    public static Observations read(InputStream inputStream, Set<String> stationNames) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(inputStream)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            LocalDateTime observedAt = null;
+            List<StationData> stations = new ArrayList<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "timestamp" -> observedAt = parseTimestamp(parser);
+                    case "stations" -> {
+                        expect(parser, parser.currentToken(), JsonToken.START_ARRAY);
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            StationData station = readStation(parser, stationNames);
+                            if (station != null) {
+                                stations.add(station);
+                            }
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            return new Observations(observedAt, stations);
+        }
+    }
+
+    // Helper method to read the fields of a station, returns null if the station is not wanted
+    private static StationData readStation(JsonParser parser, Set<String> stationNames) throws IOException {
+        expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+        StationData station = new StationData();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "name" -> station.setName(parser.getValueAsString());
+                case "wmocode" -> station.setWmoCode(parser.getValueAsString());
+                case "timestamp" -> station.setObservedAt(parseTimestamp(parser));
+                case "airtemperature" -> station.setAirTemperature(parseDouble(parser));
+                case "windspeed" -> station.setWindSpeed(parseDouble(parser));
+                case "latitude" -> station.setLatitude(parseDouble(parser));
+                case "longitude" -> station.setLongitude(parseDouble(parser));
+                case "phenomenon" -> station.setWeatherPhenomenon(parser.getValueAsString());
+                default -> parser.skipChildren();
+            }
+        }
+        return station.getName() != null && (stationNames == null || stationNames.contains(station.getName())) ? station : null;
+    }
+
+    // Helper method to parse a number, null values are read as null
+    private static Double parseDouble(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!parser.currentToken().isNumeric()) {
+            throw new JsonParseException(parser, "Expected a number but found " + parser.getText());
+        }
+        return parser.getDoubleValue();
+    }
+
+    // Helper method to parse a timestamp in epoch seconds, null values are read as null
+    private static LocalDateTime parseTimestamp(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (parser.currentToken() != JsonToken.VALUE_NUMBER_INT) {
+            throw new JsonParseException(parser, "Expected a timestamp in epoch seconds but found " + parser.getText());
+        }
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(parser.getLongValue()), ZoneId.systemDefault());
+    }
+
+    private static void expect(JsonParser parser, JsonToken token, JsonToken expected) throws JsonParseException {
+        if (token != expected) {
+            throw new JsonParseException(parser, "Expected " + expected + " but found " + token);
+        }
+    }
+}
@@ -1,25 +1,16 @@
 package com.fujitsu.deliveryfee.integration;
 
-import jakarta.xml.bind.annotation.XmlElement;
-import jakarta.xml.bind.annotation.XmlRootElement;
-
+import java.time.LocalDateTime;
 import java.util.List;
 
-@XmlRootElement(name = "observations")
-public class Observations {
-    private List<StationData> stations;
-
-
-    public Observations() {
-    }
-
-
-    @XmlElement(name = "station")
-    public void setStations(List<StationData> stations) {
-        this.stations = stations;
-    }
 
-    public List<StationData> getStations() {
-        return stations;
-    }
+/**
+ * The contents of an observations feed that are relevant for the import, as read by {@link ObservationsReader}
+ * or {@link JsonObservationsReader}.
+ *
+ * @param observedAt the observation time of the feed, e.g. taken from the timestamp attribute of the root element
+ *                   of the XML feed, or null if the feed does not define it
+ * @param stations the data of the configured stations, in feed order
+ */
+public record Observations(LocalDateTime observedAt, List<StationData> stations) {
 }
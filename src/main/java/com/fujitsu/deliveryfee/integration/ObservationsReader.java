@@ -0,0 +1,134 @@
+package com.fujitsu.deliveryfee.integration;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * Streaming reader for the observations XML feed of the Estonian Environment Agency.
+ * The feed is read with StAX directly from the response stream, and only stations with a
+ * configured name are materialized as {@link StationData}; all other stations are skipped
+ * as soon as their name has been read, unless all stations are requested. If the observation time of the feed has already been
+ * imported, no station is read at all.
+ */
+public final class ObservationsReader {
+
+    // Configured once, creating readers from a configured factory is thread-safe
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+    private ObservationsReader() {
+    }
+
+
+    /**
+     * Reads the observation time and the stations with the given names from the observations feed.
+     *
+     * @param inputStream the observations XML, which is not closed by this method
+     * @param stationNames the names of the stations to read, or null to read all stations
+     * @param importedObservedAt the observation time of the last imported feed, or null
+     * @return the observations of the feed, or null if its observation time equals the given one
+     * @throws XMLStreamException if the XML is malformed or a numeric value cannot be parsed
+     */
+    public static Observations read(InputStream inputStream, Set<String> stationNames, LocalDateTime importedObservedAt)
+            throws XMLStreamException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+        try {
+            reader.nextTag(); // The root element
+            LocalDateTime observedAt = parseTimestamp(reader, reader.getAttributeValue(null, "timestamp"));
+            if (observedAt != null && observedAt.equals(importedObservedAt)) {
+                return null;
+            }
+
+            List<StationData> stations = new ArrayList<>();
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && "station".equals(reader.getLocalName())) {
+                    StationData station = readStation(reader, stationNames);
+                    if (station != null) {
+                        stations.add(station);
+                    }
+                }
+            }
+            return new Observations(observedAt, stations);
+        } finally {
+            reader.close();
+        }
+    }
+
+    // Helper method to read the child elements of a station, returns null if the station is not wanted
+    private static StationData readStation(XMLStreamReader reader, Set<String> stationNames) throws XMLStreamException {
+        StationData station = new StationData();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (reader.getLocalName()) {
+                case "name" -> {
+                    station.setName(reader.getElementText());
+                    if (stationNames != null && !stationNames.contains(station.getName())) {
+                        skipElement(reader);
+                        return null;
+                    }
+                }
+                case "wmocode" -> station.setWmoCode(reader.getElementText());
+                case "airtemperature" -> station.setAirTemperature(parseDouble(reader, reader.getElementText()));
+                case "windspeed" -> station.setWindSpeed(parseDouble(reader, reader.getElementText()));
+                case "phenomenon" -> station.setWeatherPhenomenon(reader.getElementText());
+                case "latitude" -> station.setLatitude(parseDouble(reader, reader.getElementText()));
+                case "longitude" -> station.setLongitude(parseDouble(reader, reader.getElementText()));
+                default -> skipElement(reader);
+            }
+        }
+        return station.getName() != null ? station : null;
+    }
+
+    // Helper method to skip all events up to and including the end of the currently open element
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    // Stations report missing values as empty elements
+    private static Double parseDouble(XMLStreamReader reader, String text) throws XMLStreamException {
+        if (text.isBlank()) {
+            return null;
+        }
+        try {
+            return Double.valueOf(text.trim());
+        } catch (NumberFormatException e) {
+            throw new XMLStreamException("Invalid numeric value: " + text, reader.getLocation(), e);
+        }
+    }
+
+    // The feed timestamp is in epoch seconds, it is converted to local time like all other datetimes of the application
+    private static LocalDateTime parseTimestamp(XMLStreamReader reader, String timestamp) throws XMLStreamException {
+        if (timestamp == null || timestamp.isBlank()) {
+            return null;
+        }
+        try {
+            return LocalDateTime.ofInstant(Instant.ofEpochSecond(Long.parseLong(timestamp.trim())), ZoneId.systemDefault());
+        } catch (NumberFormatException e) {
+            throw new XMLStreamException("Invalid feed timestamp: " + timestamp, reader.getLocation(), e);
+        }
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
@@ -1,15 +1,21 @@
 package com.fujitsu.deliveryfee.integration;
 
-import jakarta.xml.bind.annotation.XmlElement;
-import jakarta.xml.bind.annotation.XmlRootElement;
+import java.time.LocalDateTime;
 
-@XmlRootElement(name = "station")
+
+/**
+ * The data of a single station in an observations feed, as read by {@link ObservationsReader} or {@link JsonObservationsReader}.
+ * Stations observed at another time than the feed carry their own observation time.
+ */
 public class StationData {
     private String name;
     private String wmoCode;
     private Double airTemperature;
     private Double windSpeed;
     private String weatherPhenomenon;
+    private Double latitude;
+    private Double longitude;
+    private LocalDateTime observedAt;
 
     public StationData() {
     }
@@ -18,12 +24,10 @@ public class StationData {
         return name;
     }
 
-    @XmlElement(name = "windspeed")
     public void setWindSpeed(Double windSpeed) {
         this.windSpeed = windSpeed;
     }
 
-    @XmlElement(name = "phenomenon")
     public void setWeatherPhenomenon(String weatherPhenomenon) {
         this.weatherPhenomenon = weatherPhenomenon;
     }
@@ -44,20 +48,50 @@ public class StationData {
         return weatherPhenomenon;
     }
 
-    @XmlElement(name = "name")
     public void setName(String name) {
         this.name = name;
     }
 
-    @XmlElement(name = "wmocode")
     public void setWmoCode(String wmoCode) {
         this.wmoCode = wmoCode;
     }
 
-    @XmlElement(name = "airtemperature")
     public void setAirTemperature(Double airTemperature) {
         this.airTemperature = airTemperature;
     }
 
+    /**
+     * @return the latitude of the station in degrees, or null if the feed does not report it
+     */
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+    }
+
+    /**
+     * @return the longitude of the station in degrees, or null if the feed does not report it
+     */
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+    }
+
+    /**
+     * @return the observation time of the station, or null if it is the observation time of the feed
+     */
+    public LocalDateTime getObservedAt() {
+        return observedAt;
+    }
+
+    public void setObservedAt(LocalDateTime observedAt) {
+        this.observedAt = observedAt;
+    }
+
 
 }
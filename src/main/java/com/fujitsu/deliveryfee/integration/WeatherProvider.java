@@ -0,0 +1,50 @@
+package com.fujitsu.deliveryfee.integration;
+
+import java.time.Duration;
+import java.util.Set;
+
+
+/**
+ * A source of weather observations that the importer fetches from. Providers without a schedule of their own
+ * are imported together on {@code weather.feed.cron}: such an import fans out to them in parallel and merges their
+ * observations, so that it takes as long as its slowest provider. A provider with its own schedule is imported
+ * alone whenever that schedule fires. A provider that has not answered within its timeout is treated
+ * as failed for that import.
+ *
+ * Implementations are Spring beans, or are configured as JSON providers under {@code weather.providers}.
+ * Requests failing with an I/O error or a server error are retried by the importer, so implementations
+ * should not retry themselves.
+ */
+public interface WeatherProvider {
+
+    /**
+     * @return the unique name of the provider, used in logs and metrics
+     */
+    String getName();
+
+    /**
+     * @return the cron expression of the provider's own schedule, on which it is imported by itself. Null imports
+     * the provider together with the others on the schedule of {@code weather.feed.cron}.
+     */
+    String getCron();
+
+    /**
+     * @return the maximum duration of a fetch including its retries
+     */
+    Duration getTimeout();
+
+    /**
+     * Fetches the current observations of the given stations.
+     *
+     * @param stationNames the names of the stations to read, or null to read all stations
+     * @return the observations, or null if the provider has nothing new since the last acknowledged fetch
+     */
+    Observations fetch(Set<String> stationNames);
+
+    /**
+     * Called once the observations returned by the last fetch have been saved, so the provider can
+     * skip them in the next fetch.
+     */
+    default void acknowledge() {
+    }
+}
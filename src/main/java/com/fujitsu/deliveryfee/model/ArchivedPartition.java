@@ -0,0 +1,65 @@
+package com.fujitsu.deliveryfee.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+
+/**
+ * Represents a daily partition of weather data that the retention job has archived and downsampled.
+ * The row is saved in the same transaction that deletes the redundant observations of the day, so a partition
+ * counts as processed exactly when its downsampling has committed, on whichever node holds the leader lease.
+ */
+@Entity
+public class ArchivedPartition {
+    @Id
+    private LocalDate partitionDay;
+
+    private Instant processedAt;
+    private int observations; // Number of observations of the day, all of which are in the archive file
+    private int deleted; // Number of observations deleted as they did not change any fee
+
+    public ArchivedPartition() {
+    }
+
+    public ArchivedPartition(LocalDate partitionDay, Instant processedAt, int observations, int deleted) {
+        this.partitionDay = partitionDay;
+        this.processedAt = processedAt;
+        this.observations = observations;
+        this.deleted = deleted;
+    }
+
+    public LocalDate getPartitionDay() {
+        return partitionDay;
+    }
+
+    public Instant getProcessedAt() {
+        return processedAt;
+    }
+
+    public int getObservations() {
+        return observations;
+    }
+
+    public int getDeleted() {
+        return deleted;
+    }
+
+    public void setPartitionDay(LocalDate partitionDay) {
+        this.partitionDay = partitionDay;
+    }
+
+    public void setProcessedAt(Instant processedAt) {
+        this.processedAt = processedAt;
+    }
+
+    public void setObservations(int observations) {
+        this.observations = observations;
+    }
+
+    public void setDeleted(int deleted) {
+        this.deleted = deleted;
+    }
+}
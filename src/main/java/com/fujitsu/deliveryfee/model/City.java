@@ -0,0 +1,52 @@
+package com.fujitsu.deliveryfee.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+
+/**
+ * Represents a city of the registry that delivery fees can be quoted for, and the weather stations
+ * whose observations apply to it. The primary station is used while its data is available and fresh
+ * enough; otherwise the fallback stations are tried in their listed order.
+ */
+@Entity
+public class City {
+    @Id
+    private String name; // Lower case name of the city, as requested by clients (e.g., "tallinn")
+
+    private String stationName; // The primary weather station of the city (e.g., "Tallinn-Harku")
+    private String fallbackStationNames; // Comma-separated fallback stations in order of preference, null for none
+
+    public City() {
+    }
+
+    public City(String name, String stationName, String fallbackStationNames) {
+        this.name = name;
+        this.stationName = stationName;
+        this.fallbackStationNames = fallbackStationNames;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getStationName() {
+        return stationName;
+    }
+
+    public String getFallbackStationNames() {
+        return fallbackStationNames;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public void setStationName(String stationName) {
+        this.stationName = stationName;
+    }
+
+    public void setFallbackStationNames(String fallbackStationNames) {
+        this.fallbackStationNames = fallbackStationNames;
+    }
+}
@@ -10,6 +10,7 @@ import jakarta.persistence.Id;
  * Represents extra fee rules that adjust the delivery fee based on specific conditions.
  * These conditions can include temperature, wind speed and weather phenomenon.
  * This entity allows for dynamic fee adjustments to account for various external factors.
+ * A rule can be limited to certain vehicle types and can forbid the use of a vehicle instead of adding a fee.
  */
 @Entity
 public class ExtraFeeRule {
@@ -20,6 +21,8 @@ public class ExtraFeeRule {
     private String conditionType; // The type of condition (e.g., temperature, windSpeed, phenomenon)
     private String conditionValue; // // The value or range that triggers the fee adjustment (e.g., "<-10", "10-20", "thunder")
     private Double fee;
+    private String vehicleTypes; // Comma-separated vehicle types the rule applies to (e.g., "scooter,bike"), null for all vehicle types
+    private boolean forbidden; // Whether the condition forbids the use of the vehicle instead of adding a fee
 
     public ExtraFeeRule() {
     }
@@ -31,6 +34,14 @@ public class ExtraFeeRule {
         this.fee = fee;
     }
 
+    public ExtraFeeRule(String conditionType, String conditionValue, Double fee, String vehicleTypes, boolean forbidden) {
+        this.conditionType = conditionType;
+        this.conditionValue = conditionValue;
+        this.fee = fee;
+        this.vehicleTypes = vehicleTypes;
+        this.forbidden = forbidden;
+    }
+
     public Long getId() {
         return id;
     }
@@ -47,6 +58,14 @@ public class ExtraFeeRule {
         return fee;
     }
 
+    public String getVehicleTypes() {
+        return vehicleTypes;
+    }
+
+    public boolean isForbidden() {
+        return forbidden;
+    }
+
 
     public void setId(Long id) {
         this.id = id;
@@ -63,4 +82,12 @@ public class ExtraFeeRule {
     public void setFee(Double fee) {
         this.fee = fee;
     }
+
+    public void setVehicleTypes(String vehicleTypes) {
+        this.vehicleTypes = vehicleTypes;
+    }
+
+    public void setForbidden(boolean forbidden) {
+        this.forbidden = forbidden;
+    }
 }
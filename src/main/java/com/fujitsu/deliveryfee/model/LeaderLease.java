@@ -0,0 +1,76 @@
+package com.fujitsu.deliveryfee.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+import java.time.Instant;
+
+
+/**
+ * Represents the lease that elects the leader among the instances sharing a database.
+ * Only the current owner of an unexpired lease imports weather data and runs the retention job.
+ * The lease row also holds the version of the weather snapshot last published by the leader, and the
+ * version of the fee rules and city registry last changed on any instance, which the other instances
+ * adopt when they synchronize their in-memory snapshot and recompile their fee rules.
+ */
+@Entity
+public class LeaderLease {
+    @Id
+    private String name;
+
+    private String owner; // Node id of the current leader, null if the lease has never been acquired
+    private Instant expiresAt; // The lease is free for any node after this instant
+    private long snapshotVersion; // Incremented by the leader for every import that saved observations
+    private long rulesVersion; // Incremented by any node for every change of the fee rules or the registry
+
+    public LeaderLease() {
+    }
+
+    public LeaderLease(String name, String owner, Instant expiresAt, long snapshotVersion, long rulesVersion) {
+        this.name = name;
+        this.owner = owner;
+        this.expiresAt = expiresAt;
+        this.snapshotVersion = snapshotVersion;
+        this.rulesVersion = rulesVersion;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public long getSnapshotVersion() {
+        return snapshotVersion;
+    }
+
+    public long getRulesVersion() {
+        return rulesVersion;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public void setSnapshotVersion(long snapshotVersion) {
+        this.snapshotVersion = snapshotVersion;
+    }
+
+    public void setRulesVersion(long rulesVersion) {
+        this.rulesVersion = rulesVersion;
+    }
+}
@@ -0,0 +1,30 @@
+package com.fujitsu.deliveryfee.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+
+/**
+ * Represents a vehicle type of the registry that delivery fees can be quoted for.
+ * Base fee rules define in which cities of the registry the vehicle type is offered.
+ */
+@Entity
+public class VehicleType {
+    @Id
+    private String name; // Lower case name of the vehicle type, as requested by clients (e.g., "bike")
+
+    public VehicleType() {
+    }
+
+    public VehicleType(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}
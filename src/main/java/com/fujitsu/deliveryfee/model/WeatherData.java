@@ -5,6 +5,10 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotNull;
 
 import java.time.LocalDateTime;
@@ -14,12 +18,19 @@ import java.time.LocalDateTime;
  * Represents weather data for a specific station at a specific point in time.
  * This entity stores temperature, wind speed, and weather phenomena observed,
  * which are crucial in calculating delivery fees under various conditions.
+ * The weather phenomenon is additionally stored as a bitmask of {@link WeatherPhenomenon} categories,
+ * which is derived whenever the phenomenon is set.
+ * Observations are indexed by station and descending timestamp, matching the lookup of the
+ * latest observation of a station at or before a given time.
  */
 @Entity
+@Table(indexes = @Index(name = "idx_weather_data_station_timestamp", columnList = "stationName, timestamp DESC"))
 public class WeatherData {
 
+    // Ids are allocated from the sequence in blocks of 50, so a batch of inserts needs only one sequence call
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "weather_data_seq")
+    @SequenceGenerator(name = "weather_data_seq", sequenceName = "weather_data_seq", allocationSize = 50)
     private Long id;
 
     @NotNull
@@ -27,9 +38,12 @@ public class WeatherData {
 
     // Nullable - some stations don't report wmoCode, airTemperature, windSpeed and weatherPhenomenon
     private String wmoCode; // World Meteorological Organization code for the station
+    private Double latitude; // Position of the station in degrees, used to find the stations nearest to a location
+    private Double longitude;
     private Double airTemperature; // Air temperature in degrees Celsius
     private Double windSpeed; // Wind speed in meters per second
     private String weatherPhenomenon; // Descriptive weather condition (e.g., clear, rain, snow)
+    private Integer phenomenonFlags; // Bitmask of WeatherPhenomenon categories, null if no phenomenon was reported or the row has not been classified yet
     @NotNull
     private LocalDateTime timestamp; // The timestamp of the weather observation
 
@@ -42,7 +56,7 @@ public class WeatherData {
         this.wmoCode = wmoCode;
         this.airTemperature = airTemperature;
         this.windSpeed = windSpeed;
-        this.weatherPhenomenon = weatherPhenomenon;
+        setWeatherPhenomenon(weatherPhenomenon);
         this.timestamp = timestamp;
     }
 
@@ -50,14 +64,14 @@ public class WeatherData {
         this.stationName = stationName;
         this.airTemperature = airTemperature;
         this.windSpeed = windSpeed;
-        this.weatherPhenomenon = weatherPhenomenon;
+        setWeatherPhenomenon(weatherPhenomenon);
         this.timestamp = timestamp;
     }
 
     public WeatherData(Double airTemperature, Double windSpeed, String weatherPhenomenon, LocalDateTime timestamp) {
         this.airTemperature = airTemperature;
         this.windSpeed = windSpeed;
-        this.weatherPhenomenon = weatherPhenomenon;
+        setWeatherPhenomenon(weatherPhenomenon);
         this.timestamp = timestamp;
     }
 
@@ -73,6 +87,14 @@ public class WeatherData {
         return wmoCode;
     }
 
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
     public Double getAirTemperature() {
         return airTemperature;
     }
@@ -85,6 +107,10 @@ public class WeatherData {
         return weatherPhenomenon;
     }
 
+    public Integer getPhenomenonFlags() {
+        return phenomenonFlags;
+    }
+
     public LocalDateTime getTimestamp() {
         return timestamp;
     }
@@ -101,6 +127,14 @@ public class WeatherData {
         this.wmoCode = wmoCode;
     }
 
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+    }
+
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+    }
+
     public void setAirTemperature(Double airTemperature) {
         this.airTemperature = airTemperature;
     }
@@ -111,11 +145,20 @@ public class WeatherData {
 
     public void setWeatherPhenomenon(String weatherPhenomenon) {
         this.weatherPhenomenon = weatherPhenomenon;
+        this.phenomenonFlags = weatherPhenomenon != null ? WeatherPhenomenon.classify(weatherPhenomenon) : null;
     }
 
     public void setTimestamp(LocalDateTime timestamp) {
         this.timestamp = timestamp;
     }
 
+    // Classifies rows that were stored before the phenomenon flags existed and have not been backfilled yet
+    @PostLoad
+    private void classifyLegacyPhenomenon() {
+        if (phenomenonFlags == null && weatherPhenomenon != null) {
+            phenomenonFlags = WeatherPhenomenon.classify(weatherPhenomenon);
+        }
+    }
+
 
 }
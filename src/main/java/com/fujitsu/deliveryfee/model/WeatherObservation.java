@@ -0,0 +1,26 @@
+package com.fujitsu.deliveryfee.model;
+
+import java.time.LocalDateTime;
+
+
+/**
+ * Projection of {@link WeatherData} holding only the fields needed to calculate the weather-related
+ * extra fees. Lookups by station and time select this projection directly, so they can be answered
+ * without loading and tracking entities.
+ *
+ * @param airTemperature the air temperature in degrees Celsius, null if not reported
+ * @param windSpeed the wind speed in meters per second, null if not reported
+ * @param phenomenonFlags the bitmask of {@link WeatherPhenomenon} categories, null if no phenomenon was reported
+ * @param timestamp the timestamp of the weather observation
+ */
+public record WeatherObservation(Double airTemperature, Double windSpeed, Integer phenomenonFlags, LocalDateTime timestamp) {
+
+    /**
+     * @param weatherData the weather data entity
+     * @return the observation of the given weather data
+     */
+    public static WeatherObservation of(WeatherData weatherData) {
+        return new WeatherObservation(weatherData.getAirTemperature(), weatherData.getWindSpeed(),
+                weatherData.getPhenomenonFlags(), weatherData.getTimestamp());
+    }
+}
@@ -0,0 +1,75 @@
+package com.fujitsu.deliveryfee.model;
+
+import java.util.Locale;
+
+
+/**
+ * Categories of weather phenomena that are relevant for delivery fees.
+ * A reported phenomenon is classified once, when it is imported, into a bitmask of these
+ * categories (e.g. "Light snow shower" into SNOW and SHOWER), which the fee calculation then
+ * uses instead of matching the phenomenon text.
+ */
+public enum WeatherPhenomenon {
+    SNOW("snow"),
+    SLEET("sleet"),
+    SHOWER("shower"),
+    RAIN("rain"),
+    GLAZE("glaze"),
+    HAIL("hail"),
+    THUNDER("thunder");
+
+    private static final WeatherPhenomenon[] VALUES = values();
+
+    private final String keyword;
+    private final int flag;
+
+    WeatherPhenomenon(String keyword) {
+        this.keyword = keyword;
+        this.flag = 1 << ordinal();
+    }
+
+    public String getKeyword() {
+        return keyword;
+    }
+
+    public int getFlag() {
+        return flag;
+    }
+
+
+    /**
+     * Classifies a reported weather phenomenon into a bitmask of categories. A category is set if
+     * the phenomenon contains its keyword, ignoring case.
+     *
+     * @param weatherPhenomenon the phenomenon as reported by the weather station, may be null
+     * @return the bitmask of categories, 0 if the phenomenon is null or matches no category
+     */
+    public static int classify(String weatherPhenomenon) {
+        if (weatherPhenomenon == null) {
+            return 0;
+        }
+        String phenomenon = weatherPhenomenon.toLowerCase(Locale.ROOT);
+        int flags = 0;
+        for (WeatherPhenomenon category : VALUES) {
+            if (phenomenon.contains(category.keyword)) {
+                flags |= category.flag;
+            }
+        }
+        return flags;
+    }
+
+
+    /**
+     * @param keyword the lower case keyword of a category, e.g. "snow"
+     * @return the category with the given keyword
+     * @throws IllegalArgumentException if no category has the given keyword
+     */
+    public static WeatherPhenomenon fromKeyword(String keyword) {
+        for (WeatherPhenomenon category : VALUES) {
+            if (category.keyword.equals(keyword)) {
+                return category;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported weather phenomenon: " + keyword);
+    }
+}
@@ -0,0 +1,14 @@
+package com.fujitsu.deliveryfee.repository;
+
+import com.fujitsu.deliveryfee.model.ArchivedPartition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+
+/**
+ * Repository interface for the daily weather data partitions the retention job has processed.
+ */
+@Repository
+public interface ArchivedPartitionRepository extends JpaRepository<ArchivedPartition, LocalDate> {
+}
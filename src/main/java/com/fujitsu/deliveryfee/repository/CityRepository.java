@@ -0,0 +1,12 @@
+package com.fujitsu.deliveryfee.repository;
+
+import com.fujitsu.deliveryfee.model.City;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository interface for accessing and managing the cities of the registry in the database.
+ */
+@Repository
+public interface CityRepository extends JpaRepository<City, String> {
+}
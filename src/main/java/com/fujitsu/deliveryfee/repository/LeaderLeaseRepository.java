@@ -0,0 +1,71 @@
+package com.fujitsu.deliveryfee.repository;
+
+import com.fujitsu.deliveryfee.model.LeaderLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+/**
+ * Repository for the leader lease shared by the instances of a cluster.
+ * The lease is acquired and renewed with single conditional updates, so the database
+ * serializes competing nodes and at most one of them holds an unexpired lease.
+ */
+@Repository
+public interface LeaderLeaseRepository extends JpaRepository<LeaderLease, String> {
+
+    /**
+     * Acquires or renews the lease for the given node if the node already owns it or the lease has expired.
+     *
+     * @param name the name of the lease
+     * @param owner the node id of the acquiring node
+     * @param now the current instant
+     * @param expiresAt the instant until which the lease is held if acquired
+     * @return 1 if the node holds the lease now, 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE LeaderLease l SET l.owner = :owner, l.expiresAt = :expiresAt " +
+            "WHERE l.name = :name AND (l.owner = :owner OR l.owner IS NULL OR l.expiresAt < :now)")
+    int acquire(@Param("name") String name, @Param("owner") String owner, @Param("now") Instant now, @Param("expiresAt") Instant expiresAt);
+
+    /**
+     * Increments the published weather snapshot version of the lease.
+     *
+     * @param name the name of the lease
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE LeaderLease l SET l.snapshotVersion = l.snapshotVersion + 1 WHERE l.name = :name")
+    int incrementSnapshotVersion(@Param("name") String name);
+
+    /**
+     * @param name the name of the lease
+     * @return the published weather snapshot version, or null if the lease does not exist
+     */
+    @Query("SELECT l.snapshotVersion FROM LeaderLease l WHERE l.name = :name")
+    Long findSnapshotVersion(@Param("name") String name);
+
+    /**
+     * Increments the published fee rules version of the lease.
+     *
+     * @param name the name of the lease
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE LeaderLease l SET l.rulesVersion = l.rulesVersion + 1 WHERE l.name = :name")
+    int incrementRulesVersion(@Param("name") String name);
+
+    /**
+     * @param name the name of the lease
+     * @return the published fee rules version, or null if the lease does not exist
+     */
+    @Query("SELECT l.rulesVersion FROM LeaderLease l WHERE l.name = :name")
+    Long findRulesVersion(@Param("name") String name);
+}
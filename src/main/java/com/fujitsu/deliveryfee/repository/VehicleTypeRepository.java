@@ -0,0 +1,12 @@
+package com.fujitsu.deliveryfee.repository;
+
+import com.fujitsu.deliveryfee.model.VehicleType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository interface for accessing and managing the vehicle types of the registry in the database.
+ */
+@Repository
+public interface VehicleTypeRepository extends JpaRepository<VehicleType, String> {
+}
@@ -1,13 +1,17 @@
 package com.fujitsu.deliveryfee.repository;
 
 import com.fujitsu.deliveryfee.model.WeatherData;
+import com.fujitsu.deliveryfee.model.WeatherObservation;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -19,13 +23,94 @@ import java.util.List;
 public interface WeatherDataRepository extends JpaRepository<WeatherData, Long> {
 
     /**
-     * Finds the latest weather data for a given station name before a specific datetime.
+     * Finds the latest weather observations of a given station at or before a specific datetime.
+     * The query is answered by a range scan of the (stationName, timestamp DESC) index.
      *
      * @param stationName the name of the weather station
-     * @param dateTime the datetime before which the weather data should be found
+     * @param dateTime the datetime at or before which the observations should be found
      * @param pageable pagination information to limit the results
-     * @return a list of {@link WeatherData} entries, which is typically a single result
+     * @return a list of {@link WeatherObservation} entries, newest first, which is typically a single result
      */
-    @Query("SELECT wd FROM WeatherData wd WHERE wd.stationName = :stationName AND (:dateTime IS NULL OR wd.timestamp <= :dateTime) ORDER BY wd.timestamp DESC")
-    List<WeatherData> findByCityAndTimestampBefore(@Param("stationName") String stationName, @Param("dateTime") LocalDateTime dateTime, Pageable pageable);
+    @Query("SELECT new com.fujitsu.deliveryfee.model.WeatherObservation(wd.airTemperature, wd.windSpeed, wd.phenomenonFlags, wd.timestamp) " +
+            "FROM WeatherData wd WHERE wd.stationName = :stationName AND wd.timestamp <= :dateTime ORDER BY wd.timestamp DESC")
+    List<WeatherObservation> findObservationsAtOrBefore(@Param("stationName") String stationName, @Param("dateTime") LocalDateTime dateTime, Pageable pageable);
+
+    /**
+     * Finds the latest weather observations of a given station, regardless of time.
+     *
+     * @param stationName the name of the weather station
+     * @param pageable pagination information to limit the results
+     * @return a list of {@link WeatherObservation} entries, newest first, which is typically a single result
+     */
+    @Query("SELECT new com.fujitsu.deliveryfee.model.WeatherObservation(wd.airTemperature, wd.windSpeed, wd.phenomenonFlags, wd.timestamp) " +
+            "FROM WeatherData wd WHERE wd.stationName = :stationName ORDER BY wd.timestamp DESC")
+    List<WeatherObservation> findLatestObservations(@Param("stationName") String stationName, Pageable pageable);
+
+    /**
+     * Finds all weather observations of a given station at or after a specific datetime.
+     * Used to load the in-memory history of the station on startup.
+     *
+     * @param stationName the name of the weather station
+     * @param dateTime the datetime at or after which the observations should be found
+     * @return a list of {@link WeatherObservation} entries, oldest first
+     */
+    @Query("SELECT new com.fujitsu.deliveryfee.model.WeatherObservation(wd.airTemperature, wd.windSpeed, wd.phenomenonFlags, wd.timestamp) " +
+            "FROM WeatherData wd WHERE wd.stationName = :stationName AND wd.timestamp >= :dateTime ORDER BY wd.timestamp")
+    List<WeatherObservation> findObservationsSince(@Param("stationName") String stationName, @Param("dateTime") LocalDateTime dateTime);
+
+    /**
+     * Finds all weather data observed within the given time range, ordered by station and time.
+     *
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @return a list of {@link WeatherData} entries
+     */
+    @Query("SELECT wd FROM WeatherData wd WHERE wd.timestamp >= :from AND wd.timestamp < :to ORDER BY wd.stationName, wd.timestamp")
+    List<WeatherData> findAllObservedBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * @return the timestamp of the oldest stored weather data, or null if no weather data is stored
+     */
+    @Query("SELECT MIN(wd.timestamp) FROM WeatherData wd")
+    LocalDateTime findOldestTimestamp();
+
+    /**
+     * Finds the newest weather data of every station that has reported at least once.
+     *
+     * @return a list of {@link WeatherData} entries, one per station
+     */
+    @Query("SELECT wd FROM WeatherData wd WHERE wd.timestamp = (SELECT MAX(latest.timestamp) FROM WeatherData latest WHERE latest.stationName = wd.stationName)")
+    List<WeatherData> findLatestForEachStation();
+
+    /**
+     * Finds which of the given stations already have weather data with the given timestamp.
+     * Used to skip observations that have already been imported.
+     *
+     * @param stationNames the names of the weather stations
+     * @param timestamp the observation timestamp
+     * @return the names of the stations that have weather data with the timestamp
+     */
+    @Query("SELECT wd.stationName FROM WeatherData wd WHERE wd.stationName IN :stationNames AND wd.timestamp = :timestamp")
+    List<String> findStationNamesWithTimestamp(@Param("stationNames") Collection<String> stationNames, @Param("timestamp") LocalDateTime timestamp);
+
+    /**
+     * Finds the distinct weather phenomena of rows whose phenomenon has not been classified yet,
+     * i.e. rows stored before the phenomenon flags were introduced.
+     *
+     * @return the distinct unclassified weather phenomena, excluding null
+     */
+    @Query("SELECT DISTINCT wd.weatherPhenomenon FROM WeatherData wd WHERE wd.phenomenonFlags IS NULL AND wd.weatherPhenomenon IS NOT NULL")
+    List<String> findUnclassifiedWeatherPhenomena();
+
+    /**
+     * Sets the phenomenon flags of all unclassified rows with the given weather phenomenon.
+     *
+     * @param weatherPhenomenon the weather phenomenon
+     * @param phenomenonFlags the bitmask of categories the phenomenon is classified into
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE WeatherData wd SET wd.phenomenonFlags = :phenomenonFlags WHERE wd.weatherPhenomenon = :weatherPhenomenon AND wd.phenomenonFlags IS NULL")
+    int updatePhenomenonFlags(@Param("weatherPhenomenon") String weatherPhenomenon, @Param("phenomenonFlags") int phenomenonFlags);
 }
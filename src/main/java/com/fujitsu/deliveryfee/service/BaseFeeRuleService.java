@@ -13,15 +13,18 @@ import java.util.Optional;
 /**
  * Service class for managing base fee rules.
  * Provides methods to perform CRUD operations on BaseFeeRule entities.
+ * Every change is validated first and then triggers a recompilation of the fee rules in {@link FeeRuleEngine}.
  */
 @Service
 public class BaseFeeRuleService {
 
     private final BaseFeeRuleRepository baseFeeRuleRepository;
+    private final FeeRuleEngine feeRuleEngine;
 
     @Autowired
-    public BaseFeeRuleService(BaseFeeRuleRepository baseFeeRuleRepository) {
+    public BaseFeeRuleService(BaseFeeRuleRepository baseFeeRuleRepository, FeeRuleEngine feeRuleEngine) {
         this.baseFeeRuleRepository = baseFeeRuleRepository;
+        this.feeRuleEngine = feeRuleEngine;
     }
 
 
@@ -29,9 +32,13 @@ public class BaseFeeRuleService {
      * Creates a new base fee rule.
      * @param baseFeeRule The base fee rule object to be created
      * @return The created base fee rule
+     * @throws IllegalArgumentException if the base fee rule is invalid
      */
     public BaseFeeRule createBaseFeeRule(BaseFeeRule baseFeeRule) {
-        return baseFeeRuleRepository.save(baseFeeRule);
+        CompiledFeeRules.validate(baseFeeRule);
+        BaseFeeRule createdBaseFeeRule = baseFeeRuleRepository.save(baseFeeRule);
+        feeRuleEngine.reload();
+        return createdBaseFeeRule;
     }
 
     /**
@@ -59,14 +66,18 @@ public class BaseFeeRuleService {
      * @param baseFeeRuleDetails The updated details of the base fee rule
      * @return The updated base fee rule
      * @throws FeeRuleNotFoundException if the base fee rule with the given ID is not found
+     * @throws IllegalArgumentException if the updated details are invalid
      */
     public BaseFeeRule updateBaseFeeRule(Long id, BaseFeeRule baseFeeRuleDetails) {
+        CompiledFeeRules.validate(baseFeeRuleDetails);
         BaseFeeRule baseFeeRule = baseFeeRuleRepository.findById(id)
                 .orElseThrow(() -> new FeeRuleNotFoundException(id));
         baseFeeRule.setCity(baseFeeRuleDetails.getCity());
         baseFeeRule.setVehicleType(baseFeeRuleDetails.getVehicleType());
         baseFeeRule.setFee(baseFeeRuleDetails.getFee());
-        return baseFeeRuleRepository.save(baseFeeRule);
+        BaseFeeRule updatedBaseFeeRule = baseFeeRuleRepository.save(baseFeeRule);
+        feeRuleEngine.reload();
+        return updatedBaseFeeRule;
     }
 
 
@@ -79,5 +90,6 @@ public class BaseFeeRuleService {
         BaseFeeRule baseFeeRule = baseFeeRuleRepository.findById(id)
                 .orElseThrow(() -> new FeeRuleNotFoundException(id));
         baseFeeRuleRepository.delete(baseFeeRule);
+        feeRuleEngine.reload();
     }
 }
@@ -0,0 +1,132 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.exception.RegistryEntryNotFoundException;
+import com.fujitsu.deliveryfee.model.City;
+import com.fujitsu.deliveryfee.model.VehicleType;
+import com.fujitsu.deliveryfee.repository.CityRepository;
+import com.fujitsu.deliveryfee.repository.VehicleTypeRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+
+
+/**
+ * Service class for managing the registry of cities, their weather stations and the vehicle types.
+ * Names are stored in their canonical lower case form, so they are unique regardless of the case they were sent in.
+ * Every change is validated first and then triggers a recompilation of the fee rules in {@link FeeRuleEngine},
+ * so quotes resolve the changed registry right away.
+ */
+@Service
+public class CityRegistryService {
+
+    private final CityRepository cityRepository;
+    private final VehicleTypeRepository vehicleTypeRepository;
+    private final FeeRuleEngine feeRuleEngine;
+
+    @Autowired
+    public CityRegistryService(CityRepository cityRepository, VehicleTypeRepository vehicleTypeRepository, FeeRuleEngine feeRuleEngine) {
+        this.cityRepository = cityRepository;
+        this.vehicleTypeRepository = vehicleTypeRepository;
+        this.feeRuleEngine = feeRuleEngine;
+    }
+
+
+    /**
+     * Retrieves all cities of the registry.
+     * @return A list of all cities, ordered by name
+     */
+    public List<City> getAllCities() {
+        return cityRepository.findAll(Sort.by("name"));
+    }
+
+
+    /**
+     * Retrieves a city of the registry by its name.
+     * @param name The name of the city, in any case
+     * @return An Optional containing the city if found, otherwise empty
+     */
+    public Optional<City> getCityByName(String name) {
+        return cityRepository.findById(NameIndex.canonical(name));
+    }
+
+
+    /**
+     * Creates or replaces a city of the registry.
+     * @param name The name of the city, in any case
+     * @param cityDetails The weather stations of the city
+     * @return The saved city
+     * @throws IllegalArgumentException if the name or the primary station is missing
+     */
+    public City saveCity(String name, City cityDetails) {
+        cityDetails.setName(name);
+        CompiledFeeRules.validate(cityDetails);
+        City city = new City(NameIndex.canonical(name), cityDetails.getStationName().trim(), cityDetails.getFallbackStationNames());
+        City savedCity = cityRepository.save(city);
+        feeRuleEngine.reload();
+        return savedCity;
+    }
+
+
+    /**
+     * Deletes a city of the registry. Base fee rules of the city are kept, but ignored until the city is added again.
+     * @param name The name of the city, in any case
+     * @throws RegistryEntryNotFoundException if the city is not in the registry
+     */
+    public void deleteCity(String name) {
+        City city = cityRepository.findById(NameIndex.canonical(name))
+                .orElseThrow(() -> new RegistryEntryNotFoundException("City", name));
+        cityRepository.delete(city);
+        feeRuleEngine.reload();
+    }
+
+
+    /**
+     * Retrieves all vehicle types of the registry.
+     * @return A list of all vehicle types, ordered by name
+     */
+    public List<VehicleType> getAllVehicleTypes() {
+        return vehicleTypeRepository.findAll(Sort.by("name"));
+    }
+
+
+    /**
+     * Adds a vehicle type to the registry, if it is not in it yet.
+     * @param name The name of the vehicle type, in any case
+     * @return The saved vehicle type
+     * @throws IllegalArgumentException if the name is missing
+     */
+    public VehicleType saveVehicleType(String name) {
+        VehicleType vehicleType = new VehicleType(name);
+        CompiledFeeRules.validate(vehicleType);
+        vehicleType.setName(NameIndex.canonical(name));
+        VehicleType savedVehicleType = vehicleTypeRepository.save(vehicleType);
+        feeRuleEngine.reload();
+        return savedVehicleType;
+    }
+
+
+    /**
+     * Deletes a vehicle type of the registry. Fee rules of the vehicle type are kept, but ignored until it is added again.
+     * @param name The name of the vehicle type, in any case
+     * @throws RegistryEntryNotFoundException if the vehicle type is not in the registry
+     */
+    public void deleteVehicleType(String name) {
+        VehicleType vehicleType = vehicleTypeRepository.findById(NameIndex.canonical(name))
+                .orElseThrow(() -> new RegistryEntryNotFoundException("Vehicle type", name));
+        vehicleTypeRepository.delete(vehicleType);
+        feeRuleEngine.reload();
+    }
+
+
+    /**
+     * Recompiles the registry and fee rules from the database, e.g. after they were edited there directly.
+     * @return The version of the recompiled fee rules
+     */
+    public long reload() {
+        feeRuleEngine.reload();
+        return feeRuleEngine.getRules().getVersion();
+    }
+}
@@ -0,0 +1,558 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.model.BaseFeeRule;
+import com.fujitsu.deliveryfee.model.City;
+import com.fujitsu.deliveryfee.model.ExtraFeeRule;
+import com.fujitsu.deliveryfee.model.VehicleType;
+import com.fujitsu.deliveryfee.model.WeatherPhenomenon;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+
+/**
+ * Immutable, compiled form of the base and extra fee rules stored in the database.
+ * The cities and vehicle types of the registry are mapped to ordinals through a case-insensitive
+ * {@link NameIndex}, the weather stations of each city are kept by its ordinal, base fees are kept
+ * in a dense array indexed by those ordinals, and extra fee conditions are pre-parsed into primitive tables per vehicle type,
+ * so calculating a fee requires neither string parsing nor repository calls. Phenomenon conditions
+ * are compiled to bitmasks of {@link WeatherPhenomenon} categories and matched against the flags
+ * that were classified when the weather data was imported.
+ *
+ * Within one condition type the highest matching fee applies, and a matching rule that forbids the
+ * use of the vehicle is represented by a fee of {@link #FORBIDDEN}.
+ */
+public final class CompiledFeeRules {
+
+    private static final Logger log = LoggerFactory.getLogger(CompiledFeeRules.class);
+
+    public static final double FORBIDDEN = Double.POSITIVE_INFINITY;
+
+    private static final Pattern COMPARISON = Pattern.compile("(<=|>=|<|>)\\s*(-?\\d+(?:\\.\\d+)?)");
+    private static final Pattern RANGE = Pattern.compile("(-?\\d+(?:\\.\\d+)?)\\s*-\\s*(-?\\d+(?:\\.\\d+)?)");
+
+    public static final CompiledFeeRules EMPTY = compile(0, Collections.emptyList(), Collections.emptyList(),
+            Collections.emptyList(), Collections.emptyList());
+
+    private final long version;
+    private final NameIndex cityIndexes;
+    private final NameIndex vehicleTypeIndexes;
+    private final List<List<String>> stationNames; // Indexed by cityIndex, the primary station first
+    private final List<String> allStationNames;
+    private final Map<String, Integer> cityIndexesByStation;
+    private final double[] baseFees; // Indexed by cityIndex * vehicleTypeCount + vehicleTypeIndex, NaN if not offered
+    private final IntervalTable[] temperatureRules; // Indexed by vehicleTypeIndex
+    private final IntervalTable[] windSpeedRules;
+    private final PhenomenonTable[] phenomenonRules;
+
+    private CompiledFeeRules(long version, NameIndex cityIndexes, NameIndex vehicleTypeIndexes, List<List<String>> stationNames,
+                             double[] baseFees, IntervalTable[] temperatureRules, IntervalTable[] windSpeedRules, PhenomenonTable[] phenomenonRules) {
+        this.version = version;
+        this.cityIndexes = cityIndexes;
+        this.vehicleTypeIndexes = vehicleTypeIndexes;
+        this.stationNames = stationNames;
+        this.allStationNames = List.copyOf(stationNames.stream().flatMap(List::stream).collect(Collectors.toCollection(LinkedHashSet::new)));
+        this.cityIndexesByStation = indexCitiesByStation(stationNames);
+        this.baseFees = baseFees;
+        this.temperatureRules = temperatureRules;
+        this.windSpeedRules = windSpeedRules;
+        this.phenomenonRules = phenomenonRules;
+    }
+
+
+    /**
+     * Compiles the given fee rules against the default registry of {@link DefaultFeeRules}.
+     *
+     * @param version the version number of the compiled rules
+     * @param baseFeeRules the base fee rules
+     * @param extraFeeRules the extra fee rules
+     * @return the compiled fee rules
+     */
+    public static CompiledFeeRules compile(long version, List<BaseFeeRule> baseFeeRules, List<ExtraFeeRule> extraFeeRules) {
+        return compile(version, DefaultFeeRules.cities(), DefaultFeeRules.vehicleTypes(), baseFeeRules, extraFeeRules);
+    }
+
+    /**
+     * Compiles the given registry and fee rules. The ordinals of the cities and vehicle types follow their
+     * order in the registry. Registry entries and rules that fail validation are skipped with a warning,
+     * as are base fee rules for cities or vehicle types missing from the registry, and if several base fee
+     * rules exist for the same city and vehicle type, the last one wins.
+     *
+     * @param version the version number of the compiled rules
+     * @param cities the cities of the registry
+     * @param vehicleTypes the vehicle types of the registry
+     * @param baseFeeRules the base fee rules
+     * @param extraFeeRules the extra fee rules
+     * @return the compiled fee rules
+     */
+    public static CompiledFeeRules compile(long version, List<City> cities, List<VehicleType> vehicleTypes,
+                                           List<BaseFeeRule> baseFeeRules, List<ExtraFeeRule> extraFeeRules) {
+        Map<String, List<String>> stationNamesByCity = new LinkedHashMap<>();
+        for (City city : cities) {
+            List<String> cityStationNames;
+            try {
+                cityStationNames = validate(city);
+            } catch (IllegalArgumentException e) {
+                log.warn("Skipping city {}: {}", city.getName(), e.getMessage());
+                continue;
+            }
+            if (stationNamesByCity.putIfAbsent(NameIndex.canonical(city.getName()), cityStationNames) != null) {
+                log.warn("Skipping duplicate city {}", city.getName());
+            }
+        }
+        Set<String> vehicleTypeNames = new LinkedHashSet<>();
+        for (VehicleType vehicleType : vehicleTypes) {
+            try {
+                validate(vehicleType);
+            } catch (IllegalArgumentException e) {
+                log.warn("Skipping vehicle type {}: {}", vehicleType.getName(), e.getMessage());
+                continue;
+            }
+            if (!vehicleTypeNames.add(NameIndex.canonical(vehicleType.getName()))) {
+                log.warn("Skipping duplicate vehicle type {}", vehicleType.getName());
+            }
+        }
+        NameIndex cityIndexes = new NameIndex(new ArrayList<>(stationNamesByCity.keySet()));
+        NameIndex vehicleTypeIndexes = new NameIndex(new ArrayList<>(vehicleTypeNames));
+
+        int vehicleTypeCount = vehicleTypeIndexes.size();
+        double[] baseFees = new double[cityIndexes.size() * vehicleTypeCount];
+        Arrays.fill(baseFees, Double.NaN);
+        for (BaseFeeRule rule : baseFeeRules) {
+            try {
+                validate(rule);
+            } catch (IllegalArgumentException e) {
+                log.warn("Skipping base fee rule {}: {}", rule.getId(), e.getMessage());
+                continue;
+            }
+            int cityIndex = cityIndexes.indexOf(rule.getCity().trim());
+            int vehicleTypeIndex = vehicleTypeIndexes.indexOf(rule.getVehicleType().trim());
+            if (cityIndex < 0 || vehicleTypeIndex < 0) {
+                log.warn("Skipping base fee rule {}: city {} or vehicle type {} is not in the registry", rule.getId(), rule.getCity(), rule.getVehicleType());
+                continue;
+            }
+            baseFees[cityIndex * vehicleTypeCount + vehicleTypeIndex] = rule.getFee();
+        }
+
+        List<List<double[]>> temperatureIntervals = createLists(vehicleTypeCount);
+        List<List<double[]>> windSpeedIntervals = createLists(vehicleTypeCount);
+        List<List<Integer>> phenomenonFlags = createLists(vehicleTypeCount);
+        List<List<Double>> phenomenonFees = createLists(vehicleTypeCount);
+        for (ExtraFeeRule rule : extraFeeRules) {
+            ConditionType conditionType;
+            try {
+                conditionType = validate(rule);
+            } catch (IllegalArgumentException e) {
+                log.warn("Skipping extra fee rule {}: {}", rule.getId(), e.getMessage());
+                continue;
+            }
+            double fee = rule.isForbidden() ? FORBIDDEN : rule.getFee();
+            for (int vehicleTypeIndex : resolveVehicleTypes(rule.getVehicleTypes(), vehicleTypeIndexes)) {
+                switch (conditionType) {
+                    case TEMPERATURE -> temperatureIntervals.get(vehicleTypeIndex).add(withFee(parseInterval(rule.getConditionValue()), fee));
+                    case WIND_SPEED -> windSpeedIntervals.get(vehicleTypeIndex).add(withFee(parseInterval(rule.getConditionValue()), fee));
+                    case PHENOMENON -> {
+                        phenomenonFlags.get(vehicleTypeIndex).add(parsePhenomena(rule.getConditionValue()));
+                        phenomenonFees.get(vehicleTypeIndex).add(fee);
+                    }
+                }
+            }
+        }
+
+        IntervalTable[] temperatureRules = new IntervalTable[vehicleTypeCount];
+        IntervalTable[] windSpeedRules = new IntervalTable[vehicleTypeCount];
+        PhenomenonTable[] phenomenonRules = new PhenomenonTable[vehicleTypeCount];
+        for (int i = 0; i < vehicleTypeCount; i++) {
+            temperatureRules[i] = new IntervalTable(temperatureIntervals.get(i));
+            windSpeedRules[i] = new IntervalTable(windSpeedIntervals.get(i));
+            phenomenonRules[i] = new PhenomenonTable(phenomenonFlags.get(i), phenomenonFees.get(i));
+        }
+
+        return new CompiledFeeRules(version, cityIndexes, vehicleTypeIndexes, List.copyOf(stationNamesByCity.values()), baseFees,
+                temperatureRules, windSpeedRules, phenomenonRules);
+    }
+
+
+    /**
+     * Validates a city of the registry before it is saved.
+     *
+     * @param city the city to validate
+     * @return the weather stations of the city, the primary station first
+     * @throws IllegalArgumentException if the name or the primary station is missing
+     */
+    public static List<String> validate(City city) {
+        if (city.getName() == null || city.getName().isBlank()) {
+            throw new IllegalArgumentException("City must define a name");
+        }
+        if (city.getStationName() == null || city.getStationName().isBlank()) {
+            throw new IllegalArgumentException("City must define a weather station");
+        }
+        Set<String> cityStationNames = new LinkedHashSet<>();
+        cityStationNames.add(city.getStationName().trim());
+        if (city.getFallbackStationNames() != null) {
+            for (String stationName : city.getFallbackStationNames().split(",")) {
+                if (!stationName.isBlank()) {
+                    cityStationNames.add(stationName.trim());
+                }
+            }
+        }
+        return List.copyOf(cityStationNames);
+    }
+
+
+    /**
+     * Validates a vehicle type of the registry before it is saved.
+     *
+     * @param vehicleType the vehicle type to validate
+     * @throws IllegalArgumentException if the name is missing
+     */
+    public static void validate(VehicleType vehicleType) {
+        if (vehicleType.getName() == null || vehicleType.getName().isBlank()) {
+            throw new IllegalArgumentException("Vehicle type must define a name");
+        }
+    }
+
+
+    /**
+     * Validates a base fee rule before it is saved.
+     *
+     * @param rule the base fee rule to validate
+     * @throws IllegalArgumentException if the city, vehicle type or fee is missing or invalid
+     */
+    public static void validate(BaseFeeRule rule) {
+        if (rule.getCity() == null || rule.getCity().isBlank()) {
+            throw new IllegalArgumentException("Base fee rule must define a city");
+        }
+        if (rule.getVehicleType() == null || rule.getVehicleType().isBlank()) {
+            throw new IllegalArgumentException("Base fee rule must define a vehicle type");
+        }
+        if (rule.getFee() == null || rule.getFee() < 0) {
+            throw new IllegalArgumentException("Base fee rule must define a non-negative fee");
+        }
+    }
+
+
+    /**
+     * Validates an extra fee rule before it is saved, including parsing its condition value.
+     *
+     * @param rule the extra fee rule to validate
+     * @return the condition type of the rule
+     * @throws IllegalArgumentException if the condition type, condition value or fee is missing or invalid
+     */
+    public static ConditionType validate(ExtraFeeRule rule) {
+        ConditionType conditionType = ConditionType.fromString(rule.getConditionType());
+        if (rule.getConditionValue() == null || rule.getConditionValue().isBlank()) {
+            throw new IllegalArgumentException("Extra fee rule must define a condition value");
+        }
+        if (conditionType == ConditionType.PHENOMENON) {
+            parsePhenomena(rule.getConditionValue());
+        } else {
+            parseInterval(rule.getConditionValue());
+        }
+        if (!rule.isForbidden() && (rule.getFee() == null || rule.getFee() < 0)) {
+            throw new IllegalArgumentException("Extra fee rule must either forbid the vehicle or define a non-negative fee");
+        }
+        return conditionType;
+    }
+
+
+    /**
+     * Parses a numeric condition value into an inclusive interval. Supported forms are comparisons
+     * such as "<-10", "<=0", ">20" and ">=20", and inclusive ranges such as "10-20" or "-10-0".
+     * Exclusive bounds are converted to the nearest inclusive double value.
+     *
+     * @param conditionValue the condition value to parse
+     * @return an array holding the lower and the upper bound of the interval
+     * @throws IllegalArgumentException if the condition value cannot be parsed
+     */
+    static double[] parseInterval(String conditionValue) {
+        String value = conditionValue.trim();
+        Matcher comparison = COMPARISON.matcher(value);
+        if (comparison.matches()) {
+            double bound = Double.parseDouble(comparison.group(2));
+            return switch (comparison.group(1)) {
+                case "<" -> new double[]{Double.NEGATIVE_INFINITY, Math.nextDown(bound)};
+                case "<=" -> new double[]{Double.NEGATIVE_INFINITY, bound};
+                case ">" -> new double[]{Math.nextUp(bound), Double.POSITIVE_INFINITY};
+                default -> new double[]{bound, Double.POSITIVE_INFINITY};
+            };
+        }
+        Matcher range = RANGE.matcher(value);
+        if (range.matches()) {
+            double lowerBound = Double.parseDouble(range.group(1));
+            double upperBound = Double.parseDouble(range.group(2));
+            if (lowerBound > upperBound) {
+                throw new IllegalArgumentException("Invalid range condition: " + conditionValue + " (lower bound exceeds upper bound)");
+            }
+            return new double[]{lowerBound, upperBound};
+        }
+        throw new IllegalArgumentException("Invalid range condition: " + conditionValue + " (expected e.g. \"<-10\", \">20\" or \"10-20\")");
+    }
+
+    /**
+     * Parses a comma-separated list of phenomenon keywords, e.g. "glaze,hail,thunder", into a bitmask
+     * of {@link WeatherPhenomenon} categories. A rule matches a weather observation if any of its
+     * categories is set in the flags of the observation.
+     *
+     * @param conditionValue the condition value to parse
+     * @return the bitmask of the categories
+     * @throws IllegalArgumentException if the condition value is empty or contains an unsupported keyword
+     */
+    static int parsePhenomena(String conditionValue) {
+        int flags = 0;
+        for (String keyword : conditionValue.split(",")) {
+            String normalizedKeyword = normalize(keyword);
+            if (!normalizedKeyword.isEmpty()) {
+                flags |= WeatherPhenomenon.fromKeyword(normalizedKeyword).getFlag();
+            }
+        }
+        if (flags == 0) {
+            throw new IllegalArgumentException("Invalid phenomenon condition: " + conditionValue);
+        }
+        return flags;
+    }
+
+    // Helper method to resolve the vehicle type ordinals an extra fee rule applies to
+    private static int[] resolveVehicleTypes(String vehicleTypes, NameIndex vehicleTypeIndexes) {
+        if (vehicleTypes == null || vehicleTypes.isBlank()) {
+            return IntStream.range(0, vehicleTypeIndexes.size()).toArray();
+        }
+        // Vehicle types missing from the registry cannot be quoted, so rules for them are ignored
+        return Arrays.stream(vehicleTypes.split(","))
+                .map(String::trim)
+                .mapToInt(vehicleTypeIndexes::indexOf)
+                .filter(vehicleTypeIndex -> vehicleTypeIndex >= 0)
+                .distinct()
+                .toArray();
+    }
+
+    // A station belongs to the city it is the primary station of, otherwise to the first city it is a fallback station of
+    private static Map<String, Integer> indexCitiesByStation(List<List<String>> stationNames) {
+        Map<String, Integer> cityIndexesByStation = new HashMap<>();
+        for (int cityIndex = 0; cityIndex < stationNames.size(); cityIndex++) {
+            cityIndexesByStation.putIfAbsent(stationNames.get(cityIndex).get(0), cityIndex);
+        }
+        for (int cityIndex = 0; cityIndex < stationNames.size(); cityIndex++) {
+            for (String stationName : stationNames.get(cityIndex)) {
+                cityIndexesByStation.putIfAbsent(stationName, cityIndex);
+            }
+        }
+        return Map.copyOf(cityIndexesByStation);
+    }
+
+    private static double[] withFee(double[] interval, double fee) {
+        return new double[]{interval[0], interval[1], fee};
+    }
+
+    private static <T> List<List<T>> createLists(int count) {
+        List<List<T>> lists = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lists.add(new ArrayList<>());
+        }
+        return lists;
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+
+    /**
+     * @param city the name of the city, in any case
+     * @return the ordinal of the city, or -1 if it is not in the registry
+     */
+    public int getCityIndex(String city) {
+        return cityIndexes.indexOf(city);
+    }
+
+    /**
+     * @param vehicleType the name of the vehicle type, in any case
+     * @return the ordinal of the vehicle type, or -1 if it is not in the registry
+     */
+    public int getVehicleTypeIndex(String vehicleType) {
+        return vehicleTypeIndexes.indexOf(vehicleType);
+    }
+
+    /**
+     * @return the lower case names of the cities of the registry, in the order of their ordinals
+     */
+    public List<String> getCities() {
+        return cityIndexes.getNames();
+    }
+
+    /**
+     * @return the lower case names of the vehicle types of the registry, in the order of their ordinals
+     */
+    public List<String> getVehicleTypes() {
+        return vehicleTypeIndexes.getNames();
+    }
+
+    /**
+     * @return the weather stations of the city, the primary station first and then its fallback stations
+     */
+    public List<String> getStationNames(int cityIndex) {
+        return stationNames.get(cityIndex);
+    }
+
+    /**
+     * @param stationName the name of the weather station
+     * @return the ordinal of the city the station is the primary station of, otherwise of the first city
+     * it is a fallback station of, or -1 if it belongs to no city of the registry
+     */
+    public int getCityIndexOfStation(String stationName) {
+        Integer index = cityIndexesByStation.get(stationName);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * @return the distinct weather stations of all cities of the registry
+     */
+    public List<String> getStationNames() {
+        return allStationNames;
+    }
+
+    /**
+     * @return the number of vehicle types, whose ordinals range from 0 to this count exclusive
+     */
+    public int getVehicleTypeCount() {
+        return vehicleTypeIndexes.size();
+    }
+
+    /**
+     * @return the base fee of the city and vehicle type, or NaN if the vehicle type is not offered in the city
+     */
+    public double getBaseFee(int cityIndex, int vehicleTypeIndex) {
+        return baseFees[cityIndex * vehicleTypeIndexes.size() + vehicleTypeIndex];
+    }
+
+    public boolean hasTemperatureRules(int vehicleTypeIndex) {
+        return temperatureRules[vehicleTypeIndex].size() > 0;
+    }
+
+    public boolean hasWindSpeedRules(int vehicleTypeIndex) {
+        return windSpeedRules[vehicleTypeIndex].size() > 0;
+    }
+
+    public boolean hasPhenomenonRules(int vehicleTypeIndex) {
+        return phenomenonRules[vehicleTypeIndex].size() > 0;
+    }
+
+    /**
+     * @return the extra fee for the air temperature, or {@link #FORBIDDEN}
+     */
+    public double getTemperatureFee(int vehicleTypeIndex, double airTemperature) {
+        return temperatureRules[vehicleTypeIndex].getFee(airTemperature);
+    }
+
+    /**
+     * @return the extra fee for the wind speed, or {@link #FORBIDDEN}
+     */
+    public double getWindSpeedFee(int vehicleTypeIndex, double windSpeed) {
+        return windSpeedRules[vehicleTypeIndex].getFee(windSpeed);
+    }
+
+    /**
+     * @param phenomenonFlags the bitmask of {@link WeatherPhenomenon} categories of the observation
+     * @return the extra fee for the weather phenomenon, or {@link #FORBIDDEN}
+     */
+    public double getPhenomenonFee(int vehicleTypeIndex, int phenomenonFlags) {
+        return phenomenonRules[vehicleTypeIndex].getFee(phenomenonFlags);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+
+    /**
+     * The condition types supported by extra fee rules.
+     */
+    public enum ConditionType {
+        TEMPERATURE, WIND_SPEED, PHENOMENON;
+
+        static ConditionType fromString(String conditionType) {
+            if (conditionType == null) {
+                throw new IllegalArgumentException("Extra fee rule must define a condition type");
+            }
+            return switch (normalize(conditionType)) {
+                case "temperature", "airtemperature" -> TEMPERATURE;
+                case "windspeed" -> WIND_SPEED;
+                case "phenomenon", "weatherphenomenon" -> PHENOMENON;
+                default -> throw new IllegalArgumentException("Unsupported condition type: " + conditionType);
+            };
+        }
+    }
+
+
+    // Inclusive numeric intervals stored as parallel primitive arrays
+    private static final class IntervalTable {
+        private final double[] lowerBounds;
+        private final double[] upperBounds;
+        private final double[] fees;
+
+        IntervalTable(List<double[]> intervals) {
+            lowerBounds = new double[intervals.size()];
+            upperBounds = new double[intervals.size()];
+            fees = new double[intervals.size()];
+            for (int i = 0; i < intervals.size(); i++) {
+                lowerBounds[i] = intervals.get(i)[0];
+                upperBounds[i] = intervals.get(i)[1];
+                fees[i] = intervals.get(i)[2];
+            }
+        }
+
+        int size() {
+            return fees.length;
+        }
+
+        double getFee(double value) {
+            double fee = 0.0;
+            for (int i = 0; i < fees.length; i++) {
+                if (lowerBounds[i] <= value && value <= upperBounds[i]) {
+                    fee = Math.max(fee, fees[i]);
+                }
+            }
+            return fee;
+        }
+    }
+
+
+    // Bitmasks of phenomenon categories, a rule matches if any of its categories is set
+    private static final class PhenomenonTable {
+        private final int[] flags;
+        private final double[] fees;
+
+        PhenomenonTable(List<Integer> flags, List<Double> fees) {
+            this.flags = flags.stream().mapToInt(Integer::intValue).toArray();
+            this.fees = fees.stream().mapToDouble(Double::doubleValue).toArray();
+        }
+
+        int size() {
+            return fees.length;
+        }
+
+        double getFee(int phenomenonFlags) {
+            double fee = 0.0;
+            for (int i = 0; i < fees.length; i++) {
+                if ((flags[i] & phenomenonFlags) != 0) {
+                    fee = Math.max(fee, fees[i]);
+                }
+            }
+            return fee;
+        }
+    }
+}
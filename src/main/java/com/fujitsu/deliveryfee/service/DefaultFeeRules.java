@@ -0,0 +1,81 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.model.BaseFeeRule;
+import com.fujitsu.deliveryfee.model.City;
+import com.fujitsu.deliveryfee.model.ExtraFeeRule;
+import com.fujitsu.deliveryfee.model.VehicleType;
+
+import java.util.List;
+
+
+/**
+ * The registry and fee rules of the delivery fee business rules, used to seed the database on first startup.
+ */
+public final class DefaultFeeRules {
+
+    private DefaultFeeRules() {
+    }
+
+
+    /**
+     * @return new instances of the default cities and their weather stations
+     */
+    public static List<City> cities() {
+        return List.of(
+                new City("tallinn", "Tallinn-Harku", null),
+                new City("tartu", "Tartu-Tõravere", null),
+                new City("pärnu", "Pärnu", null)
+        );
+    }
+
+
+    /**
+     * @return new instances of the default vehicle types
+     */
+    public static List<VehicleType> vehicleTypes() {
+        return List.of(
+                new VehicleType("car"),
+                new VehicleType("scooter"),
+                new VehicleType("bike")
+        );
+    }
+
+
+    /**
+     * @return new instances of the default base fee rules
+     */
+    public static List<BaseFeeRule> baseFeeRules() {
+        return List.of(
+                new BaseFeeRule(null, "Tallinn", "car", 4.0),
+                new BaseFeeRule(null, "Tallinn", "scooter", 3.5),
+                new BaseFeeRule(null, "Tallinn", "bike", 3.0),
+                new BaseFeeRule(null, "Tartu", "car", 3.5),
+                new BaseFeeRule(null, "Tartu", "scooter", 3.0),
+                new BaseFeeRule(null, "Tartu", "bike", 2.5),
+                new BaseFeeRule(null, "Pärnu", "car", 3.0),
+                new BaseFeeRule(null, "Pärnu", "scooter", 2.5),
+                new BaseFeeRule(null, "Pärnu", "bike", 2.0)
+        );
+    }
+
+
+    /**
+     * @return new instances of the default extra fee rules
+     */
+    public static List<ExtraFeeRule> extraFeeRules() {
+        return List.of(
+                // Air temperature extra fee
+                new ExtraFeeRule("temperature", "<-10", 1.0, "scooter,bike", false),
+                new ExtraFeeRule("temperature", "-10-0", 0.5, "scooter,bike", false),
+
+                // Wind speed extra fee
+                new ExtraFeeRule("windSpeed", "10-20", 0.5, "bike", false),
+                new ExtraFeeRule("windSpeed", ">20", null, "bike", true),
+
+                // Weather phenomenon extra fee
+                new ExtraFeeRule("phenomenon", "snow,sleet", 1.0, null, false),
+                new ExtraFeeRule("phenomenon", "shower,rain", 0.5, null, false),
+                new ExtraFeeRule("phenomenon", "glaze,hail,thunder", null, null, true)
+        );
+    }
+}
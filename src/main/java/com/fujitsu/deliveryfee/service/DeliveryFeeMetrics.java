@@ -0,0 +1,223 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.config.WeatherProperties;
+import com.fujitsu.deliveryfee.dto.DeliveryFeeErrorCode;
+import com.fujitsu.deliveryfee.exception.ServiceBusyException;
+import com.fujitsu.deliveryfee.exception.UnsupportedCityException;
+import com.fujitsu.deliveryfee.exception.UnsupportedVehicleTypeException;
+import com.fujitsu.deliveryfee.exception.VehicleUseForbiddenException;
+import com.fujitsu.deliveryfee.exception.WeatherDataUnavailableException;
+import com.fujitsu.deliveryfee.model.WeatherObservation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Micrometer meters of the delivery fee quotes and the weather data imports.
+ *
+ * Quotes are timed by {@code delivery.fee.quotes}, tagged by city, vehicle type and outcome; the count of the
+ * timer per outcome is the outcome counter. Cities and vehicle types that are not in the registry are tagged as
+ * {@code other}, so user input cannot create an unbounded number of time series. Imports are timed by
+ * {@code weather.import}, tagged by result, the feed responses of every weather provider by their time to first
+ * byte and transferred bytes, and the age of the newest observation of every configured station and of every station
+ * in the weather snapshot is published as {@code weather.observation.age}, so stations of the registry or imported
+ * with {@code weather.import-all-stations} get a gauge as soon as they first report.
+ */
+@Component
+public class DeliveryFeeMetrics {
+
+    static final String OK = "ok";
+    static final String OTHER = "other";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<QuoteTags, Timer> quoteTimers = new ConcurrentHashMap<>();
+    private final WeatherSnapshotService weatherSnapshotService;
+    private final Set<String> observedStations = ConcurrentHashMap.newKeySet();
+    private final Counter parsedStations;
+    private final Counter savedStations;
+
+    @Autowired
+    public DeliveryFeeMetrics(MeterRegistry meterRegistry, WeatherProperties weatherProperties, WeatherSnapshotService weatherSnapshotService) {
+        this.meterRegistry = meterRegistry;
+        this.weatherSnapshotService = weatherSnapshotService;
+        this.parsedStations = Counter.builder("weather.import.stations.parsed")
+                .description("Configured stations read from the weather feed")
+                .register(meterRegistry);
+        this.savedStations = Counter.builder("weather.import.stations.saved")
+                .description("Station observations saved by weather imports")
+                .register(meterRegistry);
+
+        // Configured stations are gauged before they report, the others once they appear in a snapshot
+        List<String> stations = weatherProperties.getStations();
+        registerObservationAges(stations != null ? stations : List.of());
+        registerObservationAges(weatherSnapshotService.getSnapshot().getLatestByStation().keySet());
+        weatherSnapshotService.addListener(snapshot -> registerObservationAges(snapshot.getLatestByStation().keySet()));
+    }
+
+    // Helper method to register the observation age gauges of the stations that do not have one yet
+    private void registerObservationAges(Collection<String> stationNames) {
+        for (String stationName : stationNames) {
+            if (!observedStations.add(stationName)) {
+                continue;
+            }
+            Gauge.builder("weather.observation.age", weatherSnapshotService, service -> observationAge(service.getSnapshot().getLatest(stationName)))
+                    .description("Age of the newest observation of the station, NaN if the station has not reported")
+                    .tag("station", stationName)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+    }
+
+
+    /**
+     * @return a sample to pass to {@link #recordQuote} once the quote has been calculated
+     */
+    public Timer.Sample startQuote() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Records a calculated quote.
+     *
+     * @param sample the sample started before the calculation
+     * @param rules the fee rules the quote was calculated with, which define the known cities and vehicle types
+     * @param city the requested city
+     * @param vehicleType the requested vehicle type
+     * @param outcome {@link #OK} or the outcome of the failure, see {@link #outcome}
+     */
+    public void recordQuote(Timer.Sample sample, CompiledFeeRules rules, String city, String vehicleType, String outcome) {
+        // Tags use the canonical names of the registry, which also bounds their cardinality
+        int cityIndex = rules.getCityIndex(city);
+        int vehicleTypeIndex = rules.getVehicleTypeIndex(vehicleType);
+        String cityTag = cityIndex >= 0 ? rules.getCities().get(cityIndex) : OTHER;
+        String vehicleTypeTag = vehicleTypeIndex >= 0 ? rules.getVehicleTypes().get(vehicleTypeIndex) : OTHER;
+        Timer timer = quoteTimers.computeIfAbsent(new QuoteTags(cityTag, vehicleTypeTag, outcome), tags -> Timer.builder("delivery.fee.quotes")
+                .description("Delivery fee quotes by city, vehicle type and outcome")
+                .tag("city", tags.city())
+                .tag("vehicle.type", tags.vehicleType())
+                .tag("outcome", tags.outcome())
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(10_000))
+                .maximumExpectedValue(Duration.ofSeconds(5))
+                .register(meterRegistry));
+        sample.stop(timer);
+    }
+
+    /**
+     * @param e the exception a quote failed with
+     * @return the outcome tag of the failure
+     */
+    public static String outcome(RuntimeException e) {
+        if (e instanceof UnsupportedCityException) {
+            return outcome(DeliveryFeeErrorCode.UNSUPPORTED_CITY);
+        } else if (e instanceof UnsupportedVehicleTypeException) {
+            return outcome(DeliveryFeeErrorCode.UNSUPPORTED_VEHICLE_TYPE);
+        } else if (e instanceof VehicleUseForbiddenException) {
+            return outcome(DeliveryFeeErrorCode.VEHICLE_USE_FORBIDDEN);
+        } else if (e instanceof WeatherDataUnavailableException) {
+            return outcome(DeliveryFeeErrorCode.WEATHER_DATA_UNAVAILABLE);
+        } else if (e instanceof ServiceBusyException) {
+            return outcome(DeliveryFeeErrorCode.SERVICE_BUSY);
+        }
+        return "error";
+    }
+
+    /**
+     * @param errorCode the error code of a failed quote
+     * @return the outcome tag of the failure
+     */
+    public static String outcome(DeliveryFeeErrorCode errorCode) {
+        return errorCode.name().toLowerCase(Locale.ROOT);
+    }
+
+
+    /**
+     * @return a sample to pass to {@link #recordImport} once the import has finished
+     */
+    public Timer.Sample startImport() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Records a finished weather import.
+     *
+     * @param sample the sample started before the feed was fetched
+     * @param result the result of the import: imported, unchanged, circuit_open, partial or failed
+     */
+    public void recordImport(Timer.Sample sample, String result) {
+        sample.stop(Timer.builder("weather.import")
+                .description("Duration of the weather imports by result")
+                .tag("result", result)
+                .register(meterRegistry));
+    }
+
+    /**
+     * Records the stations of a fetched feed.
+     *
+     * @param parsed the number of configured stations read from the feed
+     * @param saved the number of station observations saved
+     */
+    public void recordImportedStations(int parsed, int saved) {
+        parsedStations.increment(parsed);
+        savedStations.increment(saved);
+    }
+
+    /**
+     * @param provider the name of the weather provider
+     * @param bytes the number of bytes transferred by a weather feed response
+     */
+    public void recordFeedBytes(String provider, long bytes) {
+        DistributionSummary.builder("weather.import.feed.bytes")
+                .description("Bytes transferred by the weather feed responses, before decompression")
+                .tag("provider", provider)
+                .baseUnit("bytes")
+                .register(meterRegistry)
+                .record(bytes);
+    }
+
+    /**
+     * @param provider the name of the weather provider
+     * @param timeToFirstByte the time from sending a weather feed request until its response arrived
+     */
+    public void recordFeedTimeToFirstByte(String provider, Duration timeToFirstByte) {
+        Timer.builder("weather.import.feed.ttfb")
+                .description("Time from sending a weather feed request until its response headers arrive")
+                .tag("provider", provider)
+                .register(meterRegistry)
+                .record(timeToFirstByte);
+    }
+
+    /**
+     * Records the failed fetch of a weather provider, e.g. because it timed out.
+     *
+     * @param provider the name of the weather provider
+     */
+    public void recordProviderFailure(String provider) {
+        Counter.builder("weather.import.provider.failures")
+                .description("Failed fetches of the weather providers")
+                .tag("provider", provider)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static double observationAge(WeatherObservation observation) {
+        return observation != null ? Duration.between(observation.timestamp(), LocalDateTime.now()).toMillis() / 1000.0 : Double.NaN;
+    }
+
+    private record QuoteTags(String city, String vehicleType, String outcome) {
+    }
+}
@@ -1,35 +1,74 @@
 package com.fujitsu.deliveryfee.service;
 
+import com.fujitsu.deliveryfee.config.WeatherProperties;
+import com.fujitsu.deliveryfee.dto.DeliveryFeeErrorCode;
+import com.fujitsu.deliveryfee.dto.DeliveryFeeRequest;
+import com.fujitsu.deliveryfee.dto.DeliveryFeeResult;
+import com.fujitsu.deliveryfee.exception.ServiceBusyException;
 import com.fujitsu.deliveryfee.exception.UnsupportedCityException;
 import com.fujitsu.deliveryfee.exception.UnsupportedVehicleTypeException;
 import com.fujitsu.deliveryfee.exception.VehicleUseForbiddenException;
 import com.fujitsu.deliveryfee.exception.WeatherDataUnavailableException;
-import com.fujitsu.deliveryfee.model.WeatherData;
+import com.fujitsu.deliveryfee.model.WeatherObservation;
 import com.fujitsu.deliveryfee.repository.WeatherDataRepository;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
 
 
 /**
  * Service for calculating delivery fees based on various factors including
  * city, vehicle type, and current weather conditions. Utilizes weather data
- * to apply additional fees as per the business rules.
+ * to apply additional fees as per the business rules compiled by {@link FeeRuleEngine}.
+ *
+ * A quote is answered by the first of these that covers its datetime: the {@link FeeMatrix} of the latest
+ * weather, the in-memory {@link WeatherSnapshot}, the in-memory {@link WeatherHistoryService}, and finally
+ * the database.
  */
 @Service
 public class DeliveryFeeService {
 
     private final WeatherDataRepository weatherDataRepository;
+    private final WeatherSnapshotService weatherSnapshotService;
+    private final WeatherHistoryService weatherHistoryService;
+    private final FeeRuleEngine feeRuleEngine;
+    private final WeatherLookupBulkhead weatherLookupBulkhead;
+    private final DeliveryFeeMetrics deliveryFeeMetrics;
+    private final QuoteLog quoteLog;
+    private final WeatherProperties weatherProperties;
+    private final AtomicReference<FeeMatrix> feeMatrix = new AtomicReference<>();
+    private static final double MIN_SQUARED_DISTANCE_KM = 0.01;
+    // Stations beyond the requested number whose weather a quote by coordinates may query from the database
+    private static final int NEAREST_STATION_DATABASE_MARGIN = 2;
     private static final Logger log = LoggerFactory.getLogger(DeliveryFeeService.class);
 
     @Autowired
-    public DeliveryFeeService(WeatherDataRepository weatherDataRepository) {
+    public DeliveryFeeService(WeatherDataRepository weatherDataRepository, WeatherSnapshotService weatherSnapshotService,
+                              WeatherHistoryService weatherHistoryService, FeeRuleEngine feeRuleEngine, WeatherLookupBulkhead weatherLookupBulkhead,
+                              DeliveryFeeMetrics deliveryFeeMetrics, QuoteLog quoteLog, WeatherProperties weatherProperties) {
         this.weatherDataRepository = weatherDataRepository;
+        this.weatherSnapshotService = weatherSnapshotService;
+        this.weatherHistoryService = weatherHistoryService;
+        this.feeRuleEngine = feeRuleEngine;
+        this.weatherLookupBulkhead = weatherLookupBulkhead;
+        this.deliveryFeeMetrics = deliveryFeeMetrics;
+        this.quoteLog = quoteLog;
+        this.weatherProperties = weatherProperties;
     }
 
 
@@ -41,132 +80,516 @@ public class DeliveryFeeService {
      *
      * @param city the city where the delivery is taking place
      * @param vehicleType the type of vehicle used for the delivery
-     * @param dateTime the datetime for which the fee is being calculated
+     * @param dateTime the datetime for which the fee is being calculated, or null for the latest weather
      * @return the total calculated delivery fee
      * @throws UnsupportedCityException if the city is not supported
      * @throws UnsupportedVehicleTypeException if the vehicle type is not supported
      * @throws VehicleUseForbiddenException if the vehicle use is forbidden under current weather conditions
      * @throws WeatherDataUnavailableException if weather data is unavailable for the given time
+     * @throws ServiceBusyException if the weather data could not be looked up due to too many concurrent lookups
      */
     public double calculateDeliveryFee(String city, String vehicleType, LocalDateTime dateTime) {
-        log.info("Calculating delivery fee for city: {}, vehicle type: {}, dateTime: {}", city, vehicleType, dateTime);
-        city = city.toLowerCase();
-        vehicleType = vehicleType.toLowerCase();
+        return quoteDeliveryFee(city, vehicleType, dateTime).fee();
+    }
+
+
+
+    /**
+     * Calculates the delivery fee like {@link #calculateDeliveryFee}, and additionally returns the timestamp
+     * of the weather observation the fee is based on, which determines how long the answer stays valid.
+     * Cities and vehicle types are resolved case-insensitively through the registry of the compiled rules, and
+     * the weather of a city is taken from its primary station, or from the first of its fallback stations with
+     * fresh enough data if the primary station has none. Every quote is timed and counted by its outcome in
+     * {@link DeliveryFeeMetrics} and written to the sampled {@link QuoteLog}.
+     *
+     * @param city the city where the delivery is taking place
+     * @param vehicleType the type of vehicle used for the delivery
+     * @param dateTime the datetime for which the fee is being calculated, or null for the latest weather
+     * @return the total calculated delivery fee and the timestamp of the observation used
+     * @throws UnsupportedCityException if the city is not supported
+     * @throws UnsupportedVehicleTypeException if the vehicle type is not supported
+     * @throws VehicleUseForbiddenException if the vehicle use is forbidden under current weather conditions
+     * @throws WeatherDataUnavailableException if weather data is unavailable for the given time
+     * @throws ServiceBusyException if the weather data could not be looked up due to too many concurrent lookups
+     */
+    public FeeQuote quoteDeliveryFee(String city, String vehicleType, LocalDateTime dateTime) {
+        Timer.Sample sample = deliveryFeeMetrics.startQuote();
+        long startNanos = System.nanoTime();
+        FeeMatrix matrix = getFeeMatrix();
+        CompiledFeeRules rules = matrix.getRules();
+        FeeQuote quote;
+        try {
+            quote = calculateQuote(matrix, city, vehicleType, dateTime);
+        } catch (RuntimeException e) {
+            recordQuote(sample, startNanos, rules, city, vehicleType, dateTime, null, DeliveryFeeMetrics.outcome(e));
+            throw e;
+        }
+        recordQuote(sample, startNanos, rules, city, vehicleType, dateTime, quote.fee(), DeliveryFeeMetrics.OK);
+
+        return quote;
+    }
 
-        String stationName = mapCityToStationName(city);
-        double baseFee = calculateBaseFee(city, vehicleType);
-        double weatherFees = calculateWeatherFees(stationName, vehicleType, dateTime);
-        double totalFee = baseFee + weatherFees;
-        log.info("Total delivery fee calculated: {} for city: {}, vehicle type: {}, dateTime: {}", totalFee, city, vehicleType, dateTime);
+    /**
+     * Calculates the delivery fee for a location given by its coordinates instead of a city. The weather is taken
+     * from the nearest station within {@code weather.lookup.nearest-station-max-distance-km} that has fresh enough
+     * data, or interpolated from the given number of such stations by inverse distance weighting. The base fee is
+     * that of the city of the nearest station belonging to a city of the registry, and the nearest stations are
+     * found through the {@link StationIndex} of the snapshot. Stations whose weather is neither
+     * in the snapshot nor in the history are queried from the database for at most the given number of stations
+     * plus two, so a backdated quote runs a bounded number of lookups however many candidates are skipped.
+     *
+     * @param latitude the latitude of the location in degrees
+     * @param longitude the longitude of the location in degrees
+     * @param vehicleType the type of vehicle used for the delivery
+     * @param dateTime the datetime for which the fee is being calculated, or null for the latest weather
+     * @param stationCount the number of nearest stations to interpolate the weather from, 1 for the nearest station only
+     * @return the total calculated delivery fee and the timestamp of the oldest observation used
+     * @throws IllegalArgumentException if the coordinates are out of range or the station count is not positive
+     * @throws UnsupportedCityException if no station of a city of the registry is near the location
+     * @throws UnsupportedVehicleTypeException if the vehicle type is not supported in that city
+     * @throws VehicleUseForbiddenException if the vehicle use is forbidden under current weather conditions
+     * @throws WeatherDataUnavailableException if no station near the location has weather data for the given time
+     * @throws ServiceBusyException if the weather data could not be looked up due to too many concurrent lookups
+     */
+    public FeeQuote quoteDeliveryFeeNear(double latitude, double longitude, String vehicleType, LocalDateTime dateTime, int stationCount) {
+        StationIndex.validate(latitude, longitude);
+        if (stationCount < 1) {
+            throw new IllegalArgumentException("Station count must be positive: " + stationCount);
+        }
+        Timer.Sample sample = deliveryFeeMetrics.startQuote();
+        long startNanos = System.nanoTime();
+        CompiledFeeRules rules = feeRuleEngine.getRules();
+        WeatherProperties.Lookup lookup = weatherProperties.getLookup();
+        // Quotes are logged with the resolved city, or with the coordinates if no city was resolved
+        String city = latitude + "," + longitude;
+        FeeQuote quote;
+        try {
+            List<StationIndex.Neighbor> neighbors = weatherSnapshotService.getSnapshot().getStationIndex().findNearest(latitude, longitude,
+                    Math.max(stationCount, lookup.getNearestStationCandidates()), lookup.getNearestStationMaxDistanceKm());
+            int cityIndex = findCityIndexNear(rules, neighbors, latitude, longitude);
+            city = rules.getCities().get(cityIndex);
+            quote = calculateQuoteNear(rules, neighbors, cityIndex, latitude, longitude, vehicleType, dateTime, stationCount);
+        } catch (RuntimeException e) {
+            recordQuote(sample, startNanos, rules, city, vehicleType, dateTime, null, DeliveryFeeMetrics.outcome(e));
+            throw e;
+        }
+        recordQuote(sample, startNanos, rules, city, vehicleType, dateTime, quote.fee(), DeliveryFeeMetrics.OK);
 
-        return totalFee;
+        return quote;
     }
 
+    // Helper method to find the city of the nearest station belonging to a city of the registry
+    private static int findCityIndexNear(CompiledFeeRules rules, List<StationIndex.Neighbor> neighbors, double latitude, double longitude) {
+        for (StationIndex.Neighbor neighbor : neighbors) {
+            int cityIndex = rules.getCityIndexOfStation(neighbor.stationName());
+            if (cityIndex >= 0) {
+                return cityIndex;
+            }
+        }
+        throw new UnsupportedCityException(latitude, longitude);
+    }
 
+    // Helper method to price a location with the weather of the nearest stations with fresh enough data
+    private FeeQuote calculateQuoteNear(CompiledFeeRules rules, List<StationIndex.Neighbor> neighbors, int cityIndex, double latitude,
+                                        double longitude, String vehicleType, LocalDateTime dateTime, int stationCount) {
+        int vehicleTypeIndex = rules.getVehicleTypeIndex(vehicleType);
+        double baseFee = calculateBaseFee(rules, cityIndex, vehicleType, vehicleTypeIndex);
 
-    private double calculateBaseFee(String city, String vehicleType) {
-        switch (city) {
-            case "tallinn":
-                switch (vehicleType) {
-                    case "car": return 4.0;
-                    case "scooter": return 3.5;
-                    case "bike": return 3.0;
-                    default: throw new UnsupportedVehicleTypeException(vehicleType);
+        // Nearer stations without fresh enough data are skipped in favour of the next nearest ones,
+        // but only a few of them may be looked up in the database
+        List<WeatherObservation> observations = new ArrayList<>(stationCount);
+        double[] distancesKm = new double[stationCount];
+        String nearestStationName = null;
+        int databaseLookups = 0;
+        for (int i = 0; i < neighbors.size() && observations.size() < stationCount; i++) {
+            StationIndex.Neighbor neighbor = neighbors.get(i);
+            WeatherObservation weather = findInMemoryWeatherData(neighbor.stationName(), dateTime);
+            if (weather == null) {
+                if (databaseLookups == stationCount + NEAREST_STATION_DATABASE_MARGIN) {
+                    continue;
                 }
-            case "tartu":
-                switch (vehicleType) {
-                    case "car": return 3.5;
-                    case "scooter": return 3.0;
-                    case "bike": return 2.5;
-                    default: throw new UnsupportedVehicleTypeException(vehicleType);
+                databaseLookups++;
+                try {
+                    weather = queryWeatherData(neighbor.stationName(), dateTime);
+                } catch (WeatherDataUnavailableException e) {
+                    continue;
                 }
-            case "pärnu":
-                switch (vehicleType) {
-                    case "car": return 3.0;
-                    case "scooter": return 2.5;
-                    case "bike": return 2.0;
-                    default: throw new UnsupportedVehicleTypeException(vehicleType);
+            }
+            if (isStale(weather.timestamp(), dateTime)) {
+                continue;
+            }
+            if (nearestStationName == null) {
+                nearestStationName = neighbor.stationName();
+            }
+            distancesKm[observations.size()] = neighbor.distanceKm();
+            observations.add(weather);
+        }
+        if (observations.isEmpty()) {
+            throw new WeatherDataUnavailableException("No weather data available within " + weatherProperties.getLookup().getNearestStationMaxDistanceKm()
+                    + " km of " + latitude + ", " + longitude + " at the requested time.");
+        }
+        WeatherObservation weather = interpolate(observations, distancesKm);
+        return new FeeQuote(baseFee + calculateWeatherFees(rules, nearestStationName, vehicleTypeIndex, weather), weather.timestamp());
+    }
+
+    // Inverse distance weighted temperature and wind speed, the phenomenon of the nearest station and the oldest timestamp
+    static WeatherObservation interpolate(List<WeatherObservation> observations, double[] distancesKm) {
+        if (observations.size() == 1) {
+            return observations.get(0);
+        }
+        double airTemperatureSum = 0.0;
+        double airTemperatureWeight = 0.0;
+        double windSpeedSum = 0.0;
+        double windSpeedWeight = 0.0;
+        LocalDateTime oldestTimestamp = null;
+        for (int i = 0; i < observations.size(); i++) {
+            WeatherObservation observation = observations.get(i);
+            // Stations closer than 100 m are weighted alike, so a station at the location does not divide by zero
+            double weight = 1.0 / Math.max(distancesKm[i] * distancesKm[i], MIN_SQUARED_DISTANCE_KM);
+            if (observation.airTemperature() != null) {
+                airTemperatureSum += weight * observation.airTemperature();
+                airTemperatureWeight += weight;
+            }
+            if (observation.windSpeed() != null) {
+                windSpeedSum += weight * observation.windSpeed();
+                windSpeedWeight += weight;
+            }
+            if (oldestTimestamp == null || observation.timestamp().isBefore(oldestTimestamp)) {
+                oldestTimestamp = observation.timestamp();
+            }
+        }
+        return new WeatherObservation(airTemperatureWeight > 0 ? airTemperatureSum / airTemperatureWeight : null,
+                windSpeedWeight > 0 ? windSpeedSum / windSpeedWeight : null, observations.get(0).phenomenonFlags(), oldestTimestamp);
+    }
+
+    // Answers the quote from the fee matrix if it covers the datetime, otherwise calculates it
+    private FeeQuote calculateQuote(FeeMatrix matrix, String city, String vehicleType, LocalDateTime dateTime) {
+        double matrixFee = matrix.getFee(city, vehicleType, dateTime);
+        // Stale weather in the matrix is left to the full calculation, which may fall back to another station
+        if (!Double.isNaN(matrixFee)) {
+            LocalDateTime observedAt = matrix.getObservedAt(city);
+            if (!isStale(observedAt, dateTime)) {
+                if (matrixFee == CompiledFeeRules.FORBIDDEN) {
+                    throw new VehicleUseForbiddenException();
                 }
-            default: throw new UnsupportedCityException(city);
+                return new FeeQuote(matrixFee, observedAt);
+            }
         }
+        WeatherObservation[] usedWeather = new WeatherObservation[1];
+        double fee = calculateFee(matrix.getRules(), city, vehicleType, dateTime,
+                (stationName, lookupDateTime) -> usedWeather[0] = findWeatherData(stationName, lookupDateTime));
+        return new FeeQuote(fee, usedWeather[0].timestamp());
     }
 
-    private double calculateWeatherFees(String stationName, String vehicleType, LocalDateTime dateTime) {
-        List<WeatherData> weatherDataList = weatherDataRepository.findByCityAndTimestampBefore(
-                stationName,
-                dateTime != null ? dateTime : LocalDateTime.now(),
-                PageRequest.of(0, 1) // Fetch only the top result
-        );
 
-        if (weatherDataList.isEmpty()) {
-            throw new WeatherDataUnavailableException("No weather data available for " + stationName + " at the requested time.");
+
+    /**
+     * Calculates the delivery fees for a batch of requests. Failures of single requests do not fail
+     * the batch but are reported as the error code of the corresponding result, including weather
+     * lookups refused by the {@link WeatherLookupBulkhead}. All requests are
+     * priced with the same fee rules, and the weather data of each distinct station and datetime is
+     * looked up only once per batch. Requests without a datetime are priced with the latest weather data.
+     *
+     * @param requests the delivery fee requests
+     * @return the results in the order of the requests
+     */
+    public List<DeliveryFeeResult> calculateDeliveryFees(List<DeliveryFeeRequest> requests) {
+        CompiledFeeRules rules = feeRuleEngine.getRules();
+        Map<WeatherLookupKey, Object> weatherLookups = new HashMap<>();
+        BiFunction<String, LocalDateTime, WeatherObservation> batchWeatherLookup = (stationName, dateTime) -> {
+            // Found weather data is remembered, and so are missing weather data and lookups refused by the bulkhead,
+            // so a busy database fails each distinct lookup of the batch only once
+            Object weather = weatherLookups.computeIfAbsent(new WeatherLookupKey(stationName, dateTime), key -> {
+                try {
+                    return findWeatherData(stationName, dateTime);
+                } catch (WeatherDataUnavailableException | ServiceBusyException e) {
+                    return e;
+                }
+            });
+            if (weather instanceof RuntimeException e) {
+                throw e;
+            }
+            return (WeatherObservation) weather;
+        };
+
+        List<DeliveryFeeResult> results = new ArrayList<>(requests.size());
+        int failed = 0;
+        for (DeliveryFeeRequest request : requests) {
+            Timer.Sample sample = deliveryFeeMetrics.startQuote();
+            long startNanos = System.nanoTime();
+            DeliveryFeeResult result = calculateBatchFee(rules, request, batchWeatherLookup);
+            String outcome = DeliveryFeeMetrics.OK;
+            if (result.getErrorCode() != null) {
+                failed++;
+                outcome = DeliveryFeeMetrics.outcome(result.getErrorCode());
+            }
+            recordQuote(sample, startNanos, rules, request != null ? request.getCity() : null, request != null ? request.getVehicleType() : null,
+                    request != null ? request.getDateTime() : null, result.getFee(), outcome);
+            results.add(result);
         }
+        log.info("Calculated {} delivery fees in batch, {} failed, {} distinct weather lookups", results.size(), failed, weatherLookups.size());
+        return results;
+    }
 
-        WeatherData latestWeather = weatherDataList.get(0);
-        double fee = 0.0;
+    /**
+     * Returns the fee matrix of the current fee rules and weather snapshot, building it if either
+     * has changed since the matrix was last built, i.e. on the first quote after an import or a change of the fee rules. Concurrent callers may build the same matrix
+     * more than once, which is harmless as it is immutable.
+     *
+     * @return the current fee matrix
+     */
+    public FeeMatrix getFeeMatrix() {
+        CompiledFeeRules rules = feeRuleEngine.getRules();
+        WeatherSnapshot snapshot = weatherSnapshotService.getSnapshot();
+        FeeMatrix matrix = feeMatrix.get();
+        if (matrix == null || matrix.getRules() != rules || matrix.getSnapshot() != snapshot) {
+            matrix = buildFeeMatrix(rules, snapshot);
+            feeMatrix.set(matrix);
+        }
+        return matrix;
+    }
+
+    // Prices every city and vehicle type of the rules with the newest weather of the snapshot only
+    private FeeMatrix buildFeeMatrix(CompiledFeeRules rules, WeatherSnapshot snapshot) {
+        WeatherObservation[] usedWeather = new WeatherObservation[1];
+        BiFunction<String, LocalDateTime, WeatherObservation> snapshotLookup = (stationName, dateTime) -> {
+            WeatherObservation weather = snapshot.getLatest(stationName);
+            if (weather == null) {
+                throw new WeatherDataUnavailableException("No weather data available for " + stationName + " at the requested time.");
+            }
+            return usedWeather[0] = weather;
+        };
+        List<String> cities = rules.getCities();
+        List<String> vehicleTypes = rules.getVehicleTypes();
+        double[] fees = new double[cities.size() * vehicleTypes.size()];
+        LocalDateTime[] observedAt = new LocalDateTime[cities.size()];
+        Map<String, LocalDateTime> observedAtByCity = new LinkedHashMap<>();
+        Map<String, Map<String, DeliveryFeeResult>> results = new LinkedHashMap<>();
 
+        for (int cityIndex = 0; cityIndex < cities.size(); cityIndex++) {
+            String city = cities.get(cityIndex);
+            usedWeather[0] = null;
+            Map<String, DeliveryFeeResult> cityResults = new LinkedHashMap<>();
+            for (int vehicleTypeIndex = 0; vehicleTypeIndex < vehicleTypes.size(); vehicleTypeIndex++) {
+                DeliveryFeeRequest request = new DeliveryFeeRequest();
+                request.setCity(city);
+                request.setVehicleType(vehicleTypes.get(vehicleTypeIndex));
+                DeliveryFeeResult result = calculateBatchFee(rules, request, snapshotLookup);
+                cityResults.put(request.getVehicleType(), result);
 
-        // Check weather conditions that affect both scooters and bikes
-        if ("scooter".equals(vehicleType) || "bike".equals(vehicleType)) {
-            if (latestWeather.getAirTemperature() != null) {
-                if (latestWeather.getAirTemperature() < -10) {
-                    fee += 1.0;
-                } else if (latestWeather.getAirTemperature() >= -10 && latestWeather.getAirTemperature() <= 0) {
-                    fee += 0.5;
+                // Errors other than a forbidden vehicle are left to the full calculation, which reports them
+                fees[cityIndex * vehicleTypes.size() + vehicleTypeIndex] = result.getFee() != null ? result.getFee()
+                        : result.getErrorCode() == DeliveryFeeErrorCode.VEHICLE_USE_FORBIDDEN ? CompiledFeeRules.FORBIDDEN : Double.NaN;
+            }
+            results.put(city, Collections.unmodifiableMap(cityResults));
+
+            // Every vehicle type of a city resolves the same station, the last one whose weather was looked up
+            observedAt[cityIndex] = usedWeather[0] != null ? usedWeather[0].timestamp() : null;
+            observedAtByCity.put(city, observedAt[cityIndex]);
+        }
+        return new FeeMatrix(rules, snapshot, fees, observedAt,
+                Collections.unmodifiableMap(observedAtByCity), Collections.unmodifiableMap(results));
+    }
+
+    // Helper method to record a quote in the metrics and the quote log
+    private void recordQuote(Timer.Sample sample, long startNanos, CompiledFeeRules rules, String city, String vehicleType,
+                             LocalDateTime dateTime, Double fee, String outcome) {
+        deliveryFeeMetrics.recordQuote(sample, rules, city, vehicleType, outcome);
+        quoteLog.log(city, vehicleType, dateTime, fee, outcome, System.nanoTime() - startNanos);
+    }
+
+    private DeliveryFeeResult calculateBatchFee(CompiledFeeRules rules, DeliveryFeeRequest request,
+                                                BiFunction<String, LocalDateTime, WeatherObservation> weatherLookup) {
+        if (request == null || request.getCity() == null || request.getVehicleType() == null) {
+            return DeliveryFeeResult.failure(DeliveryFeeErrorCode.INVALID_REQUEST, "City and vehicle type are required");
+        }
+        try {
+            return DeliveryFeeResult.success(calculateFee(rules, request.getCity(), request.getVehicleType(), request.getDateTime(), weatherLookup));
+        } catch (UnsupportedCityException e) {
+            return DeliveryFeeResult.failure(DeliveryFeeErrorCode.UNSUPPORTED_CITY, e.getMessage());
+        } catch (UnsupportedVehicleTypeException e) {
+            return DeliveryFeeResult.failure(DeliveryFeeErrorCode.UNSUPPORTED_VEHICLE_TYPE, e.getMessage());
+        } catch (VehicleUseForbiddenException e) {
+            return DeliveryFeeResult.failure(DeliveryFeeErrorCode.VEHICLE_USE_FORBIDDEN, e.getMessage());
+        } catch (WeatherDataUnavailableException e) {
+            return DeliveryFeeResult.failure(DeliveryFeeErrorCode.WEATHER_DATA_UNAVAILABLE, e.getMessage());
+        } catch (ServiceBusyException e) {
+            return DeliveryFeeResult.failure(DeliveryFeeErrorCode.SERVICE_BUSY, e.getMessage());
+        }
+    }
+
+    // Helper method to calculate the total fee of a single request, using the given weather data lookup
+    private double calculateFee(CompiledFeeRules rules, String city, String vehicleType, LocalDateTime dateTime,
+                                BiFunction<String, LocalDateTime, WeatherObservation> weatherLookup) {
+        int cityIndex = rules.getCityIndex(city);
+        if (cityIndex < 0) {
+            throw new UnsupportedCityException(city);
+        }
+        int vehicleTypeIndex = rules.getVehicleTypeIndex(vehicleType);
+        double baseFee = calculateBaseFee(rules, cityIndex, vehicleType, vehicleTypeIndex);
+
+        // The stations are tried in order, and the first missing or stale data is reported if none has usable data
+        WeatherDataUnavailableException unavailable = null;
+        for (String stationName : rules.getStationNames(cityIndex)) {
+            WeatherObservation weather;
+            try {
+                weather = weatherLookup.apply(stationName, dateTime);
+                checkStaleness(stationName, weather.timestamp(), dateTime);
+            } catch (WeatherDataUnavailableException e) {
+                if (unavailable == null) {
+                    unavailable = e;
                 }
+                continue;
+            }
+            double weatherFees = calculateWeatherFees(rules, stationName, vehicleTypeIndex, weather);
+            return baseFee + weatherFees;
+        }
+        throw unavailable;
+    }
+
+    // Rejects weather data that is older than the maximum staleness at the quoted time, or now for the latest or future weather,
+    // so that quotes keep using the last imported weather while imports fail, but not aging data indefinitely
+    private void checkStaleness(String location, LocalDateTime observedAt, LocalDateTime dateTime) {
+        if (isStale(observedAt, dateTime)) {
+            throw new WeatherDataUnavailableException("Weather data for " + location + " was observed at " + observedAt
+                    + ", more than " + weatherProperties.getLookup().getMaxStaleness() + " before the requested time.");
+        }
+    }
+
+    // The bound is meant for failing imports, so it does not apply to observations the retention job has downsampled
+    private boolean isStale(LocalDateTime observedAt, LocalDateTime dateTime) {
+        Duration maxStaleness = weatherProperties.getLookup().getMaxStaleness();
+        if (maxStaleness == null || maxStaleness.isZero()) {
+            return false;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        // Future quotes are priced with the latest weather, whose age is measured now
+        if (dateTime == null || dateTime.isAfter(now)) {
+            return observedAt.plus(maxStaleness).isBefore(now);
+        }
+        // Days before the full resolution window only keep the observations that change fees, so long gaps are expected there
+        LocalDate fullResolutionStart = now.minus(weatherProperties.getRetention().getFullResolution()).toLocalDate();
+        return !observedAt.toLocalDate().isBefore(fullResolutionStart) && observedAt.plus(maxStaleness).isBefore(dateTime);
+    }
+
+
+
+    private double calculateBaseFee(CompiledFeeRules rules, int cityIndex, String vehicleType, int vehicleTypeIndex) {
+        if (vehicleTypeIndex < 0) {
+            throw new UnsupportedVehicleTypeException(vehicleType);
+        }
+        double baseFee = rules.getBaseFee(cityIndex, vehicleTypeIndex);
+        if (Double.isNaN(baseFee)) {
+            throw new UnsupportedVehicleTypeException(vehicleType);
+        }
+        return baseFee;
+    }
+
+    private double calculateWeatherFees(CompiledFeeRules rules, String stationName, int vehicleTypeIndex, WeatherObservation latestWeather) {
+        double fee = 0.0;
+
+
+        // Air temperature rules, by default for scooters and bikes
+        if (rules.hasTemperatureRules(vehicleTypeIndex)) {
+            if (latestWeather.airTemperature() != null) {
+                fee += rules.getTemperatureFee(vehicleTypeIndex, latestWeather.airTemperature());
             } else {
                 log.warn("Station {} has not reported air temperature, calculated fee may not accurately reflect weather conditions.", stationName);
             }
         }
 
 
-        if (latestWeather.getWeatherPhenomenon() != null) {
-            String phenomenon = latestWeather.getWeatherPhenomenon().toLowerCase();
-            if (phenomenon.contains("snow") || phenomenon.contains("sleet")) {
-                fee += 1.0;
-            } else if (phenomenon.contains("shower")) {
-                if (phenomenon.contains("snow shower")) {
-                    fee += 1.0;
-                } else {
-                    fee += 0.5;
-                }
-            } else if (phenomenon.contains("rain")) {
-                fee += 0.5;
-            } else if (phenomenon.contains("glaze") || phenomenon.contains("hail") || phenomenon.contains("thunder")) {
-                throw new VehicleUseForbiddenException();
+        // Weather phenomenon rules, matched against the categories classified on import
+        if (rules.hasPhenomenonRules(vehicleTypeIndex)) {
+            if (latestWeather.phenomenonFlags() != null) {
+                fee += rules.getPhenomenonFee(vehicleTypeIndex, latestWeather.phenomenonFlags());
+            } else {
+                log.warn("Station {} has not reported weather phenomenon, calculated fee may not accurately reflect weather conditions.", stationName);
             }
-        } else {
-            log.warn("Station {} has not reported weather phenomenon, calculated fee may not accurately reflect weather conditions.", stationName);
-
         }
 
 
-        // Additional weather conditions specific to bikes
-        if ("bike".equals(vehicleType)) {
-            if (latestWeather.getWindSpeed() != null) {
-                if (latestWeather.getWindSpeed() >= 10 && latestWeather.getWindSpeed() <= 20) {
-                    fee += 0.5;
-                } else if (latestWeather.getWindSpeed() > 20) {
-                    throw new VehicleUseForbiddenException();
-                }
+        // Wind speed rules, by default for bikes only
+        if (rules.hasWindSpeedRules(vehicleTypeIndex)) {
+            if (latestWeather.windSpeed() != null) {
+                fee += rules.getWindSpeedFee(vehicleTypeIndex, latestWeather.windSpeed());
             } else {
                 log.warn("Station {} has not reported wind speed, calculated fee may not accurately reflect weather conditions.", stationName);
             }
         }
 
+        // Any matching rule that forbids the vehicle makes the sum infinite
+        if (fee == CompiledFeeRules.FORBIDDEN) {
+            throw new VehicleUseForbiddenException();
+        }
         return fee;
     }
 
-    private String mapCityToStationName(String city) {
-        switch (city) {
-            case "tallinn":
-                return "Tallinn-Harku";
-            case "tartu":
-                return "Tartu-Tõravere";
-            case "pärnu":
-                return "Pärnu";
-            default:
-                throw new UnsupportedCityException(city);
+    /**
+     * Checks whether the delivery fee for the given city and datetime can be calculated without a blocking
+     * database lookup. The stations of the city are checked in the order the calculation tries them: the answer
+     * is true once a station has fresh enough weather in the in-memory snapshot or history, false as soon as a
+     * station has to be looked up in the database, and true if the city is not supported or every station only has stale weather in memory.
+     * Callers on non-blocking threads use this to decide whether the calculation has to be offloaded.
+     *
+     * @param city the city where the delivery is taking place
+     * @param dateTime the datetime for which the fee is being calculated, or null for the latest weather
+     * @return true if calculating the fee does not query the database
+     */
+    public boolean isCalculatedInMemory(String city, LocalDateTime dateTime) {
+        CompiledFeeRules rules = feeRuleEngine.getRules();
+        int cityIndex = rules.getCityIndex(city);
+        if (cityIndex < 0) {
+            return true;
+        }
+        // Stale weather of a station makes the calculation fall back to the next station, which may need the database
+        for (String stationName : rules.getStationNames(cityIndex)) {
+            WeatherObservation weather = findInMemoryWeatherData(stationName, dateTime);
+            if (weather == null) {
+                return false;
+            }
+            if (!isStale(weather.timestamp(), dateTime)) {
+                return true;
+            }
+        }
+        return true;
+    }
+
+    // The snapshot holds the newest observation of the station, so it is the answer for any later datetime
+    private boolean isCoveredBySnapshot(WeatherObservation snapshotWeather, LocalDateTime dateTime) {
+        return snapshotWeather != null && (dateTime == null || !snapshotWeather.timestamp().isAfter(dateTime));
+    }
+
+    // Helper method to find the latest weather observation of a station at or before the given datetime, or at all if it is null.
+    // The database is only queried for dates the snapshot and the history do not cover
+    private WeatherObservation findWeatherData(String stationName, LocalDateTime dateTime) {
+        WeatherObservation weather = findInMemoryWeatherData(stationName, dateTime);
+        return weather != null ? weather : queryWeatherData(stationName, dateTime);
+    }
+
+    // Helper method to find the weather in the snapshot or the history, null if the database has to be queried
+    private WeatherObservation findInMemoryWeatherData(String stationName, LocalDateTime dateTime) {
+        WeatherObservation snapshotWeather = weatherSnapshotService.getSnapshot().getLatest(stationName);
+        if (isCoveredBySnapshot(snapshotWeather, dateTime)) {
+            return snapshotWeather;
         }
+        return dateTime != null ? weatherHistoryService.findAtOrBefore(stationName, dateTime) : null;
+    }
+
+    // Helper method to query the weather from the database through the bulkhead, which bounds the concurrent lookups,
+    // reading only the WeatherObservation projection of the matching row
+    private WeatherObservation queryWeatherData(String stationName, LocalDateTime dateTime) {
+        // Separate query shapes, so that the time filter can always use the (stationName, timestamp) index
+        List<WeatherObservation> observations = weatherLookupBulkhead.execute(() -> dateTime == null
+                ? weatherDataRepository.findLatestObservations(stationName, PageRequest.of(0, 1))
+                : weatherDataRepository.findObservationsAtOrBefore(stationName, dateTime, PageRequest.of(0, 1)));
+
+        if (observations.isEmpty()) {
+            throw new WeatherDataUnavailableException("No weather data available for " + stationName + " at the requested time.");
+        }
+        return observations.get(0);
+    }
+
+    private record WeatherLookupKey(String stationName, LocalDateTime dateTime) {
     }
 }
\ No newline at end of file
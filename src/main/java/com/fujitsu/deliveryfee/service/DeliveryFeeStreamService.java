@@ -0,0 +1,192 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fujitsu.deliveryfee.dto.DeliveryFeeErrorCode;
+import com.fujitsu.deliveryfee.dto.DeliveryFeeRequest;
+import com.fujitsu.deliveryfee.dto.DeliveryFeeResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Service for pricing large amounts of delivery fee requests as newline-delimited JSON (NDJSON).
+ * Requests are read incrementally and priced in chunks through {@link DeliveryFeeService#calculateDeliveryFees},
+ * and the results of each chunk are written and flushed before the next chunk is read. Memory use is therefore
+ * bounded by the chunk size, and a slow consumer slows down reading instead of buffering results.
+ * The same parsing, chunking and summary are offered to the reactive stack through {@link #streamDeliveryFees(Flux)}.
+ */
+@Service
+public class DeliveryFeeStreamService {
+
+    private static final Logger log = LoggerFactory.getLogger(DeliveryFeeStreamService.class);
+    private static final int CHUNK_SIZE = 1000;
+
+    private final DeliveryFeeService deliveryFeeService;
+    private final ObjectReader requestReader;
+    private final ObjectWriter resultWriter;
+
+    @Autowired
+    public DeliveryFeeStreamService(DeliveryFeeService deliveryFeeService, ObjectMapper objectMapper) {
+        this.deliveryFeeService = deliveryFeeService;
+        this.requestReader = objectMapper.readerFor(DeliveryFeeRequest.class);
+        this.resultWriter = objectMapper.writerFor(DeliveryFeeResult.class);
+    }
+
+
+    /**
+     * Reads one {@link DeliveryFeeRequest} per line from the input and writes one {@link DeliveryFeeResult} per line
+     * to the output, in the same order. Blank lines are skipped, and lines that cannot be parsed produce an
+     * {@link DeliveryFeeErrorCode#INVALID_REQUEST} result.
+     *
+     * @param input the NDJSON requests
+     * @param output the stream the NDJSON results are written to
+     * @return the summary of the processed requests
+     * @throws IOException if reading the requests or writing the results fails
+     */
+    public DeliveryFeeStreamSummary streamDeliveryFees(InputStream input, OutputStream output) throws IOException {
+        long startNanos = System.nanoTime();
+        long processed = 0;
+        long failed = 0;
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        OutputStream bufferedOutput = new BufferedOutputStream(output);
+        List<String> lines = new ArrayList<>(CHUNK_SIZE);
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            lines.add(line);
+            if (lines.size() == CHUNK_SIZE) {
+                failed += writeChunk(calculateDeliveryFees(lines), bufferedOutput);
+                processed += lines.size();
+                lines.clear();
+            }
+        }
+        if (!lines.isEmpty()) {
+            failed += writeChunk(calculateDeliveryFees(lines), bufferedOutput);
+            processed += lines.size();
+        }
+        bufferedOutput.flush();
+
+        return summarize(processed, failed, startNanos);
+    }
+
+
+    /**
+     * Reactive variant of {@link #streamDeliveryFees(InputStream, OutputStream)}: prices one {@link DeliveryFeeRequest}
+     * per line and emits one {@link DeliveryFeeResult} per non-blank line, in the same order. Chunks are priced one
+     * at a time on the bounded elastic scheduler, as pricing may query the database, and the summary is logged
+     * when the requests are complete.
+     *
+     * @param lines the NDJSON request lines
+     * @return the results, one per non-blank line
+     */
+    public Flux<DeliveryFeeResult> streamDeliveryFees(Flux<String> lines) {
+        return Flux.defer(() -> {
+            long startNanos = System.nanoTime();
+            AtomicLong processed = new AtomicLong();
+            AtomicLong failed = new AtomicLong();
+            return lines.filter(line -> !line.isBlank())
+                    .buffer(CHUNK_SIZE)
+                    .concatMap(chunk -> Mono.fromCallable(() -> calculateDeliveryFees(chunk))
+                            .subscribeOn(Schedulers.boundedElastic()))
+                    .doOnNext(results -> {
+                        processed.addAndGet(results.size());
+                        failed.addAndGet(results.stream().filter(result -> result.getErrorCode() != null).count());
+                    })
+                    .doOnComplete(() -> summarize(processed.get(), failed.get(), startNanos))
+                    .flatMapIterable(results -> results);
+        });
+    }
+
+
+    /**
+     * Prices one chunk of NDJSON request lines as a batch that shares its weather lookups.
+     * Lines that cannot be parsed produce an {@link DeliveryFeeErrorCode#INVALID_REQUEST} result.
+     *
+     * @param lines the non-blank request lines of the chunk
+     * @return one result per line, in the same order
+     */
+    public List<DeliveryFeeResult> calculateDeliveryFees(List<String> lines) {
+        List<DeliveryFeeRequest> requests = new ArrayList<>(lines.size());
+        List<String> parseErrors = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            try {
+                requests.add(requestReader.readValue(line));
+                parseErrors.add(null);
+            } catch (JsonProcessingException e) {
+                requests.add(null);
+                parseErrors.add("Invalid request: " + e.getOriginalMessage());
+            }
+        }
+
+        List<DeliveryFeeResult> results = new ArrayList<>(deliveryFeeService.calculateDeliveryFees(requests));
+        for (int i = 0; i < results.size(); i++) {
+            if (parseErrors.get(i) != null) {
+                results.set(i, DeliveryFeeResult.failure(DeliveryFeeErrorCode.INVALID_REQUEST, parseErrors.get(i)));
+            }
+        }
+        return results;
+    }
+
+    // Helper method to write the results of one chunk, returns the number of failed requests
+    private long writeChunk(List<DeliveryFeeResult> results, OutputStream output) throws IOException {
+        long failed = 0;
+        for (DeliveryFeeResult result : results) {
+            if (result.getErrorCode() != null) {
+                failed++;
+            }
+            output.write(resultWriter.writeValueAsBytes(result));
+            output.write('\n');
+        }
+        output.flush();
+        return failed;
+    }
+
+    // Helper method to log the summary of a stream
+    private DeliveryFeeStreamSummary summarize(long processed, long failed, long startNanos) {
+        DeliveryFeeStreamSummary summary = new DeliveryFeeStreamSummary(processed, failed, System.nanoTime() - startNanos);
+        log.info("Streamed {} delivery fees, {} failed, in {} ms ({} fees/s)",
+                summary.processed(), summary.failed(), summary.elapsedNanos() / 1_000_000, Math.round(summary.getThroughput()));
+        return summary;
+    }
+
+
+    /**
+     * Summary of a streamed delivery fee calculation.
+     *
+     * @param processed the number of processed requests
+     * @param failed the number of requests that produced an error result
+     * @param elapsedNanos the processing time in nanoseconds
+     */
+    public record DeliveryFeeStreamSummary(long processed, long failed, long elapsedNanos) {
+
+        /**
+         * @return the number of processed requests per second
+         */
+        public double getThroughput() {
+            return elapsedNanos > 0 ? processed * 1_000_000_000.0 / elapsedNanos : 0.0;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.config.WeatherProperties;
+import com.fujitsu.deliveryfee.exception.WeatherDataProcessingException;
+import com.fujitsu.deliveryfee.integration.Observations;
+import com.fujitsu.deliveryfee.integration.ObservationsReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+
+/**
+ * Weather provider of the observations XML feed of the Estonian Environment Agency, configured by {@code weather.feed}.
+ * A feed whose observation time has already been imported for the same stations is skipped without reading
+ * its stations. It comes first among the providers, so its observations win ties.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class EstonianWeatherProvider extends HttpWeatherProvider {
+
+    static final String NAME = "estonia";
+
+    private static final Logger log = LoggerFactory.getLogger(EstonianWeatherProvider.class);
+    private final WeatherProperties weatherProperties;
+
+    // Observation time of the last acknowledged feed, and of the last fetched one until it is acknowledged
+    private volatile LocalDateTime importedObservedAt;
+    private volatile LocalDateTime fetchedObservedAt;
+
+    @Autowired
+    public EstonianWeatherProvider(RestTemplate restTemplate, WeatherProperties weatherProperties, DeliveryFeeMetrics deliveryFeeMetrics) {
+        super(NAME, restTemplate, deliveryFeeMetrics);
+        this.weatherProperties = weatherProperties;
+    }
+
+
+    // The feed is polled on the schedule of weather.feed.cron
+    @Override
+    public String getCron() {
+        return null;
+    }
+
+    @Override
+    public Duration getTimeout() {
+        return weatherProperties.getFeed().getTimeout();
+    }
+
+    @Override
+    protected String getUrl() {
+        return weatherProperties.getFeed().getUrl();
+    }
+
+    @Override
+    protected Observations read(InputStream body, Set<String> stationNames) {
+        try {
+            // Stations added since the last import are read from the feed even if its observation time was imported
+            LocalDateTime skippedObservedAt = hasImportedStations(stationNames) ? importedObservedAt : null;
+            Observations observations = ObservationsReader.read(body, stationNames, skippedObservedAt);
+            if (observations == null) {
+                log.debug("Weather data feed already imported for {}, skipping import.", importedObservedAt);
+            }
+            fetchedObservedAt = observations != null ? observations.observedAt() : importedObservedAt;
+            return observations;
+        } catch (XMLStreamException e) {
+            log.error("Failed to process weather data XML", e);
+            throw new WeatherDataProcessingException("Failed to process weather data XML", e);
+        }
+    }
+
+    @Override
+    public void acknowledge() {
+        super.acknowledge();
+        importedObservedAt = fetchedObservedAt;
+    }
+}
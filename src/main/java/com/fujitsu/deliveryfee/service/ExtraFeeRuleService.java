@@ -12,15 +12,18 @@ import java.util.Optional;
 /**
  * Service class for managing extra fee rules.
  * Provides methods to perform CRUD operations on ExtraFeeRule entities.
+ * Every change is validated first and then triggers a recompilation of the fee rules in {@link FeeRuleEngine}.
  */
 @Service
 public class ExtraFeeRuleService {
 
     private final ExtraFeeRuleRepository extraFeeRuleRepository;
+    private final FeeRuleEngine feeRuleEngine;
 
     @Autowired
-    public ExtraFeeRuleService(ExtraFeeRuleRepository extraFeeRuleRepository) {
+    public ExtraFeeRuleService(ExtraFeeRuleRepository extraFeeRuleRepository, FeeRuleEngine feeRuleEngine) {
         this.extraFeeRuleRepository = extraFeeRuleRepository;
+        this.feeRuleEngine = feeRuleEngine;
     }
 
 
@@ -28,9 +31,13 @@ public class ExtraFeeRuleService {
      * Creates a new extra fee rule.
      * @param extraFeeRule The extra fee rule to be created
      * @return The created extra fee rule
+     * @throws IllegalArgumentException if the extra fee rule is invalid
      */
     public ExtraFeeRule createExtraFeeRule(ExtraFeeRule extraFeeRule) {
-        return extraFeeRuleRepository.save(extraFeeRule);
+        CompiledFeeRules.validate(extraFeeRule);
+        ExtraFeeRule createdExtraFeeRule = extraFeeRuleRepository.save(extraFeeRule);
+        feeRuleEngine.reload();
+        return createdExtraFeeRule;
     }
 
 
@@ -59,14 +66,20 @@ public class ExtraFeeRuleService {
      * @param extraFeeRuleDetails The updated details of the extra fee rule
      * @return The updated extra fee rule
      * @throws FeeRuleNotFoundException if the extra fee rule with the given ID is not found
+     * @throws IllegalArgumentException if the updated details are invalid
      */
     public ExtraFeeRule updateExtraFeeRule(Long id, ExtraFeeRule extraFeeRuleDetails) {
+        CompiledFeeRules.validate(extraFeeRuleDetails);
         ExtraFeeRule extraFeeRule = extraFeeRuleRepository.findById(id)
                 .orElseThrow(() -> new FeeRuleNotFoundException(id));
         extraFeeRule.setConditionType(extraFeeRuleDetails.getConditionType());
         extraFeeRule.setConditionValue(extraFeeRuleDetails.getConditionValue());
         extraFeeRule.setFee(extraFeeRuleDetails.getFee());
-        return extraFeeRuleRepository.save(extraFeeRule);
+        extraFeeRule.setVehicleTypes(extraFeeRuleDetails.getVehicleTypes());
+        extraFeeRule.setForbidden(extraFeeRuleDetails.isForbidden());
+        ExtraFeeRule updatedExtraFeeRule = extraFeeRuleRepository.save(extraFeeRule);
+        feeRuleEngine.reload();
+        return updatedExtraFeeRule;
     }
 
 
@@ -79,5 +92,6 @@ public class ExtraFeeRuleService {
         ExtraFeeRule extraFeeRule = extraFeeRuleRepository.findById(id)
                 .orElseThrow(() -> new FeeRuleNotFoundException(id));
         extraFeeRuleRepository.delete(extraFeeRule);
+        feeRuleEngine.reload();
     }
 }
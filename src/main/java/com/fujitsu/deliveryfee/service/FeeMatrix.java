@@ -0,0 +1,146 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.dto.DeliveryFeeResult;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HexFormat;
+import java.util.Map;
+
+
+/**
+ * Immutable matrix of the current delivery fee of every city and vehicle type, built by
+ * {@link DeliveryFeeService} from one version of the {@link CompiledFeeRules} and one {@link WeatherSnapshot}.
+ * Between imports the fee of a quote for the latest weather is fully determined by these two, so such a quote
+ * is answered by an array lookup. Each cell holds the fee, {@link CompiledFeeRules#FORBIDDEN} if the vehicle
+ * is forbidden, or NaN if the quote has to be calculated, e.g. because the station has not reported yet.
+ *
+ * The ETag is derived from the cities, vehicle types and the fee or error code of every cell rather than from
+ * the versions of the rules and snapshot, so it stays the same across restarts and for imports which do not
+ * change any fee. The observation times are left out of it and reported by {@link #getLastModified()} instead.
+ */
+public final class FeeMatrix {
+
+    private final CompiledFeeRules rules;
+    private final WeatherSnapshot snapshot;
+    private final double[] fees; // Indexed by cityIndex * vehicleTypeCount + vehicleTypeIndex
+    private final LocalDateTime[] observedAt; // Indexed by cityIndex, null if the station has not reported
+    private final Map<String, LocalDateTime> observedAtByCity;
+    private final Map<String, Map<String, DeliveryFeeResult>> results;
+    private final String eTag;
+
+    FeeMatrix(CompiledFeeRules rules, WeatherSnapshot snapshot, double[] fees, LocalDateTime[] observedAt,
+              Map<String, LocalDateTime> observedAtByCity, Map<String, Map<String, DeliveryFeeResult>> results) {
+        this.rules = rules;
+        this.snapshot = snapshot;
+        this.fees = fees;
+        this.observedAt = observedAt;
+        this.observedAtByCity = observedAtByCity;
+        this.results = results;
+        this.eTag = computeETag(rules, results);
+    }
+
+
+    /**
+     * Looks up the fee of a quote in the matrix.
+     *
+     * @param city the city where the delivery is taking place
+     * @param vehicleType the type of vehicle used for the delivery
+     * @param dateTime the datetime of the quote, or null for the latest weather
+     * @return the fee, {@link CompiledFeeRules#FORBIDDEN} if the vehicle is forbidden, or NaN if the
+     * quote is not answered by the matrix and has to be calculated
+     */
+    public double getFee(String city, String vehicleType, LocalDateTime dateTime) {
+        int cityIndex = rules.getCityIndex(city);
+        int vehicleTypeIndex = rules.getVehicleTypeIndex(vehicleType);
+        if (cityIndex < 0 || vehicleTypeIndex < 0) {
+            return Double.NaN;
+        }
+        // The newest observation only answers quotes at or after its timestamp
+        LocalDateTime cityObservedAt = observedAt[cityIndex];
+        if (cityObservedAt == null || dateTime != null && cityObservedAt.isAfter(dateTime)) {
+            return Double.NaN;
+        }
+        return fees[cityIndex * rules.getVehicleTypeCount() + vehicleTypeIndex];
+    }
+
+    /**
+     * @param city the city where the delivery is taking place, in any case
+     * @return the timestamp of the weather the fees of the city are based on, null for unknown cities or cities without weather
+     */
+    public LocalDateTime getObservedAt(String city) {
+        int cityIndex = rules.getCityIndex(city);
+        return cityIndex >= 0 ? observedAt[cityIndex] : null;
+    }
+
+    /**
+     * @return the timestamp of the weather the fees of each city are based on, null for cities without weather
+     */
+    public Map<String, LocalDateTime> getObservedAtByCity() {
+        return observedAtByCity;
+    }
+
+    /**
+     * @return the fee or the error of every city and vehicle type, by city and vehicle type
+     */
+    public Map<String, Map<String, DeliveryFeeResult>> getResults() {
+        return results;
+    }
+
+    /**
+     * @return the strong, quoted entity tag of the matrix content
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * @return the timestamp of the newest weather any fee is based on as an instant, or null if no station has reported
+     */
+    public Instant getLastModified() {
+        LocalDateTime newest = null;
+        for (LocalDateTime cityObservedAt : observedAt) {
+            if (cityObservedAt != null && (newest == null || cityObservedAt.isAfter(newest))) {
+                newest = cityObservedAt;
+            }
+        }
+        // Observations are stored in the system time zone, like in FeeQuote
+        return newest != null ? newest.atZone(ZoneId.systemDefault()).toInstant() : null;
+    }
+
+    CompiledFeeRules getRules() {
+        return rules;
+    }
+
+    WeatherSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    private static String computeETag(CompiledFeeRules rules, Map<String, Map<String, DeliveryFeeResult>> results) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, String.join(",", rules.getCities()));
+            update(digest, String.join(",", rules.getVehicleTypes()));
+            // The error codes tell apart cells that all hold NaN, but not the messages, which may name observation times
+            for (Map<String, DeliveryFeeResult> cityResults : results.values()) {
+                for (DeliveryFeeResult result : cityResults.values()) {
+                    update(digest, result.getFee() != null ? result.getFee().toString() : result.getErrorCode().name());
+                }
+            }
+            return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Each value is terminated, so that shifting characters between values changes the digest
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+}
@@ -0,0 +1,31 @@
+package com.fujitsu.deliveryfee.service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+
+/**
+ * A calculated delivery fee together with the timestamp of the weather observation it is based on.
+ * The fee of a quote can only change when a newer observation is imported or the fee rules change,
+ * so the observation timestamp and the fee identify the answer for HTTP caching.
+ *
+ * @param fee the total delivery fee
+ * @param observedAt the timestamp of the weather observation the fee was calculated with
+ */
+public record FeeQuote(double fee, LocalDateTime observedAt) {
+
+    /**
+     * @return a strong, quoted entity tag of the observation timestamp and the fee
+     */
+    public String eTag() {
+        return "\"" + lastModified().getEpochSecond() + "-" + fee + "\"";
+    }
+
+    /**
+     * @return the observation timestamp as an instant, observations are stored in the system time zone
+     */
+    public Instant lastModified() {
+        return observedAt.atZone(ZoneId.systemDefault()).toInstant();
+    }
+}
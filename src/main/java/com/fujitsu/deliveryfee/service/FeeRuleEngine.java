@@ -0,0 +1,170 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.config.WeatherProperties;
+import com.fujitsu.deliveryfee.repository.BaseFeeRuleRepository;
+import com.fujitsu.deliveryfee.repository.CityRepository;
+import com.fujitsu.deliveryfee.repository.ExtraFeeRuleRepository;
+import com.fujitsu.deliveryfee.repository.LeaderLeaseRepository;
+import com.fujitsu.deliveryfee.repository.VehicleTypeRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+
+/**
+ * Service holding the compiled form of the city registry and the base and extra fee rules.
+ * The registry and rules are loaded from the database on startup and recompiled whenever a city,
+ * vehicle type or rule is created, updated or deleted, or a reload is requested after editing them
+ * in the database directly; the new {@link CompiledFeeRules} instance is then swapped in atomically.
+ *
+ * In cluster mode every reload also increments the rules version of the {@link com.fujitsu.deliveryfee.model.LeaderLease},
+ * and {@link WeatherClusterService} has the other nodes recompile when they see a version they have not compiled yet,
+ * so all nodes quote with the same rules.
+ */
+@Service
+public class FeeRuleEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(FeeRuleEngine.class);
+    private final BaseFeeRuleRepository baseFeeRuleRepository;
+    private final ExtraFeeRuleRepository extraFeeRuleRepository;
+    private final CityRepository cityRepository;
+    private final VehicleTypeRepository vehicleTypeRepository;
+    private final LeaderLeaseRepository leaderLeaseRepository;
+    private final WeatherProperties weatherProperties;
+    private final AtomicReference<CompiledFeeRules> rules = new AtomicReference<>(CompiledFeeRules.EMPTY);
+    private final List<Consumer<CompiledFeeRules>> listeners = new CopyOnWriteArrayList<>();
+
+    // Serializes compilations; a lock rather than a monitor, so virtual threads waiting on the database do not pin their carrier
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Guarded by lock, the rules version of the lease that the compiled rules include
+    private long sharedRulesVersion;
+
+    @Autowired
+    public FeeRuleEngine(BaseFeeRuleRepository baseFeeRuleRepository, ExtraFeeRuleRepository extraFeeRuleRepository,
+                         CityRepository cityRepository, VehicleTypeRepository vehicleTypeRepository,
+                         LeaderLeaseRepository leaderLeaseRepository, WeatherProperties weatherProperties) {
+        this.baseFeeRuleRepository = baseFeeRuleRepository;
+        this.extraFeeRuleRepository = extraFeeRuleRepository;
+        this.cityRepository = cityRepository;
+        this.vehicleTypeRepository = vehicleTypeRepository;
+        this.leaderLeaseRepository = leaderLeaseRepository;
+        this.weatherProperties = weatherProperties;
+    }
+
+
+    /**
+     * Seeds the database with the {@link DefaultFeeRules} if no fee rules exist yet, and with the default
+     * registry if no cities and vehicle types exist yet, e.g. in databases created before the registry, and compiles the rules.
+     */
+    @PostConstruct
+    public void initialize() {
+        if (baseFeeRuleRepository.count() == 0 && extraFeeRuleRepository.count() == 0) {
+            log.info("No fee rules found, seeding the default fee rules.");
+            baseFeeRuleRepository.saveAll(DefaultFeeRules.baseFeeRules());
+            extraFeeRuleRepository.saveAll(DefaultFeeRules.extraFeeRules());
+        }
+        if (cityRepository.count() == 0 && vehicleTypeRepository.count() == 0) {
+            log.info("No cities or vehicle types found, seeding the default registry.");
+            cityRepository.saveAll(DefaultFeeRules.cities());
+            vehicleTypeRepository.saveAll(DefaultFeeRules.vehicleTypes());
+        }
+        // Starting nodes compile the current rules without making the other nodes recompile
+        lock.lock();
+        try {
+            if (isClusterEnabled()) {
+                Long rulesVersion = leaderLeaseRepository.findRulesVersion(WeatherClusterService.LEASE_NAME);
+                sharedRulesVersion = rulesVersion != null ? rulesVersion : 0;
+            }
+            compile();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Recompiles the registry and fee rules from the database and publishes them atomically, and in
+     * cluster mode has the other nodes recompile them too. Reloads are serialized so that a reload can
+     * never publish rules older than the ones it replaces.
+     */
+    public void reload() {
+        lock.lock();
+        try {
+            // The changes are committed before the version is incremented, so nodes seeing the new version read them
+            if (isClusterEnabled()) {
+                leaderLeaseRepository.incrementRulesVersion(WeatherClusterService.LEASE_NAME);
+                Long rulesVersion = leaderLeaseRepository.findRulesVersion(WeatherClusterService.LEASE_NAME);
+                sharedRulesVersion = rulesVersion != null ? rulesVersion : 0;
+            }
+            compile();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Recompiles the registry and fee rules if another node has changed them since they were last compiled.
+     * Unlike {@link #reload()} this does not increment the shared version, so nodes do not keep making
+     * each other recompile.
+     *
+     * @param rulesVersion the rules version published in the leader lease
+     */
+    public void synchronize(long rulesVersion) {
+        lock.lock();
+        try {
+            if (rulesVersion == sharedRulesVersion) {
+                return;
+            }
+            sharedRulesVersion = rulesVersion;
+            compile();
+            log.info("Fee rules synchronized to shared version {}", rulesVersion);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Helper method to compile the registry and fee rules from the database, callers hold the lock
+    private void compile() {
+        CompiledFeeRules compiledFeeRules = CompiledFeeRules.compile(rules.get().getVersion() + 1,
+                cityRepository.findAll(Sort.by("name")),
+                vehicleTypeRepository.findAll(Sort.by("name")),
+                baseFeeRuleRepository.findAll(Sort.by("id")),
+                extraFeeRuleRepository.findAll(Sort.by("id")));
+        rules.set(compiledFeeRules);
+        log.info("Fee rules compiled, version {}, {} cities, {} vehicle types", compiledFeeRules.getVersion(),
+                compiledFeeRules.getCities().size(), compiledFeeRules.getVehicleTypes().size());
+        listeners.forEach(listener -> listener.accept(compiledFeeRules));
+    }
+
+
+    private boolean isClusterEnabled() {
+        return weatherProperties.getCluster().isEnabled();
+    }
+
+    /**
+     * Adds a listener that is passed all rules compiled from now on, e.g. to follow changes of the registry.
+     *
+     * @param listener the listener, called on the thread compiling the rules while further compilations wait
+     */
+    public void addListener(Consumer<CompiledFeeRules> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @return the currently active compiled fee rules
+     */
+    public CompiledFeeRules getRules() {
+        return rules.get();
+    }
+}
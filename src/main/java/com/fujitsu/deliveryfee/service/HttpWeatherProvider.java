@@ -0,0 +1,137 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.integration.CountingInputStream;
+import com.fujitsu.deliveryfee.integration.Observations;
+import com.fujitsu.deliveryfee.integration.WeatherProvider;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+
+/**
+ * Base class of the weather providers that fetch an observations feed over HTTP.
+ *
+ * Fetches are conditional: the ETag and Last-Modified validators of the last acknowledged response are sent along,
+ * and a feed that has not been modified is not read at all. Once the stations to import change, e.g. because a city
+ * was added to the registry, the next fetch is unconditional, so the new stations are imported from the current feed
+ * rather than only once the feed is next published. The feed is requested with gzip or deflate compression
+ * and parsed by the subclass while it is downloaded and decompressed. The time to first byte and the transferred
+ * bytes of every response are recorded per provider.
+ */
+public abstract class HttpWeatherProvider implements WeatherProvider {
+
+    private final String name;
+    private final RestTemplate restTemplate;
+    private final DeliveryFeeMetrics deliveryFeeMetrics;
+
+    // Validators of the last acknowledged response, and of the last fetched one until it is acknowledged.
+    // Only accessed by the thread of the running import, imports do not overlap.
+    private volatile String importedETag;
+    private volatile String importedLastModified;
+    private volatile String fetchedETag;
+    private volatile String fetchedLastModified;
+    // Stations read by the last acknowledged fetch, and by the last fetch until it is acknowledged; null reads all stations
+    private volatile Set<String> importedStationNames;
+    private volatile Set<String> fetchedStationNames;
+
+    protected HttpWeatherProvider(String name, RestTemplate restTemplate, DeliveryFeeMetrics deliveryFeeMetrics) {
+        this.name = name;
+        this.restTemplate = restTemplate;
+        this.deliveryFeeMetrics = deliveryFeeMetrics;
+    }
+
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the URL of the observations feed
+     */
+    protected abstract String getUrl();
+
+    /**
+     * Reads the given stations from the decompressed feed.
+     *
+     * @param body the feed, which does not need to be closed
+     * @param stationNames the names of the stations to read, or null to read all stations
+     * @return the observations, or null if the feed has already been imported
+     * @throws IOException if the feed cannot be read
+     */
+    protected abstract Observations read(InputStream body, Set<String> stationNames) throws IOException;
+
+    /**
+     * @param stationNames the names of the stations to read, or null to read all stations
+     * @return whether the last acknowledged fetch read the same stations, so a feed it imported can be skipped
+     */
+    protected boolean hasImportedStations(Set<String> stationNames) {
+        return Objects.equals(stationNames, importedStationNames);
+    }
+
+    @Override
+    public Observations fetch(Set<String> stationNames) {
+        long requestStart = System.nanoTime();
+        boolean conditional = hasImportedStations(stationNames);
+        return restTemplate.execute(getUrl(), HttpMethod.GET, request -> {
+            request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+            if (conditional && importedETag != null) {
+                request.getHeaders().set(HttpHeaders.IF_NONE_MATCH, importedETag);
+            }
+            if (conditional && importedLastModified != null) {
+                request.getHeaders().set(HttpHeaders.IF_MODIFIED_SINCE, importedLastModified);
+            }
+        }, response -> {
+            // The response is handed over once its headers have arrived, before the body is read
+            deliveryFeeMetrics.recordFeedTimeToFirstByte(name, Duration.ofNanos(System.nanoTime() - requestStart));
+            if (response.getStatusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+                return null;
+            }
+            // Counts the bytes transferred, before decompression
+            CountingInputStream body = new CountingInputStream(response.getBody());
+            try {
+                Observations observations = read(decode(body, response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)), stationNames);
+                fetchedETag = response.getHeaders().getETag();
+                fetchedLastModified = response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED);
+                fetchedStationNames = stationNames;
+                if (observations == null) {
+                    // Nothing to save, so the validators of this response can be used right away
+                    acknowledge();
+                }
+                return observations;
+            } finally {
+                deliveryFeeMetrics.recordFeedBytes(name, body.getCount());
+            }
+        });
+    }
+
+    // The validators are only remembered once the feed has been imported, so a failed import is retried in full
+    @Override
+    public void acknowledge() {
+        importedETag = fetchedETag;
+        importedLastModified = fetchedLastModified;
+        importedStationNames = fetchedStationNames;
+    }
+
+    // Helper method to decompress the response body according to its content encoding
+    private static InputStream decode(InputStream body, String contentEncoding) throws IOException {
+        if (contentEncoding == null) {
+            return body;
+        }
+        return switch (contentEncoding.trim().toLowerCase(Locale.ROOT)) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(body);
+            case "deflate" -> new InflaterInputStream(body);
+            default -> body;
+        };
+    }
+}
@@ -0,0 +1,58 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.config.WeatherProperties;
+import com.fujitsu.deliveryfee.exception.WeatherDataProcessingException;
+import com.fujitsu.deliveryfee.integration.JsonObservationsReader;
+import com.fujitsu.deliveryfee.integration.Observations;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Set;
+
+
+/**
+ * Weather provider of a generic JSON observations feed, as read by {@link JsonObservationsReader}.
+ * One is created for every provider configured under {@code weather.providers}.
+ */
+public class JsonWeatherProvider extends HttpWeatherProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(JsonWeatherProvider.class);
+    private final WeatherProperties.Provider settings;
+
+    public JsonWeatherProvider(WeatherProperties.Provider settings, RestTemplate restTemplate, DeliveryFeeMetrics deliveryFeeMetrics) {
+        super(settings.getName(), restTemplate, deliveryFeeMetrics);
+        this.settings = settings;
+    }
+
+
+    @Override
+    public String getCron() {
+        return settings.getCron();
+    }
+
+    @Override
+    public Duration getTimeout() {
+        return settings.getTimeout();
+    }
+
+    @Override
+    protected String getUrl() {
+        return settings.getUrl();
+    }
+
+    // Malformed JSON is not retried, while I/O errors propagate to the importer, which retries them
+    @Override
+    protected Observations read(InputStream body, Set<String> stationNames) throws IOException {
+        try {
+            return JsonObservationsReader.read(body, stationNames);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to process weather data JSON of {}", getName(), e);
+            throw new WeatherDataProcessingException("Failed to process weather data JSON of " + getName(), e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.fujitsu.deliveryfee.service;
+
+import java.util.List;
+import java.util.Locale;
+
+
+/**
+ * Immutable open-addressing hash table mapping the canonical names of the registry to their ordinals.
+ * Lookups hash and compare the requested name case-insensitively in place, so resolving the city or
+ * vehicle type of a request neither lowercases nor copies it. The canonical names are trimmed, lower
+ * case and interned, so they can be shared as map keys and metric tags without further copies.
+ */
+final class NameIndex {
+
+    private final List<String> names; // Indexed by ordinal
+    private final String[] slots; // Canonical name per slot, null for empty slots
+    private final int[] ordinals; // Ordinal per slot
+    private final int mask;
+
+    /**
+     * @param names the distinct canonical names, in the order of their ordinals
+     */
+    NameIndex(List<String> names) {
+        this.names = List.copyOf(names);
+        // A load factor of at most one half keeps the probe sequences short
+        int capacity = Integer.highestOneBit(Math.max(1, names.size() * 2 - 1)) << 1;
+        this.slots = new String[capacity];
+        this.ordinals = new int[capacity];
+        this.mask = capacity - 1;
+        for (int ordinal = 0; ordinal < names.size(); ordinal++) {
+            String name = names.get(ordinal);
+            int slot = hash(name) & mask;
+            while (slots[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = name;
+            ordinals[slot] = ordinal;
+        }
+    }
+
+
+    /**
+     * @param name the name as configured or requested
+     * @return the canonical form of the name
+     */
+    static String canonical(String name) {
+        return name.trim().toLowerCase(Locale.ROOT).intern();
+    }
+
+    /**
+     * @param name the name to look up, in any case
+     * @return the ordinal of the name, or -1 if it is not in the index
+     */
+    int indexOf(String name) {
+        if (name == null) {
+            return -1;
+        }
+        int slot = hash(name) & mask;
+        String candidate;
+        while ((candidate = slots[slot]) != null) {
+            if (candidate.length() == name.length() && candidate.regionMatches(true, 0, name, 0, name.length())) {
+                return ordinals[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the canonical names, in the order of their ordinals
+     */
+    List<String> getNames() {
+        return names;
+    }
+
+    int size() {
+        return names.size();
+    }
+
+    // Folds every character the way String.regionMatches ignores case, so names matching it hash alike
+    private static int hash(String name) {
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(name.charAt(i)));
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
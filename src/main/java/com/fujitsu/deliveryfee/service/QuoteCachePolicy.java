@@ -0,0 +1,82 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.config.WeatherProperties;
+import com.fujitsu.deliveryfee.integration.WeatherProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+
+/**
+ * Cache policy of the fee quote responses. The answer to a quote only changes when new weather data is
+ * imported, so responses may be cached by clients and shared caches until the next import, scheduled either by
+ * {@code weather.feed.cron} or by the schedule of a weather provider with its own. If imports are not scheduled,
+ * responses have to be revalidated on every use.
+ */
+@Component
+public class QuoteCachePolicy {
+
+    private final List<CronExpression> importSchedules; // Empty if imports are not scheduled
+    private final Clock clock;
+
+    @Autowired
+    public QuoteCachePolicy(WeatherProperties weatherProperties, WeatherProviders weatherProviders) {
+        this(importCrons(weatherProperties, weatherProviders), Clock.systemDefaultZone());
+    }
+
+    public QuoteCachePolicy(String importCron, Clock clock) {
+        this(List.of(importCron), clock);
+    }
+
+    public QuoteCachePolicy(Collection<String> importCrons, Clock clock) {
+        this.importSchedules = importCrons.stream()
+                .filter(importCron -> !Scheduled.CRON_DISABLED.equals(importCron))
+                .map(CronExpression::parse)
+                .toList();
+        this.clock = clock;
+    }
+
+    // The feed schedule imports the providers without one of their own, the others are imported on theirs
+    private static List<String> importCrons(WeatherProperties weatherProperties, WeatherProviders weatherProviders) {
+        List<String> importCrons = new ArrayList<>();
+        importCrons.add(weatherProperties.getFeed().getCron());
+        for (WeatherProvider provider : weatherProviders.getProviders()) {
+            if (provider.getCron() != null) {
+                importCrons.add(provider.getCron());
+            }
+        }
+        return importCrons;
+    }
+
+
+    /**
+     * @return the time until the earliest next scheduled import, or zero if imports are not scheduled
+     */
+    public Duration getMaxAge() {
+        ZonedDateTime now = ZonedDateTime.now(clock);
+        ZonedDateTime nextImport = null;
+        for (CronExpression importSchedule : importSchedules) {
+            ZonedDateTime next = importSchedule.next(now);
+            if (next != null && (nextImport == null || next.isBefore(nextImport))) {
+                nextImport = next;
+            }
+        }
+        return nextImport != null ? Duration.between(now, nextImport) : Duration.ZERO;
+    }
+
+    /**
+     * @return the Cache-Control header of a quote response, public so that shared caches may serve it
+     */
+    public CacheControl getCacheControl() {
+        return CacheControl.maxAge(getMaxAge()).cachePublic();
+    }
+}
@@ -0,0 +1,69 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fujitsu.deliveryfee.config.QuoteLogProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * Structured log of the calculated quotes, replacing the per-quote log lines of the hot path.
+ * Failed quotes are always logged at WARN, successful quotes at INFO with a probability of one in
+ * {@code quote-log.sample-rate}. The asynchronous appenders of logback-spring.xml discard INFO events first
+ * when their queue fills up, so failures are kept under load while sampled successes may be dropped. Additionally, every quote can be written as a JSON line to the
+ * {@code quote-audit} logger, which is off by default and routed to its own asynchronous appender
+ * by logback-spring.xml, so the audit stream never blocks a quote.
+ */
+@Component
+public class QuoteLog {
+
+    private static final Logger log = LoggerFactory.getLogger(QuoteLog.class);
+    private static final Logger auditLog = LoggerFactory.getLogger("quote-audit");
+    private static final String QUOTE_FORMAT = "quote city={} vehicleType={} dateTime={} fee={} outcome={} elapsedMicros={}";
+    private final int sampleRate;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public QuoteLog(QuoteLogProperties quoteLogProperties, ObjectMapper objectMapper) {
+        this.sampleRate = quoteLogProperties.getSampleRate();
+        this.objectMapper = objectMapper;
+    }
+
+
+    /**
+     * Logs a calculated quote if it is sampled or failed, and writes it to the audit stream if enabled.
+     *
+     * @param city the requested city
+     * @param vehicleType the requested vehicle type
+     * @param dateTime the requested datetime, or null for the latest weather
+     * @param fee the calculated fee, or null if the quote failed
+     * @param outcome the outcome of the quote, see {@link DeliveryFeeMetrics#outcome}
+     * @param elapsedNanos the time it took to calculate the quote
+     */
+    public void log(String city, String vehicleType, LocalDateTime dateTime, Double fee, String outcome, long elapsedNanos) {
+        if (!DeliveryFeeMetrics.OK.equals(outcome)) {
+            log.warn(QUOTE_FORMAT, city, vehicleType, dateTime, fee, outcome, elapsedNanos / 1_000);
+        } else if ((sampleRate <= 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0) && log.isInfoEnabled()) {
+            log.info(QUOTE_FORMAT, city, vehicleType, dateTime, fee, outcome, elapsedNanos / 1_000);
+        }
+        if (auditLog.isInfoEnabled()) {
+            try {
+                auditLog.info(objectMapper.writeValueAsString(new QuoteAuditEntry(Instant.now().toString(), city, vehicleType,
+                        dateTime != null ? dateTime.toString() : null, fee, outcome, elapsedNanos / 1_000)));
+            } catch (JsonProcessingException e) {
+                log.warn("Failed to write quote audit entry", e);
+            }
+        }
+    }
+
+    // One line of the audit stream, datetimes are written as ISO-8601 strings
+    private record QuoteAuditEntry(String time, String city, String vehicleType, String dateTime, Double fee, String outcome, long elapsedMicros) {
+    }
+}
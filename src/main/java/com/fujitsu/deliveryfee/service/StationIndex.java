@@ -0,0 +1,228 @@
+package com.fujitsu.deliveryfee.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Immutable spatial index of weather station positions, answering which stations are nearest to a location.
+ * Positions are converted to points on the unit sphere and stored in a k-d tree laid out implicitly in flat
+ * arrays: the node of every range of the arrays is its middle element, with the nodes of smaller coordinates
+ * along the axis of its depth before it and the others after it. Straight-line distances between points on the
+ * sphere grow with the great-circle distances, so the nearest stations are found with plain squared distances
+ * and without trigonometry per visited station.
+ */
+public final class StationIndex {
+
+    public static final StationIndex EMPTY = build(Map.of());
+
+    static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private final String[] stationNames; // In tree order
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] zs;
+
+    private StationIndex(String[] stationNames, double[] xs, double[] ys, double[] zs) {
+        this.stationNames = stationNames;
+        this.xs = xs;
+        this.ys = ys;
+        this.zs = zs;
+    }
+
+
+    /**
+     * Builds the index of the given station positions.
+     *
+     * @param positions the positions by station name
+     * @return the index of the stations
+     */
+    public static StationIndex build(Map<String, Position> positions) {
+        Node[] nodes = positions.entrySet().stream()
+                .map(entry -> new Node(entry.getKey(), toPoint(entry.getValue().latitude(), entry.getValue().longitude())))
+                .toArray(Node[]::new);
+        arrange(nodes, 0, nodes.length, 0);
+
+        String[] stationNames = new String[nodes.length];
+        double[] xs = new double[nodes.length];
+        double[] ys = new double[nodes.length];
+        double[] zs = new double[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            stationNames[i] = nodes[i].stationName();
+            xs[i] = nodes[i].point()[0];
+            ys[i] = nodes[i].point()[1];
+            zs[i] = nodes[i].point()[2];
+        }
+        return new StationIndex(stationNames, xs, ys, zs);
+    }
+
+    // Helper method to sort every range along the axis of its depth, so its middle element splits it
+    private static void arrange(Node[] nodes, int from, int to, int depth) {
+        if (to - from <= 1) {
+            return;
+        }
+        int axis = depth % 3;
+        Arrays.sort(nodes, from, to, Comparator.comparingDouble(node -> node.point()[axis]));
+        int middle = (from + to) >>> 1;
+        arrange(nodes, from, middle, depth + 1);
+        arrange(nodes, middle + 1, to, depth + 1);
+    }
+
+
+    /**
+     * Finds the stations nearest to a location.
+     *
+     * @param latitude the latitude of the location in degrees
+     * @param longitude the longitude of the location in degrees
+     * @param count the maximum number of stations to return
+     * @param maxDistanceKm the maximum great-circle distance of the stations in kilometers
+     * @return the nearest stations within the maximum distance, nearest first
+     * @throws IllegalArgumentException if the latitude or longitude is out of range
+     */
+    public List<Neighbor> findNearest(double latitude, double longitude, int count, double maxDistanceKm) {
+        validate(latitude, longitude);
+        if (count <= 0 || stationNames.length == 0) {
+            return List.of();
+        }
+        double[] point = toPoint(latitude, longitude);
+        Search search = new Search(Math.min(count, stationNames.length), toChord(maxDistanceKm));
+        search(point[0], point[1], point[2], 0, stationNames.length, 0, search);
+
+        List<Neighbor> neighbors = new ArrayList<>(search.size);
+        for (int i = 0; i < search.size; i++) {
+            neighbors.add(new Neighbor(stationNames[search.nodes[i]], toDistanceKm(search.squaredChords[i])));
+        }
+        return neighbors;
+    }
+
+    // Visits the range of the query point first, and the other range only if it may hold a nearer station
+    private void search(double x, double y, double z, int from, int to, int depth, Search search) {
+        if (from >= to) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        double dx = x - xs[middle];
+        double dy = y - ys[middle];
+        double dz = z - zs[middle];
+        search.offer(middle, dx * dx + dy * dy + dz * dz);
+
+        double split = switch (depth % 3) {
+            case 0 -> dx;
+            case 1 -> dy;
+            default -> dz;
+        };
+        if (split < 0) {
+            search(x, y, z, from, middle, depth + 1, search);
+            if (split * split <= search.bound()) {
+                search(x, y, z, middle + 1, to, depth + 1, search);
+            }
+        } else {
+            search(x, y, z, middle + 1, to, depth + 1, search);
+            if (split * split <= search.bound()) {
+                search(x, y, z, from, middle, depth + 1, search);
+            }
+        }
+    }
+
+    /**
+     * @return the number of indexed stations
+     */
+    public int size() {
+        return stationNames.length;
+    }
+
+    /**
+     * Validates the coordinates of a location.
+     *
+     * @param latitude the latitude in degrees
+     * @param longitude the longitude in degrees
+     * @throws IllegalArgumentException if the latitude or longitude is out of range
+     */
+    static void validate(double latitude, double longitude) {
+        if (!isValid(latitude, longitude)) {
+            throw new IllegalArgumentException("Invalid coordinates: " + latitude + ", " + longitude);
+        }
+    }
+
+    /**
+     * @return true if the latitude and longitude are within range, which NaN values are not
+     */
+    static boolean isValid(double latitude, double longitude) {
+        return latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180;
+    }
+
+    private static double[] toPoint(double latitude, double longitude) {
+        double phi = Math.toRadians(latitude);
+        double lambda = Math.toRadians(longitude);
+        return new double[]{Math.cos(phi) * Math.cos(lambda), Math.cos(phi) * Math.sin(lambda), Math.sin(phi)};
+    }
+
+    // Squared straight-line distance through the unit sphere of a great-circle distance, capped at the antipode
+    private static double toChord(double distanceKm) {
+        double chord = 2 * Math.sin(Math.min(distanceKm / EARTH_RADIUS_KM, Math.PI) / 2);
+        return chord * chord;
+    }
+
+    private static double toDistanceKm(double squaredChord) {
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(squaredChord) / 2));
+    }
+
+
+    /**
+     * The position of a weather station.
+     *
+     * @param latitude the latitude in degrees
+     * @param longitude the longitude in degrees
+     */
+    public record Position(double latitude, double longitude) {
+    }
+
+    /**
+     * A station found near a location.
+     *
+     * @param stationName the name of the weather station
+     * @param distanceKm the great-circle distance of the station from the location in kilometers
+     */
+    public record Neighbor(String stationName, double distanceKm) {
+    }
+
+    private record Node(String stationName, double[] point) {
+    }
+
+
+    // The nearest nodes found so far, kept sorted by their squared distance
+    private static final class Search {
+        private final int[] nodes;
+        private final double[] squaredChords;
+        private final double maxSquaredChord;
+        private int size;
+
+        Search(int count, double maxSquaredChord) {
+            this.nodes = new int[count];
+            this.squaredChords = new double[count];
+            this.maxSquaredChord = maxSquaredChord;
+        }
+
+        // Nodes farther than this can no longer be among the nearest
+        double bound() {
+            return size < nodes.length ? maxSquaredChord : squaredChords[size - 1];
+        }
+
+        void offer(int node, double squaredChord) {
+            if (squaredChord > bound()) {
+                return;
+            }
+            int i = size < nodes.length ? size++ : size - 1;
+            while (i > 0 && squaredChords[i - 1] > squaredChord) {
+                nodes[i] = nodes[i - 1];
+                squaredChords[i] = squaredChords[i - 1];
+                i--;
+            }
+            nodes[i] = node;
+            squaredChords[i] = squaredChord;
+        }
+    }
+}
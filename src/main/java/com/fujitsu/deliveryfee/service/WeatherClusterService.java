@@ -0,0 +1,170 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.config.WeatherProperties;
+import com.fujitsu.deliveryfee.model.LeaderLease;
+import com.fujitsu.deliveryfee.repository.LeaderLeaseRepository;
+import com.fujitsu.deliveryfee.repository.WeatherDataRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * Service coordinating several instances that share one database, enabled by {@code weather.cluster.enabled}.
+ *
+ * A single {@link LeaderLease} row elects the leader: a node acquires the lease with a conditional update
+ * if it already owns it or the lease has expired, and renews it on every scheduled run. Only the leader
+ * fetches the weather feed and runs the retention job, so the cluster makes one upstream fetch per cycle.
+ * After each import that saved observations the leader increments the snapshot version in the lease row;
+ * every node polls it every {@code weather.cluster.sync-interval} and, when it differs from the local
+ * snapshot version, rebuilds its snapshot from the newest stored observations with that version and
+ * extends its in-memory history. In the same poll it compares the fee rules version of the lease, which
+ * {@link FeeRuleEngine#reload()} increments on the node where the fee rules or the registry were changed,
+ * and recompiles its fee rules if it differs. All nodes thus serve the same fees from the same snapshot
+ * and rules versions, within one sync interval.
+ *
+ * When the cluster mode is disabled, the node is always the leader and nothing is synchronized.
+ */
+@Service
+public class WeatherClusterService {
+
+    static final String LEASE_NAME = "weather-import";
+
+    private static final Logger log = LoggerFactory.getLogger(WeatherClusterService.class);
+    private final LeaderLeaseRepository leaderLeaseRepository;
+    private final WeatherDataRepository weatherDataRepository;
+    private final WeatherProperties weatherProperties;
+    private final WeatherSnapshotService weatherSnapshotService;
+    private final WeatherHistoryService weatherHistoryService;
+    private final FeeRuleEngine feeRuleEngine;
+    private final Clock clock;
+    private final String nodeId;
+    // Serializes the synchronizations; a lock rather than a monitor, as they block on the database
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @Autowired
+    public WeatherClusterService(LeaderLeaseRepository leaderLeaseRepository, WeatherDataRepository weatherDataRepository,
+                                 WeatherProperties weatherProperties, WeatherSnapshotService weatherSnapshotService,
+                                 WeatherHistoryService weatherHistoryService, FeeRuleEngine feeRuleEngine) {
+        this(leaderLeaseRepository, weatherDataRepository, weatherProperties, weatherSnapshotService, weatherHistoryService,
+                feeRuleEngine, Clock.systemUTC());
+    }
+
+    public WeatherClusterService(LeaderLeaseRepository leaderLeaseRepository, WeatherDataRepository weatherDataRepository,
+                                 WeatherProperties weatherProperties, WeatherSnapshotService weatherSnapshotService,
+                                 WeatherHistoryService weatherHistoryService, FeeRuleEngine feeRuleEngine, Clock clock) {
+        this.leaderLeaseRepository = leaderLeaseRepository;
+        this.weatherDataRepository = weatherDataRepository;
+        this.weatherProperties = weatherProperties;
+        this.weatherSnapshotService = weatherSnapshotService;
+        this.weatherHistoryService = weatherHistoryService;
+        this.feeRuleEngine = feeRuleEngine;
+        this.clock = clock;
+        String configuredNodeId = weatherProperties.getCluster().getNodeId();
+        this.nodeId = configuredNodeId != null && !configuredNodeId.isBlank() ? configuredNodeId : UUID.randomUUID().toString();
+    }
+
+
+    /**
+     * Creates the lease row if no node has created it yet. Nodes starting at the same time may both try,
+     * in which case the primary key lets only one insert succeed.
+     */
+    @PostConstruct
+    public void initialize() {
+        if (!isEnabled()) {
+            return;
+        }
+        if (!leaderLeaseRepository.existsById(LEASE_NAME)) {
+            try {
+                leaderLeaseRepository.saveAndFlush(new LeaderLease(LEASE_NAME, null, Instant.EPOCH, 0, 0));
+            } catch (DataIntegrityViolationException e) {
+                log.debug("Leader lease created concurrently by another node.");
+            }
+        }
+        log.info("Cluster mode enabled, node id {}", nodeId);
+    }
+
+
+    /**
+     * Acquires or renews the leader lease for {@code weather.cluster.lease-duration}.
+     *
+     * @return true if this node is the leader and should run the leader-only jobs
+     */
+    public boolean tryAcquireLeadership() {
+        if (!isEnabled()) {
+            return true;
+        }
+        Instant now = clock.instant();
+        boolean leader = leaderLeaseRepository.acquire(LEASE_NAME, nodeId, now, now.plus(weatherProperties.getCluster().getLeaseDuration())) > 0;
+        if (!leader) {
+            log.debug("Leader lease held by another node, skipping leader-only job.");
+        }
+        return leader;
+    }
+
+
+    /**
+     * Publishes that the leader has saved new observations, and returns the version the new snapshot gets.
+     * Without the cluster mode this is the next local snapshot version.
+     *
+     * @return the version of the snapshot that includes the new observations
+     */
+    @Transactional
+    public long publishImport() {
+        if (!isEnabled()) {
+            return weatherSnapshotService.getSnapshot().getVersion() + 1;
+        }
+        leaderLeaseRepository.incrementSnapshotVersion(LEASE_NAME);
+        return leaderLeaseRepository.findSnapshotVersion(LEASE_NAME);
+    }
+
+
+    /**
+     * Scheduled task adopting the snapshot the leader has published, if its version differs from the local one,
+     * and the fee rules changed on any node. The observations and rules were committed before their versions
+     * were incremented, so the rebuilt snapshot and the recompiled rules contain them.
+     */
+    @Scheduled(fixedDelayString = "${weather.cluster.sync-interval:PT10S}")
+    public void synchronizeSnapshot() {
+        lock.lock();
+        try {
+            if (!isEnabled()) {
+                return;
+            }
+            Long rulesVersion = leaderLeaseRepository.findRulesVersion(LEASE_NAME);
+            if (rulesVersion != null) {
+                feeRuleEngine.synchronize(rulesVersion);
+            }
+            Long sharedVersion = leaderLeaseRepository.findSnapshotVersion(LEASE_NAME);
+            if (sharedVersion == null || sharedVersion == weatherSnapshotService.getSnapshot().getVersion()) {
+                return;
+            }
+            weatherSnapshotService.replace(weatherDataRepository.findLatestForEachStation(), sharedVersion);
+            weatherHistoryService.synchronize();
+            log.info("Weather snapshot synchronized to version {}", sharedVersion);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the id of this node in the leader lease
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    private boolean isEnabled() {
+        return weatherProperties.getCluster().isEnabled();
+    }
+}
@@ -1,90 +1,394 @@
 package com.fujitsu.deliveryfee.service;
 
 import com.fujitsu.deliveryfee.config.WeatherProperties;
-import com.fujitsu.deliveryfee.exception.WeatherDataProcessingException;
 import com.fujitsu.deliveryfee.integration.Observations;
 import com.fujitsu.deliveryfee.integration.StationData;
+import com.fujitsu.deliveryfee.integration.WeatherProvider;
 import com.fujitsu.deliveryfee.model.WeatherData;
 import com.fujitsu.deliveryfee.repository.WeatherDataRepository;
-import jakarta.xml.bind.JAXBContext;
-import jakarta.xml.bind.JAXBException;
-import jakarta.xml.bind.Unmarshaller;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronTrigger;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import java.io.StringReader;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
 
 
 /**
- * Service class for importing weather data from an external source.
- * Periodically fetches weather data XML and saves it to the database.
+ * Service class for importing weather data from the {@link WeatherProviders}.
+ * Periodically fetches the observations of the stations of the city registry and of the configured stations from
+ * every provider and saves them to the database, or of all stations if {@code weather.import-all-stations} is set.
+ * Each feed is parsed while it is downloaded, and only the wanted stations are read from it.
+ *
+ * Providers with a schedule of their own are imported on it by a trigger of the {@link TaskScheduler}; the others are
+ * imported together on the schedule configured by {@code weather.feed.cron}. An import fans out to its providers in
+ * parallel, so it takes as long as its slowest provider. A provider that has not answered within its timeout fails,
+ * without holding up the others. The observations of all providers are
+ * then merged: if several providers report the same station, the newest observation wins, and of observations with
+ * the same time the one of the provider listed first. Observations are stored with their observation time, and a
+ * station is never stored twice for the same time. Providers report unchanged feeds without reading their stations.
+ * In a cluster, only the node holding the leader lease of {@link WeatherClusterService} imports.
+ *
+ * Fetches failing with an I/O error or a server error are retried after an exponential backoff with full jitter,
+ * so that nodes do not retry in lockstep. Fetches that still fail are counted per provider by the
+ * {@link WeatherFeedCircuitBreaker}, which skips a provider for a while once it keeps failing; quotes are served
+ * from the last imported data meanwhile.
  */
 @Service
 public class WeatherDataImportService {
 
     private static final Logger log = LoggerFactory.getLogger(WeatherDataImportService.class);
-    private final RestTemplate restTemplate;
+    private final WeatherProviders weatherProviders;
     private final WeatherDataRepository weatherDataRepository;
     private final WeatherProperties weatherProperties;
+    private final WeatherSnapshotService weatherSnapshotService;
+    private final WeatherHistoryService weatherHistoryService;
+    private final DeliveryFeeMetrics deliveryFeeMetrics;
+    private final WeatherClusterService weatherClusterService;
+    private final WeatherFeedCircuitBreaker weatherFeedCircuitBreaker;
+    private final FeeRuleEngine feeRuleEngine;
+    private final TaskScheduler taskScheduler;
+    private final TransactionTemplate transactionTemplate;
+
+    // The fetches of an import run in parallel, each on its own virtual thread
+    private final ExecutorService fetchExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("weather-provider-", 0).factory());
+
+    // Serializes the imports; a lock rather than a monitor, as imports block on the providers and the database,
+    // which would pin the carrier of a virtual thread
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // The triggers of the providers with a schedule of their own
+    private final List<ScheduledFuture<?>> providerSchedules = new CopyOnWriteArrayList<>();
 
     @Autowired
-    public WeatherDataImportService(RestTemplate restTemplate, WeatherDataRepository weatherDataRepository, WeatherProperties weatherProperties) {
-        this.restTemplate = restTemplate;
+    public WeatherDataImportService(WeatherProviders weatherProviders, WeatherDataRepository weatherDataRepository, WeatherProperties weatherProperties,
+                                    WeatherSnapshotService weatherSnapshotService, WeatherHistoryService weatherHistoryService,
+                                    DeliveryFeeMetrics deliveryFeeMetrics, WeatherClusterService weatherClusterService,
+                                    WeatherFeedCircuitBreaker weatherFeedCircuitBreaker, FeeRuleEngine feeRuleEngine,
+                                    TaskScheduler taskScheduler, TransactionTemplate transactionTemplate) {
+        this.weatherProviders = weatherProviders;
         this.weatherDataRepository = weatherDataRepository;
         this.weatherProperties = weatherProperties;
+        this.weatherSnapshotService = weatherSnapshotService;
+        this.weatherHistoryService = weatherHistoryService;
+        this.deliveryFeeMetrics = deliveryFeeMetrics;
+        this.weatherClusterService = weatherClusterService;
+        this.weatherFeedCircuitBreaker = weatherFeedCircuitBreaker;
+        this.feeRuleEngine = feeRuleEngine;
+        this.taskScheduler = taskScheduler;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+
+    /**
+     * Primes the in-memory weather snapshot with the newest observations already stored in the database,
+     * so quotes can be served from memory before the first scheduled import has run.
+     */
+    @PostConstruct
+    public void loadWeatherSnapshot() {
+        weatherSnapshotService.refresh(weatherDataRepository.findLatestForEachStation());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        providerSchedules.forEach(schedule -> schedule.cancel(false));
+        fetchExecutor.shutdownNow();
+    }
+
+
+    /**
+     * Registers a trigger for every provider with a schedule of its own, which imports that provider alone
+     * whenever its schedule fires, independently of {@code weather.feed.cron}.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleProviders() {
+        for (WeatherProvider provider : weatherProviders.getProviders()) {
+            if (provider.getCron() == null) {
+                continue;
+            }
+            providerSchedules.add(taskScheduler.schedule(() -> importProviders(List.of(provider)), new CronTrigger(provider.getCron())));
+            log.info("Weather provider {} scheduled on {}", provider.getName(), provider.getCron());
+        }
+    }
+
+
+    /**
+     * Imports the current weather data of all providers as soon as the application is ready, so that quotes after
+     * a restart do not depend on the first scheduled import. Enabled by {@code weather.feed.import-on-startup}.
+     * A failed import does not prevent the application from starting and is retried by the schedules.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void importOnStartup() {
+        if (!weatherProperties.getFeed().isImportOnStartup()) {
+            return;
+        }
+        try {
+            importProviders(weatherProviders.getProviders());
+        } catch (RuntimeException e) {
+            log.warn("Weather data import on startup failed, the next scheduled import will retry.", e);
+        }
     }
 
 
     /**
      * Scheduled task to fetch and save weather data.
-     * Fetches weather data XML from an external API, processes it, and saves it to the database.
-     * Runs every hour at 15 minutes past the hour.
+     * Fetches the configured stations from the weather providers without a schedule of their own in parallel, merges
+     * them, and saves them to the database in a single transaction using JDBC batch inserts.
+     * The saved observations are then published to the in-memory weather snapshot and history.
+     * Unchanged feeds are skipped without parsing the stations or writing to the database.
+     * By default runs every hour at 15 minutes past the hour. Imports are serialized, so the import on startup
+     * and a scheduled import never run at the same time. Every import is timed in {@link DeliveryFeeMetrics} by its result.
+     * If a provider fails, the observations of the other providers are still saved, and the failure is rethrown afterwards.
+     * In a cluster, nodes that do not hold the leader lease skip the import and synchronize the leader's snapshot instead.
      */
-    @Scheduled(cron = "0 15 * * * *") // This runs at 15 minutes past every hour
+    @Scheduled(cron = "${weather.feed.cron:0 15 * * * *}")
     public void fetchAndSaveWeatherData() {
-        log.info("Starting to fetch weather data...");
-        String xmlData = fetchWeatherDataXml();
+        importProviders(weatherProviders.getProviders().stream().filter(provider -> provider.getCron() == null).toList());
+    }
+
+    // Helper method to import the given providers, serialized with all other imports
+    private void importProviders(List<WeatherProvider> providers) {
+        lock.lock();
         try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(Observations.class);
-            Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-            Observations observations = (Observations) unmarshaller.unmarshal(new StringReader(xmlData));
+            if (providers.isEmpty() || !weatherClusterService.tryAcquireLeadership()) {
+                return;
+            }
+            Timer.Sample sample = deliveryFeeMetrics.startImport();
+            ImportResult importResult = null;
+            try {
+                importResult = importFeeds(providers);
+            } finally {
+                deliveryFeeMetrics.recordImport(sample, importResult != null ? importResult.result() : "failed");
+            }
+            if (importResult.failure() != null) {
+                throw importResult.failure();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            List<String> stations = weatherProperties.getStations();
+    // Helper method to fetch the providers in parallel and save their merged observations
+    private ImportResult importFeeds(List<WeatherProvider> providers) {
+        log.debug("Polling weather providers...");
+        Set<String> stations = getImportedStations();
 
-            observations.getStations().stream()
-                    .filter(station -> stations.contains(station.getName()))
-                    .forEach(this::processAndSaveStationData);
+        // Fan out to the providers whose circuit is closed
+        Map<WeatherProvider, Future<Observations>> fetches = new LinkedHashMap<>();
+        for (WeatherProvider provider : providers) {
+            if (!weatherFeedCircuitBreaker.allowRequest(provider.getName())) {
+                log.debug("Weather provider {} circuit open, skipping it.", provider.getName());
+                continue;
+            }
+            fetches.put(provider, fetchExecutor.submit(() -> fetchWithRetries(provider, stations)));
+        }
+        if (fetches.isEmpty()) {
+            return new ImportResult("circuit_open", null);
+        }
+
+        // Join the fetches, each within its own timeout from the start of the fan-out
+        long fanOutStart = System.nanoTime();
+        Map<WeatherProvider, Observations> fetched = new LinkedHashMap<>();
+        RuntimeException failure = null;
+        for (Map.Entry<WeatherProvider, Future<Observations>> fetch : fetches.entrySet()) {
+            WeatherProvider provider = fetch.getKey();
+            try {
+                long remainingNanos = provider.getTimeout().toNanos() - (System.nanoTime() - fanOutStart);
+                Observations observations = fetch.getValue().get(Math.max(remainingNanos, 0), TimeUnit.NANOSECONDS);
+                weatherFeedCircuitBreaker.recordSuccess(provider.getName());
+                if (observations != null) {
+                    fetched.put(provider, observations);
+                } else {
+                    log.debug("Weather provider {} unchanged, skipping it.", provider.getName());
+                }
+            } catch (TimeoutException e) {
+                fetch.getValue().cancel(true);
+                failure = recordFailure(provider, failure, new ResourceAccessException(
+                        "Weather provider " + provider.getName() + " did not answer within " + provider.getTimeout()));
+            } catch (ExecutionException e) {
+                failure = recordFailure(provider, failure, e.getCause() instanceof RuntimeException cause
+                        ? cause : new IllegalStateException("Weather provider " + provider.getName() + " failed", e.getCause()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fetches.values().forEach(future -> future.cancel(true));
+                throw new IllegalStateException("Interrupted while importing weather data", e);
+            }
+        }
+
+        if (!fetched.isEmpty()) {
+            saveObservations(fetched);
+        }
+        String result = fetched.isEmpty() ? (failure != null ? "failed" : "unchanged") : (failure != null ? "partial" : "imported");
+        return new ImportResult(result, failure);
+    }
+
+    // Helper method to record a failed provider, returns the failure to rethrow after the import: the first one
+    private RuntimeException recordFailure(WeatherProvider provider, RuntimeException firstFailure, RuntimeException failure) {
+        weatherFeedCircuitBreaker.recordFailure(provider.getName());
+        deliveryFeeMetrics.recordProviderFailure(provider.getName());
+        if (firstFailure != null) {
+            log.warn("Weather provider {} failed: {}", provider.getName(), failure.getMessage());
+            return firstFailure;
+        }
+        return failure;
+    }
+
+    // Helper method to merge and save the fetched observations, and acknowledge them to their providers
+    private void saveObservations(Map<WeatherProvider, Observations> fetched) {
+        log.info("Importing weather data...");
+        List<WeatherData> weatherData = merge(fetched);
+
+        // The observations and their version commit together, so saved observations are always published, and the
+        // in-memory data is only refreshed once they have committed
+        SavedObservations saved = transactionTemplate.execute(status -> saveNewObservations(weatherData));
+        List<WeatherData> savedWeatherData = saved.observations();
+        if (!savedWeatherData.isEmpty()) {
+            weatherSnapshotService.refresh(savedWeatherData, saved.version());
+        }
+        weatherHistoryService.record(savedWeatherData);
+        fetched.keySet().forEach(WeatherProvider::acknowledge);
+
+        int parsedStations = fetched.values().stream().mapToInt(observations -> observations.stations().size()).sum();
+        deliveryFeeMetrics.recordImportedStations(parsedStations, savedWeatherData.size());
+        log.info("Weather data of {} fetched, {} observations saved.",
+                fetched.keySet().stream().map(WeatherProvider::getName).collect(Collectors.joining(", ")), savedWeatherData.size());
+    }
+
+    // Helper method to save the observations that are not stored yet and publish a new snapshot version for them,
+    // called within the import transaction
+    private SavedObservations saveNewObservations(List<WeatherData> weatherData) {
+        // Stations that were already stored for their observation time, e.g. by an import before a restart
+        Map<LocalDateTime, Set<String>> stationsByTimestamp = weatherData.stream().collect(Collectors.groupingBy(
+                WeatherData::getTimestamp, LinkedHashMap::new, Collectors.mapping(WeatherData::getStationName, Collectors.toSet())));
+        Set<String> importedStations = new HashSet<>();
+        stationsByTimestamp.forEach((timestamp, stationNames) -> weatherDataRepository.findStationNamesWithTimestamp(stationNames, timestamp)
+                .forEach(stationName -> importedStations.add(stationName + "@" + timestamp)));
+        List<WeatherData> newWeatherData = weatherData.stream()
+                .filter(data -> !importedStations.contains(data.getStationName() + "@" + data.getTimestamp()))
+                .collect(Collectors.toList());
+        if (newWeatherData.isEmpty()) {
+            return new SavedObservations(newWeatherData, weatherSnapshotService.getSnapshot().getVersion());
+        }
+        List<WeatherData> savedWeatherData = weatherDataRepository.saveAll(newWeatherData);
+        return new SavedObservations(savedWeatherData, weatherClusterService.publishImport());
+    }
+
+    /**
+     * Merges the observations of several providers into one observation per station. If several providers report
+     * a station, the newest observation wins, and of observations with the same time the one of the provider fetched
+     * first, i.e. listed first in {@link WeatherProviders}. Stations keep the order in which they were first reported.
+     * Observations without an observation time, neither their own nor the feed's, are skipped: stored with the time
+     * of the import, an unchanged observation would be stored again on every import.
+     *
+     * @param fetched the observations by provider, in the order of the providers
+     * @return the merged observations
+     */
+    static List<WeatherData> merge(Map<WeatherProvider, Observations> fetched) {
+        Map<String, WeatherData> merged = new LinkedHashMap<>();
+        for (Map.Entry<WeatherProvider, Observations> entry : fetched.entrySet()) {
+            LocalDateTime feedObservedAt = entry.getValue().observedAt();
+            for (StationData station : entry.getValue().stations()) {
+                LocalDateTime timestamp = station.getObservedAt() != null ? station.getObservedAt() : feedObservedAt;
+                if (timestamp == null) {
+                    log.warn("Weather provider {} does not define an observation time for {}, skipping it.",
+                            entry.getKey().getName(), station.getName());
+                    continue;
+                }
+                WeatherData weatherData = toWeatherData(station, timestamp);
+                merged.merge(station.getName(), weatherData,
+                        (current, candidate) -> candidate.getTimestamp().isAfter(current.getTimestamp()) ? candidate : current);
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
 
-            log.info("Weather data fetched and saved successfully.");
-        } catch (JAXBException e) {
-            log.error("Failed to process weather data XML", e);
-            throw new WeatherDataProcessingException("Failed to process weather data XML", e);
+    // Helper method to fetch a provider, retrying transient failures; malformed feeds and client errors are not retried
+    private Observations fetchWithRetries(WeatherProvider provider, Set<String> stations) {
+        WeatherProperties.Feed feed = weatherProperties.getFeed();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return provider.fetch(stations);
+            } catch (ResourceAccessException | HttpServerErrorException e) {
+                if (attempt >= feed.getMaxAttempts()) {
+                    throw e;
+                }
+                Duration backoff = retryBackoff(feed, attempt);
+                log.warn("Weather provider {} request failed (attempt {} of {}), retrying in {} ms: {}",
+                        provider.getName(), attempt, feed.getMaxAttempts(), backoff.toMillis(), e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
         }
     }
 
-    // Helper method to fetch weather data XML from external API
-    private String fetchWeatherDataXml() {
-        String url = "https://ilmateenistus.ee/ilma_andmed/xml/observations.php";
-        return restTemplate.getForObject(url, String.class);
+    // Helper method to collect the stations of the registry and the configured stations, null if all stations are imported
+    private Set<String> getImportedStations() {
+        if (weatherProperties.isImportAllStations()) {
+            return null;
+        }
+        Set<String> stations = new HashSet<>(weatherProperties.getStations());
+        stations.addAll(feeRuleEngine.getRules().getStationNames());
+        return stations;
     }
 
-    // Helper method to process and save station data to the database
-    private void processAndSaveStationData(StationData stationData) {
+    // Full jitter: a random duration up to the exponential backoff of the attempt, capped at the maximum backoff
+    private static Duration retryBackoff(WeatherProperties.Feed feed, int attempt) {
+        long capMillis = Math.min(feed.getMaxRetryBackoff().toMillis(), feed.getRetryBackoff().toMillis() << Math.min(attempt - 1, 20));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(capMillis + 1));
+    }
+
+    // Helper method to convert station data to a weather data entity
+    private static WeatherData toWeatherData(StationData stationData, LocalDateTime timestamp) {
         WeatherData weatherData = new WeatherData();
         weatherData.setStationName(stationData.getName());
         weatherData.setWmoCode(stationData.getWmoCode());
+        weatherData.setLatitude(stationData.getLatitude());
+        weatherData.setLongitude(stationData.getLongitude());
         weatherData.setAirTemperature(stationData.getAirTemperature());
         weatherData.setWindSpeed(stationData.getWindSpeed());
         weatherData.setWeatherPhenomenon(stationData.getWeatherPhenomenon());
-        weatherData.setTimestamp(LocalDateTime.now());
+        weatherData.setTimestamp(timestamp);
+        return weatherData;
+    }
 
-        weatherDataRepository.save(weatherData);
+    // The result tag of an import, and the first failure of a provider to rethrow after the import has been recorded
+    private record ImportResult(String result, RuntimeException failure) {
     }
 
-}
\ No newline at end of file
+    private record SavedObservations(List<WeatherData> observations, long version) {
+    }
+}
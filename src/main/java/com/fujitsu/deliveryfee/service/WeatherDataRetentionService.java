@@ -0,0 +1,191 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.config.WeatherProperties;
+import com.fujitsu.deliveryfee.exception.WeatherDataProcessingException;
+import com.fujitsu.deliveryfee.model.ArchivedPartition;
+import com.fujitsu.deliveryfee.model.WeatherData;
+import com.fujitsu.deliveryfee.model.WeatherObservation;
+import com.fujitsu.deliveryfee.repository.ArchivedPartitionRepository;
+import com.fujitsu.deliveryfee.repository.WeatherDataRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * Service downsampling and archiving weather data older than the full resolution window.
+ * Old weather data is processed in daily partitions. Every partition is first exported in full
+ * to a gzip-compressed CSV file in the archive directory, after which the observations that would
+ * not change any fee are deleted: an observation is kept only if the weather fees of some vehicle
+ * type differ from those of the previous kept observation of the station, so lookups of the latest
+ * observation at or before a time still yield the same fees.
+ *
+ * Processed partitions are recorded as {@link ArchivedPartition} rows, saved in the transaction that deletes
+ * the redundant observations, so a partition whose downsampling did not commit is archived and downsampled again
+ * on the next run, also by another node after a failover. Each partition is deleted with a single statement,
+ * so the job only holds short transactions and neither the importer nor quotes wait for it. The job runs on the schedule configured by
+ * {@code weather.retention.cron}, by default every night at 03:30. In a cluster, only the node holding
+ * the leader lease of {@link WeatherClusterService} runs it.
+ */
+@Service
+public class WeatherDataRetentionService {
+
+    private static final Logger log = LoggerFactory.getLogger(WeatherDataRetentionService.class);
+    private static final String ARCHIVE_HEADER = "id,station_name,wmo_code,air_temperature,wind_speed,weather_phenomenon,timestamp";
+    private final WeatherDataRepository weatherDataRepository;
+    private final ArchivedPartitionRepository archivedPartitionRepository;
+    private final WeatherProperties weatherProperties;
+    private final FeeRuleEngine feeRuleEngine;
+    private final WeatherClusterService weatherClusterService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public WeatherDataRetentionService(WeatherDataRepository weatherDataRepository, ArchivedPartitionRepository archivedPartitionRepository,
+                                       WeatherProperties weatherProperties, FeeRuleEngine feeRuleEngine, WeatherClusterService weatherClusterService,
+                                       TransactionTemplate transactionTemplate) {
+        this.weatherDataRepository = weatherDataRepository;
+        this.archivedPartitionRepository = archivedPartitionRepository;
+        this.weatherProperties = weatherProperties;
+        this.feeRuleEngine = feeRuleEngine;
+        this.weatherClusterService = weatherClusterService;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+
+    /**
+     * Scheduled task to archive and downsample all daily partitions that have left the full resolution window
+     * and have not been processed yet.
+     *
+     * @throws WeatherDataProcessingException if a partition could not be archived
+     */
+    @Scheduled(cron = "${weather.retention.cron:0 30 3 * * *}")
+    public void pruneWeatherData() {
+        if (!weatherClusterService.tryAcquireLeadership()) {
+            return;
+        }
+        LocalDateTime oldestTimestamp = weatherDataRepository.findOldestTimestamp();
+        if (oldestTimestamp == null) {
+            return;
+        }
+        WeatherProperties.Retention retention = weatherProperties.getRetention();
+        LocalDate cutoffDate = LocalDateTime.now().minus(retention.getFullResolution()).toLocalDate();
+        Path archiveDirectory = Path.of(retention.getArchiveDirectory());
+        CompiledFeeRules rules = feeRuleEngine.getRules();
+
+        int partitions = 0;
+        int deleted = 0;
+        for (LocalDate day = oldestTimestamp.toLocalDate(); day.isBefore(cutoffDate); day = day.plusDays(1)) {
+            if (archivedPartitionRepository.existsById(day)) {
+                continue;
+            }
+            deleted += prunePartition(rules, day, archiveDirectory.resolve("weather-data-" + day + ".csv.gz"));
+            partitions++;
+        }
+        if (partitions > 0) {
+            log.info("Archived {} daily weather data partitions before {}, {} observations deleted.", partitions, cutoffDate, deleted);
+        }
+    }
+
+    // Helper method to archive a daily partition and delete the observations that do not change any fee.
+    // An archive left by a run that did not commit is overwritten, it still holds every observation as none were deleted
+    private int prunePartition(CompiledFeeRules rules, LocalDate day, Path archive) {
+        LocalDateTime from = day.atStartOfDay();
+        List<WeatherData> weatherData = weatherDataRepository.findAllObservedBetween(from, day.plusDays(1).atStartOfDay());
+        try {
+            writeArchive(weatherData, archive);
+        } catch (IOException e) {
+            log.error("Failed to archive weather data of {}", day, e);
+            throw new WeatherDataProcessingException("Failed to archive weather data of " + day, e);
+        }
+
+        // The rows are ordered by station and time, the fees of each station start from its last observation before the day
+        List<Long> redundantIds = new ArrayList<>();
+        String stationName = null;
+        double[] keptFees = null;
+        for (WeatherData row : weatherData) {
+            if (!row.getStationName().equals(stationName)) {
+                stationName = row.getStationName();
+                // One microsecond before midnight, the precision of the stored timestamps
+                List<WeatherObservation> previous = weatherDataRepository.findObservationsAtOrBefore(stationName, from.minusNanos(1_000), PageRequest.of(0, 1));
+                keptFees = previous.isEmpty() ? null : weatherFees(rules, previous.get(0));
+            }
+            double[] fees = weatherFees(rules, WeatherObservation.of(row));
+            if (Arrays.equals(fees, keptFees)) {
+                redundantIds.add(row.getId());
+            } else {
+                keptFees = fees;
+            }
+        }
+        // The partition is recorded as processed only if its observations were deleted
+        transactionTemplate.execute(status -> {
+            if (!redundantIds.isEmpty()) {
+                weatherDataRepository.deleteAllByIdInBatch(redundantIds);
+            }
+            return archivedPartitionRepository.save(new ArchivedPartition(day, Instant.now(), weatherData.size(), redundantIds.size()));
+        });
+        log.debug("Archived {} weather observations of {} to {}, {} deleted.", weatherData.size(), day, archive, redundantIds.size());
+        return redundantIds.size();
+    }
+
+    // The weather fees of the observation for every vehicle type, calculated as the quotes calculate them
+    private static double[] weatherFees(CompiledFeeRules rules, WeatherObservation observation) {
+        double[] fees = new double[rules.getVehicleTypeCount()];
+        for (int vehicleTypeIndex = 0; vehicleTypeIndex < fees.length; vehicleTypeIndex++) {
+            if (rules.hasTemperatureRules(vehicleTypeIndex) && observation.airTemperature() != null) {
+                fees[vehicleTypeIndex] += rules.getTemperatureFee(vehicleTypeIndex, observation.airTemperature());
+            }
+            if (rules.hasPhenomenonRules(vehicleTypeIndex) && observation.phenomenonFlags() != null) {
+                fees[vehicleTypeIndex] += rules.getPhenomenonFee(vehicleTypeIndex, observation.phenomenonFlags());
+            }
+            if (rules.hasWindSpeedRules(vehicleTypeIndex) && observation.windSpeed() != null) {
+                fees[vehicleTypeIndex] += rules.getWindSpeedFee(vehicleTypeIndex, observation.windSpeed());
+            }
+        }
+        return fees;
+    }
+
+    // The archive is written to a temporary file first, so an archive file is always complete
+    private static void writeArchive(List<WeatherData> weatherData, Path archive) throws IOException {
+        Files.createDirectories(archive.getParent());
+        Path temporaryArchive = archive.resolveSibling(archive.getFileName() + ".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(temporaryArchive)), StandardCharsets.UTF_8))) {
+            writer.write(ARCHIVE_HEADER);
+            writer.write('\n');
+            for (WeatherData row : weatherData) {
+                writer.write(String.join(",", String.valueOf(row.getId()), csvValue(row.getStationName()), csvValue(row.getWmoCode()),
+                        csvValue(row.getAirTemperature()), csvValue(row.getWindSpeed()), csvValue(row.getWeatherPhenomenon()),
+                        row.getTimestamp().toString()));
+                writer.write('\n');
+            }
+        }
+        Files.move(temporaryArchive, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String csvValue(Double value) {
+        return value != null ? value.toString() : "";
+    }
+
+    private static String csvValue(String value) {
+        return value != null ? "\"" + value.replace("\"", "\"\"") + "\"" : "";
+    }
+}
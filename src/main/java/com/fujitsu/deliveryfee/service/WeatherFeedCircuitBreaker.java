@@ -0,0 +1,87 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.config.WeatherProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Circuit breakers in front of the weather providers, one per provider. After the configured number of consecutive
+ * failed fetches of a provider its circuit opens, and imports skip the provider without contacting it until the open
+ * duration has passed. The next fetch is then let through as a trial: if it succeeds the circuit closes, if it fails
+ * the circuit opens again right away. Quotes keep being served from the last imported weather data meanwhile.
+ */
+@Component
+public class WeatherFeedCircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(WeatherFeedCircuitBreaker.class);
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final Clock clock;
+
+    // Guarded by this
+    private final Map<String, State> states = new HashMap<>();
+
+    @Autowired
+    public WeatherFeedCircuitBreaker(WeatherProperties weatherProperties) {
+        this(weatherProperties.getFeed().getCircuitBreakerFailureThreshold(), weatherProperties.getFeed().getCircuitBreakerOpenDuration(),
+                Clock.systemUTC());
+    }
+
+    public WeatherFeedCircuitBreaker(int failureThreshold, Duration openDuration, Clock clock) {
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.clock = clock;
+    }
+
+
+    /**
+     * @param provider the name of the weather provider
+     * @return true if the provider may be requested, i.e. its circuit is closed or its open duration has passed
+     */
+    public synchronized boolean allowRequest(String provider) {
+        Instant openUntil = states.computeIfAbsent(provider, name -> new State()).openUntil;
+        return openUntil == null || !clock.instant().isBefore(openUntil);
+    }
+
+    /**
+     * Closes the circuit of a provider after a successful fetch.
+     *
+     * @param provider the name of the weather provider
+     */
+    public synchronized void recordSuccess(String provider) {
+        State state = states.computeIfAbsent(provider, name -> new State());
+        if (state.openUntil != null) {
+            log.info("Weather provider {} recovered, circuit closed.", provider);
+        }
+        state.consecutiveFailures = 0;
+        state.openUntil = null;
+    }
+
+    /**
+     * Counts a failed fetch of a provider, opening its circuit once the failure threshold is reached.
+     *
+     * @param provider the name of the weather provider
+     */
+    public synchronized void recordFailure(String provider) {
+        State state = states.computeIfAbsent(provider, name -> new State());
+        state.consecutiveFailures++;
+        if (state.consecutiveFailures >= failureThreshold) {
+            state.openUntil = clock.instant().plus(openDuration);
+            log.warn("Weather provider {} failed {} times in a row, circuit open until {}", provider, state.consecutiveFailures, state.openUntil);
+        }
+    }
+
+    private static class State {
+        private int consecutiveFailures;
+        private Instant openUntil;
+    }
+}
@@ -0,0 +1,189 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.config.WeatherProperties;
+import com.fujitsu.deliveryfee.model.WeatherData;
+import com.fujitsu.deliveryfee.model.WeatherObservation;
+import com.fujitsu.deliveryfee.repository.WeatherDataRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+
+/**
+ * Service holding the in-memory {@link WeatherTimeline} of every configured station and every station of the
+ * city registry, which answers backdated quotes within the configured retention window without querying the database.
+ * The timelines are loaded from the database on startup, after legacy rows have been classified,
+ * and the weather data importer adds each import to them. Stations added to the registry are loaded when
+ * {@link FeeRuleEngine} recompiles it, and the timelines of removed stations are dropped. Entries older than
+ * the retention window are dropped whenever a timeline is updated, which bounds the memory use.
+ */
+@Service
+@DependsOn("weatherPhenomenonBackfillService")
+public class WeatherHistoryService {
+
+    private static final Logger log = LoggerFactory.getLogger(WeatherHistoryService.class);
+    private final WeatherDataRepository weatherDataRepository;
+    private final WeatherProperties weatherProperties;
+    private final FeeRuleEngine feeRuleEngine;
+    private final Map<String, WeatherTimeline> timelines = new ConcurrentHashMap<>();
+    // Serializes the updates of the timelines; a lock rather than a monitor, as loads block on the database
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @Autowired
+    public WeatherHistoryService(WeatherDataRepository weatherDataRepository, WeatherProperties weatherProperties, FeeRuleEngine feeRuleEngine) {
+        this.weatherDataRepository = weatherDataRepository;
+        this.weatherProperties = weatherProperties;
+        this.feeRuleEngine = feeRuleEngine;
+        feeRuleEngine.addListener(this::updateStations);
+    }
+
+
+    /**
+     * Loads the timelines of the configured and registry stations with the observations within the retention window,
+     * replacing any timelines loaded before.
+     */
+    @PostConstruct
+    public void loadHistory() {
+        lock.lock();
+        try {
+            timelines.clear();
+            if (!isEnabled()) {
+                log.info("In-memory weather history disabled, backdated quotes are looked up in the database.");
+                return;
+            }
+            LocalDateTime cutoff = cutoff();
+            int loaded = 0;
+            for (String stationName : getStationNames(feeRuleEngine.getRules())) {
+                loaded += loadTimeline(stationName, cutoff).size();
+            }
+            log.info("Loaded {} weather observations since {} into the in-memory weather history", loaded, cutoff);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Helper method to load the timelines of stations added to the registry and drop those of removed stations,
+    // called whenever the registry is recompiled
+    private void updateStations(CompiledFeeRules rules) {
+        lock.lock();
+        try {
+            if (!isEnabled()) {
+                return;
+            }
+            Set<String> stationNames = getStationNames(rules);
+            timelines.keySet().retainAll(stationNames);
+            LocalDateTime cutoff = cutoff();
+            for (String stationName : stationNames) {
+                if (!timelines.containsKey(stationName)) {
+                    WeatherTimeline timeline = loadTimeline(stationName, cutoff);
+                    log.info("Loaded {} weather observations of station {} added to the registry into the in-memory weather history",
+                            timeline.size(), stationName);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Helper method to load the timeline of a station from the database, callers hold the lock
+    private WeatherTimeline loadTimeline(String stationName, LocalDateTime cutoff) {
+        List<WeatherObservation> observations = weatherDataRepository.findObservationsSince(stationName, cutoff);
+        WeatherTimeline timeline = WeatherTimeline.EMPTY.merge(observations, cutoff);
+        timelines.put(stationName, timeline);
+        return timeline;
+    }
+
+    // The configured stations and the stations of the registry, whose observations are imported
+    private Set<String> getStationNames(CompiledFeeRules rules) {
+        Set<String> stationNames = new LinkedHashSet<>();
+        if (weatherProperties.getStations() != null) {
+            stationNames.addAll(weatherProperties.getStations());
+        }
+        stationNames.addAll(rules.getStationNames());
+        return stationNames;
+    }
+
+
+    /**
+     * Adds the given observations to the timelines of their stations and drops the entries
+     * that have left the retention window.
+     *
+     * @param observations the observations that were saved by the latest import
+     */
+    public void record(Collection<WeatherData> observations) {
+        lock.lock();
+        try {
+            if (!isEnabled() || observations.isEmpty()) {
+                return;
+            }
+            LocalDateTime cutoff = cutoff();
+            Map<String, List<WeatherObservation>> byStation = observations.stream()
+                    .collect(Collectors.groupingBy(WeatherData::getStationName, Collectors.mapping(WeatherObservation::of, Collectors.toList())));
+            // Only stations whose timelines were loaded are updated, as only their timelines are known to be complete
+            byStation.forEach((stationName, stationObservations) ->
+                    timelines.computeIfPresent(stationName, (name, timeline) -> timeline.merge(stationObservations, cutoff)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Adds the observations stored since the newest entry of each timeline, e.g. by the importer
+     * of another instance sharing the database, and drops the entries that have left the retention window.
+     */
+    public void synchronize() {
+        lock.lock();
+        try {
+            if (!isEnabled()) {
+                return;
+            }
+            LocalDateTime cutoff = cutoff();
+            timelines.replaceAll((stationName, timeline) -> {
+                // Timestamps are stored with microsecond precision, so the next possible one follows the newest entry
+                LocalDateTime latestTimestamp = timeline.getLatestTimestamp();
+                LocalDateTime since = latestTimestamp != null && latestTimestamp.isAfter(cutoff) ? latestTimestamp.plusNanos(1_000) : cutoff;
+                List<WeatherObservation> observations = weatherDataRepository.findObservationsSince(stationName, since);
+                return timeline.merge(observations, cutoff);
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Finds the latest observation of a station at or before the given datetime in memory.
+     *
+     * @param stationName the name of the weather station
+     * @param dateTime the datetime at or before which the observation should be found
+     * @return the observation, or null if the datetime is not covered by the in-memory history
+     */
+    public WeatherObservation findAtOrBefore(String stationName, LocalDateTime dateTime) {
+        WeatherTimeline timeline = timelines.get(stationName);
+        return timeline != null ? timeline.findAtOrBefore(dateTime) : null;
+    }
+
+    private boolean isEnabled() {
+        Duration retention = weatherProperties.getHistory().getRetention();
+        return retention != null && retention.isPositive();
+    }
+
+    private LocalDateTime cutoff() {
+        return LocalDateTime.now().minus(weatherProperties.getHistory().getRetention());
+    }
+}
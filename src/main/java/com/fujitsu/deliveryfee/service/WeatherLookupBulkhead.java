@@ -0,0 +1,66 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.config.WeatherProperties;
+import com.fujitsu.deliveryfee.exception.ServiceBusyException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+
+/**
+ * Bulkhead limiting the number of weather lookups that query the database concurrently.
+ * With virtual threads, every concurrent quote would otherwise try to borrow a connection at once;
+ * the bulkhead queues them fairly in front of the pool instead, and rejects a lookup with a
+ * {@link ServiceBusyException} if no permit becomes available within the configured timeout.
+ */
+@Component
+public class WeatherLookupBulkhead {
+
+    private final Semaphore permits;
+    private final long acquireTimeoutNanos;
+
+    @Autowired
+    public WeatherLookupBulkhead(WeatherProperties weatherProperties) {
+        this(weatherProperties.getLookup().getMaxConcurrentQueries(), weatherProperties.getLookup().getAcquireTimeout());
+    }
+
+    public WeatherLookupBulkhead(int maxConcurrentQueries, Duration acquireTimeout) {
+        this.permits = new Semaphore(maxConcurrentQueries, true);
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+    }
+
+
+    /**
+     * Runs the given database query once a permit is available.
+     *
+     * @param query the query to run
+     * @return the result of the query
+     * @throws ServiceBusyException if no permit becomes available within the timeout
+     */
+    public <T> T execute(Supplier<T> query) {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new ServiceBusyException("Too many concurrent weather lookups, please retry later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceBusyException("Interrupted while waiting for a weather lookup");
+        }
+        try {
+            return query.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * @return the number of lookups that could currently start without waiting
+     */
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+}
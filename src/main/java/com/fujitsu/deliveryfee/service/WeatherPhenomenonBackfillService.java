@@ -0,0 +1,46 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.model.WeatherPhenomenon;
+import com.fujitsu.deliveryfee.repository.WeatherDataRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+
+/**
+ * Service classifying the weather phenomena of rows stored before the phenomenon flags were introduced.
+ * Such rows are classified in memory when they are loaded as entities, but not when lookups select
+ * {@link com.fujitsu.deliveryfee.model.WeatherObservation} projections, so this backfill persists the
+ * classification on startup, before any quote is served, with one bulk update per distinct phenomenon.
+ */
+@Service
+public class WeatherPhenomenonBackfillService {
+
+    private static final Logger log = LoggerFactory.getLogger(WeatherPhenomenonBackfillService.class);
+    private final WeatherDataRepository weatherDataRepository;
+
+    @Autowired
+    public WeatherPhenomenonBackfillService(WeatherDataRepository weatherDataRepository) {
+        this.weatherDataRepository = weatherDataRepository;
+    }
+
+
+    /**
+     * Sets the phenomenon flags of all weather data rows that have not been classified yet.
+     */
+    @PostConstruct
+    public void backfillPhenomenonFlags() {
+        List<String> weatherPhenomena = weatherDataRepository.findUnclassifiedWeatherPhenomena();
+        int updatedRows = 0;
+        for (String weatherPhenomenon : weatherPhenomena) {
+            updatedRows += weatherDataRepository.updatePhenomenonFlags(weatherPhenomenon, WeatherPhenomenon.classify(weatherPhenomenon));
+        }
+        if (updatedRows > 0) {
+            log.info("Classified the weather phenomenon of {} stored weather data rows", updatedRows);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.config.WeatherProperties;
+import com.fujitsu.deliveryfee.integration.WeatherProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * The weather providers the importer fans out to: the {@link WeatherProvider} beans in their order, starting with
+ * the {@link EstonianWeatherProvider}, followed by a {@link JsonWeatherProvider} for every provider configured
+ * under {@code weather.providers}. When providers report conflicting observations of a station at the same time,
+ * the provider listed first wins.
+ */
+@Component
+public class WeatherProviders {
+
+    private final List<WeatherProvider> providers;
+
+    @Autowired
+    public WeatherProviders(List<WeatherProvider> providerBeans, WeatherProperties weatherProperties,
+                            RestTemplate restTemplate, DeliveryFeeMetrics deliveryFeeMetrics) {
+        List<WeatherProvider> providers = new ArrayList<>(providerBeans);
+        for (WeatherProperties.Provider settings : weatherProperties.getProviders()) {
+            providers.add(new JsonWeatherProvider(settings, restTemplate, deliveryFeeMetrics));
+        }
+        Set<String> names = new HashSet<>();
+        for (WeatherProvider provider : providers) {
+            if (provider.getName() == null || !names.add(provider.getName())) {
+                throw new IllegalStateException("Weather provider names must be unique and not empty: " + provider.getName());
+            }
+        }
+        this.providers = List.copyOf(providers);
+    }
+
+
+    /**
+     * @return the providers in the order of their priority
+     */
+    public List<WeatherProvider> getProviders() {
+        return providers;
+    }
+}
@@ -0,0 +1,95 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.model.WeatherData;
+import com.fujitsu.deliveryfee.model.WeatherObservation;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Immutable view of the newest {@link WeatherObservation} per station, and of the {@link StationIndex}
+ * of the positions reported by the stations. A new instance is built for every import and swapped in
+ * atomically by {@link WeatherSnapshotService}, so readers never see a partially updated state.
+ * The station index is only rebuilt if a position has changed.
+ */
+public final class WeatherSnapshot {
+
+    public static final WeatherSnapshot EMPTY = new WeatherSnapshot(0, Collections.emptyMap(), Collections.emptyMap(), StationIndex.EMPTY);
+
+    private final long version;
+    private final Map<String, WeatherObservation> latestByStation;
+    private final Map<String, StationIndex.Position> positions;
+    private final StationIndex stationIndex;
+
+    private WeatherSnapshot(long version, Map<String, WeatherObservation> latestByStation,
+                            Map<String, StationIndex.Position> positions, StationIndex stationIndex) {
+        this.version = version;
+        this.latestByStation = latestByStation;
+        this.positions = positions;
+        this.stationIndex = stationIndex;
+    }
+
+
+    /**
+     * Creates the next snapshot by merging the given observations into this one.
+     * An observation only replaces the current entry of its station if it is not older than it.
+     *
+     * @param observations the newly imported observations
+     * @return a new snapshot with an incremented version
+     */
+    public WeatherSnapshot merge(Collection<WeatherData> observations) {
+        return merge(observations, version + 1);
+    }
+
+    /**
+     * Creates a snapshot by merging the given observations into this one, like {@link #merge(Collection)},
+     * with the given version instead of an incremented one.
+     *
+     * @param observations the observations to merge
+     * @param version the version of the new snapshot
+     * @return a new snapshot
+     */
+    public WeatherSnapshot merge(Collection<WeatherData> observations, long version) {
+        Map<String, WeatherObservation> merged = new HashMap<>(latestByStation);
+        Map<String, StationIndex.Position> mergedPositions = new HashMap<>(positions);
+        boolean positionsChanged = false;
+        for (WeatherData observation : observations) {
+            merged.merge(observation.getStationName(), WeatherObservation.of(observation),
+                    (current, candidate) -> candidate.timestamp().isBefore(current.timestamp()) ? current : candidate);
+            // Observations without a position keep the last known position of the station
+            if (observation.getLatitude() != null && observation.getLongitude() != null
+                    && StationIndex.isValid(observation.getLatitude(), observation.getLongitude())) {
+                StationIndex.Position position = new StationIndex.Position(observation.getLatitude(), observation.getLongitude());
+                positionsChanged |= !position.equals(mergedPositions.put(observation.getStationName(), position));
+            }
+        }
+        return new WeatherSnapshot(version, Collections.unmodifiableMap(merged), Collections.unmodifiableMap(mergedPositions),
+                positionsChanged ? StationIndex.build(mergedPositions) : stationIndex);
+    }
+
+    /**
+     * @param stationName the name of the weather station
+     * @return the newest observation of the station, or null if the station has never reported
+     */
+    public WeatherObservation getLatest(String stationName) {
+        return latestByStation.get(stationName);
+    }
+
+    /**
+     * @return the index of the positions of the stations that have reported one
+     */
+    public StationIndex getStationIndex() {
+        return stationIndex;
+    }
+
+    public Map<String, WeatherObservation> getLatestByStation() {
+        return latestByStation;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,91 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.model.WeatherData;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+
+/**
+ * Service holding the in-memory {@link WeatherSnapshot} of the newest observation per station.
+ * The weather data importer refreshes it after each successful import, which allows
+ * quotes for the current time to be served without querying the database.
+ */
+@Service
+public class WeatherSnapshotService {
+
+    private final AtomicReference<WeatherSnapshot> snapshot = new AtomicReference<>(WeatherSnapshot.EMPTY);
+    private final List<Consumer<WeatherSnapshot>> listeners = new CopyOnWriteArrayList<>();
+
+
+    /**
+     * Returns the current snapshot. The returned instance is immutable and never changes
+     * after it has been published.
+     *
+     * @return the current weather snapshot
+     */
+    public WeatherSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+
+    /**
+     * Adds a listener that is passed every snapshot published from now on.
+     *
+     * @param listener the listener, called on the thread publishing the snapshot
+     */
+    public void addListener(Consumer<WeatherSnapshot> listener) {
+        listeners.add(listener);
+    }
+
+
+    /**
+     * Merges the given observations into a new snapshot and publishes it atomically.
+     *
+     * @param observations the observations that were saved by the latest import
+     */
+    public void refresh(Collection<WeatherData> observations) {
+        if (observations.isEmpty()) {
+            return;
+        }
+        notifyListeners(snapshot.updateAndGet(current -> current.merge(observations)));
+    }
+
+
+    /**
+     * Merges the given observations into a new snapshot with the given version and publishes it atomically.
+     * Used by the importer of a cluster, whose snapshot versions are shared by all instances.
+     *
+     * @param observations the observations that were saved by the latest import
+     * @param version the version of the new snapshot
+     */
+    public void refresh(Collection<WeatherData> observations, long version) {
+        if (observations.isEmpty()) {
+            return;
+        }
+        notifyListeners(snapshot.updateAndGet(current -> current.merge(observations, version)));
+    }
+
+
+    /**
+     * Replaces the snapshot with one built from the given observations and publishes it atomically.
+     * Used to adopt the snapshot another instance has published through the shared database.
+     *
+     * @param latestObservations the newest observation of every station
+     * @param version the version of the new snapshot
+     */
+    public void replace(Collection<WeatherData> latestObservations, long version) {
+        WeatherSnapshot replacement = WeatherSnapshot.EMPTY.merge(latestObservations, version);
+        snapshot.set(replacement);
+        notifyListeners(replacement);
+    }
+
+    // Helper method to pass a published snapshot to the listeners
+    private void notifyListeners(WeatherSnapshot published) {
+        listeners.forEach(listener -> listener.accept(published));
+    }
+}
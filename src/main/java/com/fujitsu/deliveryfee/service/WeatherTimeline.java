@@ -0,0 +1,148 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.model.WeatherObservation;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+
+/**
+ * Immutable, time-ordered observations of a single weather station, stored as parallel primitive arrays.
+ * Missing values are encoded as NaN for the measurements and as -1 for the phenomenon flags.
+ * A timeline always holds every stored observation of its station from its first entry onward,
+ * so a lookup is only answered if the requested time is not before the first entry.
+ * New instances are built by {@link #merge} and published by {@link WeatherHistoryService}.
+ */
+public final class WeatherTimeline {
+
+    public static final WeatherTimeline EMPTY = new WeatherTimeline(new long[0], new double[0], new double[0], new int[0]);
+
+    private static final int NO_PHENOMENON = -1;
+
+    private final long[] epochMicros;
+    private final double[] airTemperatures;
+    private final double[] windSpeeds;
+    private final int[] phenomenonFlags;
+
+    private WeatherTimeline(long[] epochMicros, double[] airTemperatures, double[] windSpeeds, int[] phenomenonFlags) {
+        this.epochMicros = epochMicros;
+        this.airTemperatures = airTemperatures;
+        this.windSpeeds = windSpeeds;
+        this.phenomenonFlags = phenomenonFlags;
+    }
+
+
+    /**
+     * Creates the next timeline by adding the given observations to this one and dropping all entries
+     * older than the cutoff.
+     *
+     * @param observations the observations to add, in any order
+     * @param cutoff the time before which entries are dropped
+     * @return a new timeline
+     */
+    public WeatherTimeline merge(Collection<WeatherObservation> observations, LocalDateTime cutoff) {
+        List<WeatherObservation> added = new ArrayList<>(observations.size());
+        long cutoffMicros = toEpochMicros(cutoff);
+        for (WeatherObservation observation : observations) {
+            if (toEpochMicros(observation.timestamp()) >= cutoffMicros) {
+                added.add(observation);
+            }
+        }
+        added.sort(Comparator.comparing(WeatherObservation::timestamp));
+
+        int first = lowerBound(cutoffMicros);
+        int size = epochMicros.length - first + added.size();
+        WeatherTimeline merged = new WeatherTimeline(new long[size], new double[size], new double[size], new int[size]);
+
+        // Merges the retained entries with the sorted additions, an addition goes after existing entries of the same time
+        int existing = first;
+        int addition = 0;
+        for (int i = 0; i < size; i++) {
+            if (addition == added.size() || existing < epochMicros.length
+                    && epochMicros[existing] <= toEpochMicros(added.get(addition).timestamp())) {
+                merged.epochMicros[i] = epochMicros[existing];
+                merged.airTemperatures[i] = airTemperatures[existing];
+                merged.windSpeeds[i] = windSpeeds[existing];
+                merged.phenomenonFlags[i] = phenomenonFlags[existing];
+                existing++;
+            } else {
+                WeatherObservation observation = added.get(addition++);
+                merged.epochMicros[i] = toEpochMicros(observation.timestamp());
+                merged.airTemperatures[i] = observation.airTemperature() != null ? observation.airTemperature() : Double.NaN;
+                merged.windSpeeds[i] = observation.windSpeed() != null ? observation.windSpeed() : Double.NaN;
+                merged.phenomenonFlags[i] = observation.phenomenonFlags() != null ? observation.phenomenonFlags() : NO_PHENOMENON;
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Finds the latest observation at or before the given datetime by binary search.
+     *
+     * @param dateTime the datetime at or before which the observation should be found
+     * @return the observation, or null if the datetime precedes the first entry of the timeline
+     */
+    public WeatherObservation findAtOrBefore(LocalDateTime dateTime) {
+        long micros = toEpochMicros(dateTime);
+        int index = Arrays.binarySearch(epochMicros, micros);
+        // Entries of the same time are ordered by import, so the last of them is the newest
+        if (index >= 0) {
+            while (index + 1 < epochMicros.length && epochMicros[index + 1] == micros) {
+                index++;
+            }
+        } else {
+            index = -index - 2;
+        }
+        if (index < 0) {
+            return null;
+        }
+        return new WeatherObservation(
+                Double.isNaN(airTemperatures[index]) ? null : airTemperatures[index],
+                Double.isNaN(windSpeeds[index]) ? null : windSpeeds[index],
+                phenomenonFlags[index] == NO_PHENOMENON ? null : phenomenonFlags[index],
+                fromEpochMicros(epochMicros[index]));
+    }
+
+    /**
+     * @return the number of observations in the timeline
+     */
+    public int size() {
+        return epochMicros.length;
+    }
+
+    /**
+     * @return the timestamp of the newest observation in the timeline, or null if it is empty
+     */
+    public LocalDateTime getLatestTimestamp() {
+        return epochMicros.length > 0 ? fromEpochMicros(epochMicros[epochMicros.length - 1]) : null;
+    }
+
+    // Index of the first entry not before the given time
+    private int lowerBound(long micros) {
+        int low = 0;
+        int high = epochMicros.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (epochMicros[middle] < micros) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Microseconds match the precision of the stored timestamps, so lookups agree with the database queries
+    private static long toEpochMicros(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + dateTime.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromEpochMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+}
@@ -3,7 +3,8 @@ package com.fujitsu.deliveryfee;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+// The context is loaded without importing from the live weather feed
+@SpringBootTest(properties = "weather.feed.import-on-startup=false")
 class DeliveryFeeCalculatorApplicationTests {
 
 	@Test
@@ -0,0 +1,161 @@
+package com.fujitsu.deliveryfee.controller;
+
+import com.fujitsu.deliveryfee.config.WeatherProperties;
+import com.fujitsu.deliveryfee.exception.GlobalExceptionHandler;
+import com.fujitsu.deliveryfee.model.BaseFeeRule;
+import com.fujitsu.deliveryfee.model.City;
+import com.fujitsu.deliveryfee.model.WeatherData;
+import com.fujitsu.deliveryfee.repository.BaseFeeRuleRepository;
+import com.fujitsu.deliveryfee.repository.CityRepository;
+import com.fujitsu.deliveryfee.repository.ExtraFeeRuleRepository;
+import com.fujitsu.deliveryfee.repository.LeaderLeaseRepository;
+import com.fujitsu.deliveryfee.repository.VehicleTypeRepository;
+import com.fujitsu.deliveryfee.repository.WeatherDataRepository;
+import com.fujitsu.deliveryfee.service.CityRegistryService;
+import com.fujitsu.deliveryfee.service.DefaultFeeRules;
+import com.fujitsu.deliveryfee.service.DeliveryFeeMetrics;
+import com.fujitsu.deliveryfee.service.DeliveryFeeService;
+import com.fujitsu.deliveryfee.service.DeliveryFeeStreamService;
+import com.fujitsu.deliveryfee.service.FeeRuleEngine;
+import com.fujitsu.deliveryfee.service.QuoteCachePolicy;
+import com.fujitsu.deliveryfee.service.QuoteLog;
+import com.fujitsu.deliveryfee.service.WeatherHistoryService;
+import com.fujitsu.deliveryfee.service.WeatherLookupBulkhead;
+import com.fujitsu.deliveryfee.service.WeatherSnapshotService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+
+/**
+ * Unit tests for the {@link CityRegistryController} class.
+ *
+ * These tests run the registry endpoints against the real {@link CityRegistryService}, {@link FeeRuleEngine} and
+ * {@link DeliveryFeeService} on top of an in-memory city table, and ensure that a city added to or deleted from the
+ * registry can be quoted, or no longer be quoted, right away.
+ */
+@ExtendWith(MockitoExtension.class)
+class CityRegistryControllerTest {
+
+    @Mock
+    private BaseFeeRuleRepository baseFeeRuleRepository;
+
+    @Mock
+    private ExtraFeeRuleRepository extraFeeRuleRepository;
+
+    @Mock
+    private CityRepository cityRepository;
+
+    @Mock
+    private VehicleTypeRepository vehicleTypeRepository;
+
+    @Mock
+    private LeaderLeaseRepository leaderLeaseRepository;
+
+    @Mock
+    private WeatherDataRepository weatherDataRepository;
+
+    @Mock
+    private WeatherHistoryService weatherHistoryService;
+
+    @Mock
+    private QuoteLog quoteLog;
+
+    @Mock
+    private DeliveryFeeStreamService deliveryFeeStreamService;
+
+    // The city table, by canonical name
+    private final Map<String, City> cities = new LinkedHashMap<>();
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        DefaultFeeRules.cities().forEach(city -> cities.put(city.getName(), city));
+        when(cityRepository.findAll(any(Sort.class))).thenAnswer(invocation -> new ArrayList<>(cities.values()));
+        when(cityRepository.save(any(City.class))).thenAnswer(invocation -> {
+            City city = invocation.getArgument(0);
+            cities.put(city.getName(), city);
+            return city;
+        });
+        when(cityRepository.findById(anyString())).thenAnswer(invocation -> Optional.ofNullable(cities.get(invocation.<String>getArgument(0))));
+        doAnswer(invocation -> cities.remove(invocation.<City>getArgument(0).getName())).when(cityRepository).delete(any(City.class));
+        when(vehicleTypeRepository.findAll(any(Sort.class))).thenReturn(DefaultFeeRules.vehicleTypes());
+        // Fee rules of a city are kept while the city is not in the registry
+        List<BaseFeeRule> baseFeeRules = new ArrayList<>(DefaultFeeRules.baseFeeRules());
+        baseFeeRules.add(new BaseFeeRule(100L, "narva", "car", 3.5));
+        when(baseFeeRuleRepository.findAll(any(Sort.class))).thenReturn(baseFeeRules);
+        when(extraFeeRuleRepository.findAll(any(Sort.class))).thenReturn(DefaultFeeRules.extraFeeRules());
+
+        WeatherProperties weatherProperties = new WeatherProperties();
+        FeeRuleEngine feeRuleEngine = new FeeRuleEngine(baseFeeRuleRepository, extraFeeRuleRepository, cityRepository, vehicleTypeRepository,
+                leaderLeaseRepository, weatherProperties);
+        feeRuleEngine.reload();
+        WeatherSnapshotService weatherSnapshotService = new WeatherSnapshotService();
+        weatherSnapshotService.refresh(List.of(new WeatherData("Narva", 1.0, 5.0, "clear", LocalDateTime.now().minusMinutes(10))));
+        DeliveryFeeService deliveryFeeService = new DeliveryFeeService(weatherDataRepository, weatherSnapshotService, weatherHistoryService,
+                feeRuleEngine, new WeatherLookupBulkhead(8, Duration.ofSeconds(1)),
+                new DeliveryFeeMetrics(new SimpleMeterRegistry(), weatherProperties, weatherSnapshotService), quoteLog, weatherProperties);
+
+        mockMvc = MockMvcBuilders.standaloneSetup(
+                        new CityRegistryController(new CityRegistryService(cityRepository, vehicleTypeRepository, feeRuleEngine)),
+                        new DeliveryFeeController(deliveryFeeService, deliveryFeeStreamService, new QuoteCachePolicy("-", Clock.systemUTC())))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+
+
+    /**
+     * Verifies that a city created through the registry is quoted with the weather of its station right away,
+     * and that it can no longer be quoted once it has been deleted.
+     */
+    @Test
+    void whenCityIsCreatedAndDeleted_thenQuotesFollowTheRegistry() throws Exception {
+        mockMvc.perform(get("/delivery-fee/Narva/car"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(put("/api/registry/cities/Narva")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"stationName\": \"Narva\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("narva"))
+                .andExpect(jsonPath("$.stationName").value("Narva"));
+
+        mockMvc.perform(get("/delivery-fee/Narva/car"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("3.5"));
+
+        mockMvc.perform(delete("/api/registry/cities/narva"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/delivery-fee/Narva/car"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(delete("/api/registry/cities/narva"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,105 @@
+package com.fujitsu.deliveryfee.controller;
+
+import com.fujitsu.deliveryfee.exception.GlobalExceptionHandler;
+import com.fujitsu.deliveryfee.service.DeliveryFeeService;
+import com.fujitsu.deliveryfee.service.DeliveryFeeStreamService;
+import com.fujitsu.deliveryfee.service.FeeQuote;
+import com.fujitsu.deliveryfee.service.QuoteCachePolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+
+/**
+ * Unit tests for the {@link DeliveryFeeController} class.
+ *
+ * Verifies the conditional GET of the quote endpoints: fresh quotes carry validators and a Cache-Control lasting
+ * until the next import, and revalidations of a current quote are answered with 304 Not Modified carrying the
+ * same Cache-Control, so that shared caches renew the max-age of their copy.
+ */
+@ExtendWith(MockitoExtension.class)
+class DeliveryFeeControllerTest {
+
+    private static final LocalDateTime TEST_DATE_TIME = LocalDateTime.of(2024, 3, 28, 12, 0);
+    private static final FeeQuote TEST_QUOTE = new FeeQuote(4.0, TEST_DATE_TIME);
+    // The next import at 12:15 is 15 minutes after the fixed clock
+    private static final String CACHE_CONTROL = "max-age=900, public";
+
+    @Mock
+    private DeliveryFeeService deliveryFeeService;
+
+    @Mock
+    private DeliveryFeeStreamService deliveryFeeStreamService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        QuoteCachePolicy quoteCachePolicy = new QuoteCachePolicy("0 15 * * * *",
+                Clock.fixed(Instant.parse("2024-03-28T12:00:00Z"), ZoneOffset.UTC));
+        mockMvc = MockMvcBuilders.standaloneSetup(new DeliveryFeeController(deliveryFeeService, deliveryFeeStreamService, quoteCachePolicy))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+
+
+    /**
+     * Verifies that a quote carries its validators and a Cache-Control lasting until the next import.
+     */
+    @Test
+    void whenQuoteIsRequested_thenValidatorsAndCacheControlAreSent() throws Exception {
+        when(deliveryFeeService.quoteDeliveryFee("Tallinn", "car", null)).thenReturn(TEST_QUOTE);
+
+        mockMvc.perform(get("/delivery-fee/Tallinn/car"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, TEST_QUOTE.eTag()))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL))
+                .andExpect(content().string("4.0"));
+    }
+
+
+    /**
+     * Verifies that a client holding the current quote is answered with 304 Not Modified, which carries the
+     * validators and the Cache-Control of the full response but no body.
+     */
+    @Test
+    void whenClientQuoteIsCurrent_thenNotModifiedCarriesCacheControl() throws Exception {
+        when(deliveryFeeService.quoteDeliveryFee("Tallinn", "car", null)).thenReturn(TEST_QUOTE);
+
+        mockMvc.perform(get("/delivery-fee/Tallinn/car").header(HttpHeaders.IF_NONE_MATCH, TEST_QUOTE.eTag()))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, TEST_QUOTE.eTag()))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL))
+                .andExpect(content().string(""));
+    }
+
+
+    /**
+     * Verifies that a revalidated quote by coordinates is answered like a quote by city.
+     */
+    @Test
+    void whenClientQuoteNearIsCurrent_thenNotModifiedCarriesCacheControl() throws Exception {
+        when(deliveryFeeService.quoteDeliveryFeeNear(59.437, 24.7536, "car", null, 1)).thenReturn(TEST_QUOTE);
+
+        mockMvc.perform(get("/delivery-fee/nearest").param("latitude", "59.437").param("longitude", "24.7536")
+                        .param("vehicleType", "car").header(HttpHeaders.IF_NONE_MATCH, TEST_QUOTE.eTag()))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL));
+    }
+}
@@ -0,0 +1,218 @@
+package com.fujitsu.deliveryfee.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fujitsu.deliveryfee.dto.DeliveryFeeErrorCode;
+import com.fujitsu.deliveryfee.dto.DeliveryFeeRequest;
+import com.fujitsu.deliveryfee.dto.DeliveryFeeResult;
+import com.fujitsu.deliveryfee.exception.GlobalExceptionHandler;
+import com.fujitsu.deliveryfee.service.DeliveryFeeService;
+import com.fujitsu.deliveryfee.service.DeliveryFeeStreamService;
+import com.fujitsu.deliveryfee.service.FeeQuote;
+import com.fujitsu.deliveryfee.service.QuoteCachePolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+
+/**
+ * Tests for {@link ReactiveDeliveryFeeController}.
+ *
+ * Verifies that quotes answered from memory are calculated without leaving the calling thread while
+ * quotes that need the database are offloaded to the bounded elastic scheduler, that cached quotes are
+ * revalidated with 304 responses, that the batch limit is enforced and that streamed results keep the
+ * order of the requests across chunks, with malformed lines answered in place.
+ */
+@ExtendWith(MockitoExtension.class)
+class ReactiveDeliveryFeeControllerTest {
+
+    private static final LocalDateTime TEST_DATE_TIME = LocalDateTime.of(2024, 3, 28, 12, 0);
+    private static final FeeQuote TEST_QUOTE = new FeeQuote(4.0, TEST_DATE_TIME);
+
+    @Mock
+    private DeliveryFeeService deliveryFeeService;
+
+    private WebTestClient webTestClient;
+
+    // Name of the thread the last quote was calculated on
+    private final AtomicReference<String> quoteThread = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() {
+        DeliveryFeeStreamService deliveryFeeStreamService = new DeliveryFeeStreamService(deliveryFeeService, new ObjectMapper().findAndRegisterModules());
+        ReactiveDeliveryFeeController controller = new ReactiveDeliveryFeeController(deliveryFeeService, deliveryFeeStreamService,
+                new QuoteCachePolicy("-", Clock.systemUTC()));
+        webTestClient = WebTestClient.bindToController(controller)
+                .controllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    private FeeQuote recordThread() {
+        quoteThread.set(Thread.currentThread().getName());
+        return TEST_QUOTE;
+    }
+
+
+
+    /**
+     * Verifies that a quote answered from memory is not offloaded, and that it carries the validator headers.
+     */
+    @Test
+    void whenQuoteIsCalculatedInMemory_thenItIsNotOffloaded() {
+        when(deliveryFeeService.isCalculatedInMemory("Tallinn", null)).thenReturn(true);
+        when(deliveryFeeService.quoteDeliveryFee("Tallinn", "car", null)).thenAnswer(invocation -> recordThread());
+
+        webTestClient.get().uri("/delivery-fee/Tallinn/car")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, TEST_QUOTE.eTag())
+                .expectBody(Double.class).isEqualTo(4.0);
+
+        assertFalse(quoteThread.get().startsWith("boundedElastic"), quoteThread.get());
+    }
+
+
+    /**
+     * Verifies that a quote needing a database lookup is offloaded to the bounded elastic scheduler.
+     */
+    @Test
+    void whenQuoteNeedsDatabase_thenItIsOffloaded() {
+        when(deliveryFeeService.isCalculatedInMemory("Tallinn", TEST_DATE_TIME)).thenReturn(false);
+        when(deliveryFeeService.quoteDeliveryFee("Tallinn", "car", TEST_DATE_TIME)).thenAnswer(invocation -> recordThread());
+
+        webTestClient.get().uri("/delivery-fee/Tallinn/car?dateTime=2024-03-28T12:00:00")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Double.class).isEqualTo(4.0);
+
+        assertTrue(quoteThread.get().startsWith("boundedElastic"), quoteThread.get());
+    }
+
+
+    /**
+     * Verifies that quotes by coordinates are offloaded only if they are backdated.
+     */
+    @Test
+    void whenQuoteByCoordinatesIsBackdated_thenItIsOffloaded() {
+        when(deliveryFeeService.quoteDeliveryFeeNear(59.437, 24.7536, "car", null, 1)).thenAnswer(invocation -> recordThread());
+        when(deliveryFeeService.quoteDeliveryFeeNear(59.437, 24.7536, "car", TEST_DATE_TIME, 2)).thenAnswer(invocation -> recordThread());
+
+        webTestClient.get().uri("/delivery-fee/nearest?latitude=59.437&longitude=24.7536&vehicleType=car")
+                .exchange()
+                .expectStatus().isOk();
+        assertFalse(quoteThread.get().startsWith("boundedElastic"), quoteThread.get());
+
+        webTestClient.get().uri("/delivery-fee/nearest?latitude=59.437&longitude=24.7536&vehicleType=car&dateTime=2024-03-28T12:00:00&stations=2")
+                .exchange()
+                .expectStatus().isOk();
+        assertTrue(quoteThread.get().startsWith("boundedElastic"), quoteThread.get());
+    }
+
+
+    /**
+     * Verifies that a client holding the current quote is answered with 304 Not Modified and no body,
+     * carrying the Cache-Control of the full response.
+     */
+    @Test
+    void whenClientQuoteIsCurrent_thenNotModifiedIsReturned() {
+        when(deliveryFeeService.isCalculatedInMemory("Tallinn", null)).thenReturn(true);
+        when(deliveryFeeService.quoteDeliveryFee("Tallinn", "car", null)).thenReturn(TEST_QUOTE);
+
+        webTestClient.get().uri("/delivery-fee/Tallinn/car")
+                .header(HttpHeaders.IF_NONE_MATCH, TEST_QUOTE.eTag())
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, TEST_QUOTE.eTag())
+                .expectHeader().valueEquals(HttpHeaders.CACHE_CONTROL, "max-age=0, public")
+                .expectBody().isEmpty();
+    }
+
+
+    /**
+     * Verifies that batches above the maximum size are rejected before any fee is calculated.
+     */
+    @Test
+    void whenBatchIsTooLarge_thenBadRequestIsReturned() {
+        DeliveryFeeRequest request = new DeliveryFeeRequest();
+        request.setCity("Tallinn");
+        request.setVehicleType("car");
+
+        webTestClient.post().uri("/delivery-fee/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Collections.nCopies(DeliveryFeeController.MAX_BATCH_SIZE + 1, request))
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verify(deliveryFeeService, never()).calculateDeliveryFees(anyList());
+    }
+
+
+    /**
+     * Verifies that streamed requests are priced in chunks off the calling thread, and that the results
+     * are written one per line in the order of the requests, a malformed line producing an INVALID_REQUEST result
+     * in its place instead of failing the stream.
+     */
+    @Test
+    void whenRequestsAreStreamed_thenResultsKeepRequestOrder() throws Exception {
+        List<String> chunkThreads = Collections.synchronizedList(new ArrayList<>());
+        when(deliveryFeeService.calculateDeliveryFees(anyList())).thenAnswer(invocation -> {
+            chunkThreads.add(Thread.currentThread().getName());
+            List<DeliveryFeeRequest> chunk = invocation.getArgument(0);
+            return chunk.stream()
+                    .map(request -> request == null
+                            ? DeliveryFeeResult.failure(DeliveryFeeErrorCode.INVALID_REQUEST, "City and vehicle type are required")
+                            : DeliveryFeeResult.success(Double.parseDouble(request.getCity())))
+                    .toList();
+        });
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 2500; i++) {
+            body.append(i == 1234 ? "not json" : "{\"city\":\"" + i + "\",\"vehicleType\":\"car\"}").append('\n');
+        }
+
+        String response = webTestClient.post().uri("/delivery-fee/stream")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body.toString())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<String> lines = response.lines().filter(line -> !line.isBlank()).toList();
+        assertEquals(2500, lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            JsonNode result = objectMapper.readTree(lines.get(i));
+            if (i == 1234) {
+                assertEquals("INVALID_REQUEST", result.get("errorCode").asText());
+            } else {
+                assertEquals(i, result.get("fee").asDouble());
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<DeliveryFeeRequest>> chunks = ArgumentCaptor.forClass(List.class);
+        verify(deliveryFeeService, times(3)).calculateDeliveryFees(chunks.capture());
+        assertEquals(List.of(1000, 1000, 500), chunks.getAllValues().stream().map(List::size).toList());
+        assertTrue(chunkThreads.stream().allMatch(thread -> thread.startsWith("boundedElastic")), chunkThreads.toString());
+    }
+}
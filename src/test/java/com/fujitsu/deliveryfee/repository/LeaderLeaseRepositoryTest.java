@@ -0,0 +1,106 @@
+package com.fujitsu.deliveryfee.repository;
+
+import com.fujitsu.deliveryfee.model.LeaderLease;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Tests for {@link LeaderLeaseRepository} against the embedded H2 database.
+ *
+ * Runs the conditional updates that elect the leader, verifying that only one node holds an unexpired
+ * lease, that the owner can renew it, and that another node takes it over once it has expired.
+ */
+@DataJpaTest
+class LeaderLeaseRepositoryTest {
+
+    private static final String LEASE_NAME = "weather-import";
+    private static final Instant NOW = Instant.parse("2024-03-28T12:00:00Z");
+    private static final Duration LEASE_DURATION = Duration.ofMinutes(5);
+
+    @Autowired
+    private LeaderLeaseRepository leaderLeaseRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        leaderLeaseRepository.saveAndFlush(new LeaderLease(LEASE_NAME, null, Instant.EPOCH, 0, 0));
+    }
+
+    // The bulk updates bypass the persistence context, so the lease is read back from the database
+    private LeaderLease findLease() {
+        entityManager.clear();
+        return leaderLeaseRepository.findById(LEASE_NAME).orElseThrow();
+    }
+
+
+
+    /**
+     * Verifies that a second node cannot acquire a lease that another node holds.
+     */
+    @Test
+    void whenLeaseIsHeld_thenOtherNodeCannotAcquireIt() {
+        assertEquals(1, leaderLeaseRepository.acquire(LEASE_NAME, "node-1", NOW, NOW.plus(LEASE_DURATION)));
+        assertEquals(0, leaderLeaseRepository.acquire(LEASE_NAME, "node-2", NOW.plusSeconds(1), NOW.plusSeconds(1).plus(LEASE_DURATION)));
+
+        LeaderLease lease = findLease();
+        assertEquals("node-1", lease.getOwner());
+        assertEquals(NOW.plus(LEASE_DURATION), lease.getExpiresAt());
+    }
+
+
+    /**
+     * Verifies that the owner renews its lease before it expires.
+     */
+    @Test
+    void whenOwnerRenews_thenLeaseIsExtended() {
+        leaderLeaseRepository.acquire(LEASE_NAME, "node-1", NOW, NOW.plus(LEASE_DURATION));
+        Instant renewedAt = NOW.plus(Duration.ofMinutes(4));
+
+        assertEquals(1, leaderLeaseRepository.acquire(LEASE_NAME, "node-1", renewedAt, renewedAt.plus(LEASE_DURATION)));
+        assertEquals(0, leaderLeaseRepository.acquire(LEASE_NAME, "node-2", NOW.plus(LEASE_DURATION).plusSeconds(1), NOW.plus(Duration.ofMinutes(15))));
+
+        LeaderLease lease = findLease();
+        assertEquals("node-1", lease.getOwner());
+        assertEquals(renewedAt.plus(LEASE_DURATION), lease.getExpiresAt());
+    }
+
+
+    /**
+     * Verifies that another node takes over an expired lease, after which the previous owner is no longer the leader.
+     */
+    @Test
+    void whenLeaseHasExpired_thenOtherNodeTakesItOver() {
+        leaderLeaseRepository.acquire(LEASE_NAME, "node-1", NOW, NOW.plus(LEASE_DURATION));
+        Instant takenOverAt = NOW.plus(LEASE_DURATION).plusSeconds(1);
+
+        assertEquals(1, leaderLeaseRepository.acquire(LEASE_NAME, "node-2", takenOverAt, takenOverAt.plus(LEASE_DURATION)));
+        assertEquals(0, leaderLeaseRepository.acquire(LEASE_NAME, "node-1", takenOverAt.plusSeconds(1), takenOverAt.plus(LEASE_DURATION)));
+        assertEquals("node-2", findLease().getOwner());
+    }
+
+
+    /**
+     * Verifies that the published snapshot and rules versions are incremented independently.
+     */
+    @Test
+    void testVersionIncrements() {
+        leaderLeaseRepository.incrementSnapshotVersion(LEASE_NAME);
+        leaderLeaseRepository.incrementSnapshotVersion(LEASE_NAME);
+        leaderLeaseRepository.incrementRulesVersion(LEASE_NAME);
+
+        assertEquals(Long.valueOf(2), leaderLeaseRepository.findSnapshotVersion(LEASE_NAME));
+        assertEquals(Long.valueOf(1), leaderLeaseRepository.findRulesVersion(LEASE_NAME));
+        assertNull(leaderLeaseRepository.findRulesVersion("unknown"));
+    }
+}
@@ -0,0 +1,188 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.model.BaseFeeRule;
+import com.fujitsu.deliveryfee.model.City;
+import com.fujitsu.deliveryfee.model.ExtraFeeRule;
+import com.fujitsu.deliveryfee.model.VehicleType;
+import com.fujitsu.deliveryfee.model.WeatherPhenomenon;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Tests for {@link CompiledFeeRules}.
+ *
+ * Covers parsing of extra fee rule condition values into intervals, the compiled lookups
+ * of base and extra fees, and validation of rules before they are saved.
+ */
+class CompiledFeeRulesTest {
+
+    private final CompiledFeeRules defaultRules = CompiledFeeRules.compile(1, DefaultFeeRules.baseFeeRules(), DefaultFeeRules.extraFeeRules());
+
+
+    /**
+     * Verifies that comparisons and ranges are parsed into inclusive intervals.
+     *
+     * @param conditionValue The condition value of the rule.
+     * @param value The value that is checked against the interval.
+     * @param expectedMatch Whether the value is expected to lie within the interval.
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "<-10, -10.1, true",
+            "<-10, -10, false",
+            "<=0, 0, true",
+            ">20, 20, false",
+            ">20, 20.1, true",
+            ">=20, 20, true",
+            "10-20, 10, true",
+            "10-20, 20, true",
+            "10-20, 20.01, false",
+            "-10-0, -10, true",
+            "-10-0, 0, true",
+            "-10-0, 0.1, false"
+    })
+    void testIntervalParsing(String conditionValue, double value, boolean expectedMatch) {
+        double[] interval = CompiledFeeRules.parseInterval(conditionValue);
+        assertEquals(expectedMatch, interval[0] <= value && value <= interval[1], "Unexpected match of " + value + " against " + conditionValue);
+    }
+
+
+    /**
+     * Verifies that malformed condition values are rejected.
+     *
+     * @param conditionValue The malformed condition value.
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"", "cold", "20-10", "<", "10-", "=>5"})
+    void whenConditionValueIsMalformed_thenThrowException(String conditionValue) {
+        assertThrows(IllegalArgumentException.class, () -> CompiledFeeRules.parseInterval(conditionValue));
+    }
+
+
+    /**
+     * Verifies that the dense base fee table is indexed by city and vehicle type ordinals.
+     */
+    @Test
+    void testBaseFeeLookup() {
+        int cityIndex = defaultRules.getCityIndex("tartu");
+        int vehicleTypeIndex = defaultRules.getVehicleTypeIndex("scooter");
+        assertEquals(3.0, defaultRules.getBaseFee(cityIndex, vehicleTypeIndex));
+        assertEquals(-1, defaultRules.getCityIndex("riga"));
+        assertEquals(-1, defaultRules.getVehicleTypeIndex("tank"));
+    }
+
+
+    /**
+     * Verifies that vehicle types offered in another city but not in the given one have no base fee.
+     */
+    @Test
+    void whenVehicleTypeIsNotOfferedInCity_thenBaseFeeIsNaN() {
+        CompiledFeeRules rules = CompiledFeeRules.compile(1, List.of(
+                new BaseFeeRule(null, "Tallinn", "car", 4.0),
+                new BaseFeeRule(null, "Tartu", "bike", 2.5)), List.of());
+        assertTrue(Double.isNaN(rules.getBaseFee(rules.getCityIndex("tallinn"), rules.getVehicleTypeIndex("bike"))));
+    }
+
+
+    /**
+     * Verifies that names resolve case-insensitively to the canonical names of the registry, that base fee rules
+     * outside the registry are skipped, and that each city lists its primary station before its fallback stations.
+     */
+    @Test
+    void testRegistryLookup() {
+        CompiledFeeRules rules = CompiledFeeRules.compile(1, List.of(
+                new City("Tallinn", "Tallinn-Harku", "Tallinn-Pirita, ,Kunda"),
+                new City("pärnu", "Pärnu", null),
+                new City("narva", null, null)), List.of(new VehicleType("Car")), List.of(
+                new BaseFeeRule(null, "TALLINN", "car", 4.0),
+                new BaseFeeRule(null, "Tartu", "car", 3.5)), List.of());
+
+        int tallinn = rules.getCityIndex("tAlLiNn");
+        assertEquals(tallinn, rules.getCityIndex("tallinn"));
+        assertEquals(rules.getCityIndex("pärnu"), rules.getCityIndex("PÄRNU"));
+        assertEquals(List.of("tallinn", "pärnu"), rules.getCities());
+        assertEquals(4.0, rules.getBaseFee(tallinn, rules.getVehicleTypeIndex("CAR")));
+        assertEquals(-1, rules.getCityIndex("tartu"));
+        assertEquals(-1, rules.getCityIndex("narva"));
+        assertEquals(-1, rules.getCityIndex("tallin"));
+        assertEquals(-1, rules.getCityIndex(null));
+        assertEquals(List.of("Tallinn-Harku", "Tallinn-Pirita", "Kunda"), rules.getStationNames(tallinn));
+        assertEquals(List.of("Tallinn-Harku", "Tallinn-Pirita", "Kunda", "Pärnu"), rules.getStationNames());
+    }
+
+
+    /**
+     * Verifies that every name of a registry larger than the initial table resolves to its own ordinal.
+     */
+    @Test
+    void whenRegistryIsLarge_thenEveryNameResolves() {
+        List<City> cities = IntStream.range(0, 100).mapToObj(i -> new City("City" + i, "Station" + i, null)).toList();
+        CompiledFeeRules rules = CompiledFeeRules.compile(1, cities, List.of(), List.of(), List.of());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, rules.getCityIndex("CITY" + i));
+            assertEquals(List.of("Station" + i), rules.getStationNames(i));
+        }
+        assertEquals(-1, rules.getCityIndex("City100"));
+    }
+
+
+    /**
+     * Verifies that the highest matching phenomenon fee applies and that forbidding rules win.
+     */
+    @Test
+    void testPhenomenonFees() {
+        int bike = defaultRules.getVehicleTypeIndex("bike");
+        assertEquals(1.0, defaultRules.getPhenomenonFee(bike, WeatherPhenomenon.classify("Light snow shower")));
+        assertEquals(0.5, defaultRules.getPhenomenonFee(bike, WeatherPhenomenon.classify("Moderate shower")));
+        assertEquals(0.0, defaultRules.getPhenomenonFee(bike, WeatherPhenomenon.classify("Clear")));
+        assertEquals(0.0, defaultRules.getPhenomenonFee(bike, WeatherPhenomenon.classify(null)));
+        assertEquals(CompiledFeeRules.FORBIDDEN, defaultRules.getPhenomenonFee(bike, WeatherPhenomenon.classify("Thunderstorm")));
+    }
+
+
+    /**
+     * Verifies that reported phenomena are classified into the categories whose keyword they contain.
+     */
+    @Test
+    void testPhenomenonClassification() {
+        assertEquals(WeatherPhenomenon.SNOW.getFlag() | WeatherPhenomenon.SHOWER.getFlag(), WeatherPhenomenon.classify("Light snow shower"));
+        assertEquals(WeatherPhenomenon.GLAZE.getFlag(), WeatherPhenomenon.classify("Glaze"));
+        assertEquals(0, WeatherPhenomenon.classify("Mist"));
+        assertEquals(WeatherPhenomenon.SLEET.getFlag() | WeatherPhenomenon.HAIL.getFlag(), CompiledFeeRules.parsePhenomena(" Sleet, hail"));
+    }
+
+
+    /**
+     * Verifies that extra fee rules only apply to the vehicle types they are limited to.
+     */
+    @Test
+    void testVehicleTypeSpecificRules() {
+        assertFalse(defaultRules.hasWindSpeedRules(defaultRules.getVehicleTypeIndex("scooter")));
+        assertEquals(CompiledFeeRules.FORBIDDEN, defaultRules.getWindSpeedFee(defaultRules.getVehicleTypeIndex("bike"), 25.0));
+        assertEquals(0.0, defaultRules.getTemperatureFee(defaultRules.getVehicleTypeIndex("car"), -20.0));
+    }
+
+
+    /**
+     * Verifies that invalid extra fee rules are rejected before they can be saved.
+     */
+    @Test
+    void whenExtraFeeRuleIsInvalid_thenValidationFails() {
+        assertThrows(IllegalArgumentException.class,
+                () -> CompiledFeeRules.validate(new ExtraFeeRule("humidity", ">90", 1.0, null, false)));
+        assertThrows(IllegalArgumentException.class,
+                () -> CompiledFeeRules.validate(new ExtraFeeRule("windSpeed", "10-20", null, "bike", false)));
+        assertThrows(IllegalArgumentException.class,
+                () -> CompiledFeeRules.validate(new ExtraFeeRule("phenomenon", " , ", 1.0, null, false)));
+        assertThrows(IllegalArgumentException.class,
+                () -> CompiledFeeRules.validate(new ExtraFeeRule("phenomenon", "snow,tornado", 1.0, null, false)));
+    }
+}
@@ -1,11 +1,21 @@
 package com.fujitsu.deliveryfee.service;
 
+import com.fujitsu.deliveryfee.config.WeatherProperties;
+import com.fujitsu.deliveryfee.dto.DeliveryFeeErrorCode;
+import com.fujitsu.deliveryfee.dto.DeliveryFeeRequest;
+import com.fujitsu.deliveryfee.dto.DeliveryFeeResult;
+import com.fujitsu.deliveryfee.exception.ServiceBusyException;
 import com.fujitsu.deliveryfee.exception.UnsupportedCityException;
 import com.fujitsu.deliveryfee.exception.UnsupportedVehicleTypeException;
 import com.fujitsu.deliveryfee.exception.VehicleUseForbiddenException;
 import com.fujitsu.deliveryfee.exception.WeatherDataUnavailableException;
+import com.fujitsu.deliveryfee.model.City;
 import com.fujitsu.deliveryfee.model.WeatherData;
+import com.fujitsu.deliveryfee.model.WeatherObservation;
 import com.fujitsu.deliveryfee.repository.WeatherDataRepository;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -14,12 +24,17 @@ import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -45,6 +60,29 @@ class DeliveryFeeServiceTest {
     @Mock
     private WeatherDataRepository weatherDataRepository;
 
+    @Spy
+    private WeatherSnapshotService weatherSnapshotService = new WeatherSnapshotService();
+
+    @Mock
+    private WeatherHistoryService weatherHistoryService;
+
+    @Mock
+    private FeeRuleEngine feeRuleEngine;
+
+    @Spy
+    private WeatherLookupBulkhead weatherLookupBulkhead = new WeatherLookupBulkhead(8, Duration.ofSeconds(1));
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private DeliveryFeeMetrics deliveryFeeMetrics = new DeliveryFeeMetrics(meterRegistry, new WeatherProperties(), weatherSnapshotService);
+
+    @Mock
+    private QuoteLog quoteLog;
+
+    @Spy
+    private WeatherProperties weatherProperties = new WeatherProperties();
+
     @InjectMocks
     private DeliveryFeeService deliveryFeeService;
 
@@ -54,6 +92,16 @@ class DeliveryFeeServiceTest {
         return new WeatherData(10.0, 5.0, "clear", TEST_DATE_TIME);
     }
 
+    private List<WeatherObservation> observations(WeatherData weatherData) {
+        return Collections.singletonList(WeatherObservation.of(weatherData));
+    }
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(feeRuleEngine.getRules())
+                .thenReturn(CompiledFeeRules.compile(1, DefaultFeeRules.baseFeeRules(), DefaultFeeRules.extraFeeRules()));
+    }
+
 
 
     /**
@@ -77,7 +125,7 @@ class DeliveryFeeServiceTest {
             "Pärnu, bike, 2.0"
     })
     void testBaseFeeCalculation(String city, String vehicleType, double expectedFee) {
-        when(weatherDataRepository.findByCityAndTimestampBefore(anyString(), any(LocalDateTime.class), any(Pageable.class))).thenReturn(Collections.singletonList(defaultWeatherData()));
+        when(weatherDataRepository.findObservationsAtOrBefore(anyString(), any(LocalDateTime.class), any(Pageable.class))).thenReturn(observations(defaultWeatherData()));
         double fee = deliveryFeeService.calculateDeliveryFee(city, vehicleType, TEST_DATE_TIME);
         assertEquals(expectedFee, fee, "Incorrect base fee for " + vehicleType + " in " + city);
     }
@@ -104,7 +152,7 @@ class DeliveryFeeServiceTest {
     @MethodSource("weatherConditionProvider")
     void testWeatherConditionImpact(String city, String vehicleType, Double temperature, Double windSpeed, String phenomenon, double expectedFee) {
         WeatherData weatherData = new WeatherData(temperature, windSpeed, phenomenon, TEST_DATE_TIME);
-        when(weatherDataRepository.findByCityAndTimestampBefore(anyString(), any(LocalDateTime.class), any(Pageable.class))).thenReturn(Collections.singletonList(weatherData));
+        when(weatherDataRepository.findObservationsAtOrBefore(anyString(), any(LocalDateTime.class), any(Pageable.class))).thenReturn(observations(weatherData));
         double fee = deliveryFeeService.calculateDeliveryFee(city, vehicleType, TEST_DATE_TIME);
         assertEquals(expectedFee, fee, "Incorrect fee for " + vehicleType + " in " + city + " under specified weather conditions.");
     }
@@ -164,8 +212,8 @@ class DeliveryFeeServiceTest {
     @MethodSource("forbiddenWeatherConditions")
     void testForbiddenWeatherConditions(String city, String vehicleType, Double temperature, Double windSpeed, String phenomenon) {
         WeatherData hazardousWeather = new WeatherData(temperature, windSpeed, phenomenon, TEST_DATE_TIME);
-        when(weatherDataRepository.findByCityAndTimestampBefore(eq("Tallinn-Harku"), eq(TEST_DATE_TIME), any(Pageable.class)))
-                .thenReturn(Collections.singletonList(hazardousWeather));
+        when(weatherDataRepository.findObservationsAtOrBefore(eq("Tallinn-Harku"), eq(TEST_DATE_TIME), any(Pageable.class)))
+                .thenReturn(observations(hazardousWeather));
         assertThrows(VehicleUseForbiddenException.class,
                 () -> deliveryFeeService.calculateDeliveryFee(city, vehicleType, TEST_DATE_TIME),
                 String.format("Usage of %s should be forbidden under weather conditions: %s", vehicleType, phenomenon));
@@ -210,7 +258,7 @@ class DeliveryFeeServiceTest {
      */
     @Test
     void whenWeatherDataUnavailable_thenThrowException() {
-        when(weatherDataRepository.findByCityAndTimestampBefore(anyString(), any(LocalDateTime.class), any(Pageable.class))).thenReturn(Collections.emptyList());
+        when(weatherDataRepository.findObservationsAtOrBefore(anyString(), any(LocalDateTime.class), any(Pageable.class))).thenReturn(Collections.emptyList());
         assertThrows(WeatherDataUnavailableException.class, () -> deliveryFeeService.calculateDeliveryFee("Tallinn", "bike", TEST_DATE_TIME));
     }
 
@@ -222,10 +270,362 @@ class DeliveryFeeServiceTest {
     @Test
     void whenInTallinnWithBikeAndWindSpeedIsGreaterThan20_thenVehicleUseIsForbidden() {
         WeatherData extremelyWindyWeather = new WeatherData("Tallinn-Harku", 5.0, 21.0, "clear", TEST_DATE_TIME);
-        when(weatherDataRepository.findByCityAndTimestampBefore("Tallinn-Harku", TEST_DATE_TIME, PageRequest.of(0, 1))).thenReturn(Collections.singletonList(extremelyWindyWeather));
+        when(weatherDataRepository.findObservationsAtOrBefore("Tallinn-Harku", TEST_DATE_TIME, PageRequest.of(0, 1))).thenReturn(observations(extremelyWindyWeather));
         assertThrows(VehicleUseForbiddenException.class, () -> deliveryFeeService.calculateDeliveryFee("Tallinn", "bike", TEST_DATE_TIME));
     }
 
+    /**
+     * Ensures that weather data is taken from the in-memory snapshot without querying the database
+     * when the requested time is not earlier than the newest observation of the station.
+     */
+    @Test
+    void whenSnapshotCoversRequestedTime_thenRepositoryIsNotQueried() {
+        weatherSnapshotService.refresh(List.of(new WeatherData("Tallinn-Harku", -5.0, 5.0, "clear", TEST_DATE_TIME)));
+        double fee = deliveryFeeService.calculateDeliveryFee("Tallinn", "bike", TEST_DATE_TIME.plusMinutes(30));
+        assertEquals(3.5, fee);
+        verifyNoInteractions(weatherDataRepository);
+    }
+
+
+    /**
+     * Ensures that the database is still queried for a datetime that precedes the newest observation in the snapshot.
+     */
+    @Test
+    void whenRequestedTimePrecedesSnapshot_thenRepositoryIsQueried() {
+        weatherSnapshotService.refresh(List.of(new WeatherData("Tallinn-Harku", -5.0, 5.0, "clear", TEST_DATE_TIME)));
+        LocalDateTime earlierDateTime = TEST_DATE_TIME.minusHours(1);
+        when(weatherDataRepository.findObservationsAtOrBefore("Tallinn-Harku", earlierDateTime, PageRequest.of(0, 1)))
+                .thenReturn(observations(new WeatherData("Tallinn-Harku", 5.0, 5.0, "clear", earlierDateTime)));
+        double fee = deliveryFeeService.calculateDeliveryFee("Tallinn", "bike", earlierDateTime);
+        assertEquals(3.0, fee);
+    }
+
+    /**
+     * Ensures that a request without a datetime is priced with the latest observation of the station,
+     * using the query without a time filter.
+     */
+    @Test
+    void whenNoDateTimeIsGiven_thenLatestObservationIsUsed() {
+        when(weatherDataRepository.findLatestObservations("Tallinn-Harku", PageRequest.of(0, 1)))
+                .thenReturn(observations(new WeatherData("Tallinn-Harku", -15.0, 5.0, "clear", TEST_DATE_TIME)));
+        double fee = deliveryFeeService.calculateDeliveryFee("Tallinn", "scooter", null);
+        assertEquals(4.5, fee);
+        verify(weatherDataRepository, never()).findObservationsAtOrBefore(anyString(), any(LocalDateTime.class), any(Pageable.class));
+    }
+
+    /**
+     * Verifies that stations appearing in a published weather snapshot get an observation age gauge,
+     * not only the stations configured in {@code weather.stations}.
+     */
+    @Test
+    void whenSnapshotHasNewStation_thenObservationAgeIsGauged() {
+        WeatherData observation = new WeatherData(1.0, 5.0, "clear", LocalDateTime.now().minusMinutes(10));
+        observation.setStationName("Riga");
+
+        weatherSnapshotService.refresh(List.of(observation));
+
+        double age = meterRegistry.get("weather.observation.age").tag("station", "Riga").gauge().value();
+        assertTrue(age >= 600 && age < 660, "Unexpected observation age " + age);
+    }
+
+    /**
+     * Verifies that quotes are timed by city, vehicle type and outcome, that unknown cities are tagged as other,
+     * and that every quote is passed to the quote log, which decides whether to log it.
+     */
+    @Test
+    void whenQuotesAreCalculated_thenOutcomesAreRecorded() {
+        when(weatherDataRepository.findObservationsAtOrBefore(anyString(), any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(observations(new WeatherData(-5.0, 25.0, "clear", TEST_DATE_TIME)));
+        deliveryFeeService.calculateDeliveryFee("Tallinn", "car", TEST_DATE_TIME);
+        assertThrows(VehicleUseForbiddenException.class, () -> deliveryFeeService.calculateDeliveryFee("Tallinn", "bike", TEST_DATE_TIME));
+        assertThrows(UnsupportedCityException.class, () -> deliveryFeeService.calculateDeliveryFee("Narva", "car", TEST_DATE_TIME));
+
+        assertEquals(1, meterRegistry.get("delivery.fee.quotes").tags("city", "tallinn", "vehicle.type", "car", "outcome", "ok").timer().count());
+        assertEquals(1, meterRegistry.get("delivery.fee.quotes").tags("city", "tallinn", "vehicle.type", "bike", "outcome", "vehicle_use_forbidden").timer().count());
+        assertEquals(1, meterRegistry.get("delivery.fee.quotes").tags("city", "other", "vehicle.type", "car", "outcome", "unsupported_city").timer().count());
+        verify(quoteLog).log(eq("Tallinn"), eq("car"), eq(TEST_DATE_TIME), eq(4.0), eq("ok"), anyLong());
+        verify(quoteLog).log(eq("Narva"), eq("car"), eq(TEST_DATE_TIME), isNull(), eq("unsupported_city"), anyLong());
+    }
+
+    /**
+     * Ensures that a backdated request covered by the in-memory weather history is priced without querying the database.
+     */
+    @Test
+    void whenHistoryCoversDateTime_thenDatabaseIsNotQueried() {
+        LocalDateTime dateTime = TEST_DATE_TIME.minusDays(3);
+        when(weatherHistoryService.findAtOrBefore("Tallinn-Harku", dateTime))
+                .thenReturn(WeatherObservation.of(new WeatherData("Tallinn-Harku", -15.0, 5.0, "Light snowfall", dateTime.minusMinutes(45))));
+        double fee = deliveryFeeService.calculateDeliveryFee("Tallinn", "scooter", dateTime);
+        assertEquals(5.5, fee);
+        assertTrue(deliveryFeeService.isCalculatedInMemory("Tallinn", dateTime));
+        verifyNoInteractions(weatherDataRepository);
+    }
+
+    /**
+     * Verifies that a quote is reported as calculable in memory only if the snapshot covers the requested time,
+     * which the reactive controller relies on to keep database lookups off the event loop.
+     */
+    @Test
+    void testIsCalculatedInMemory() {
+        weatherSnapshotService.refresh(List.of(new WeatherData("Tallinn-Harku", -5.0, 5.0, "clear", TEST_DATE_TIME)));
+        assertTrue(deliveryFeeService.isCalculatedInMemory("Tallinn", null));
+        assertTrue(deliveryFeeService.isCalculatedInMemory("tallinn", TEST_DATE_TIME));
+        assertFalse(deliveryFeeService.isCalculatedInMemory("Tallinn", TEST_DATE_TIME.minusHours(1)));
+        assertFalse(deliveryFeeService.isCalculatedInMemory("Tartu", null));
+        assertTrue(deliveryFeeService.isCalculatedInMemory("UnknownCity", null));
+    }
+
+    /**
+     * Verifies that a city whose primary station only has stale weather in memory is reported as calculable in memory
+     * only if a fallback station has fresh weather there, as the calculation otherwise looks the next station up in the database.
+     */
+    @Test
+    void whenPrimaryStationIsStale_thenFallbackStationsDecideIfCalculatedInMemory() {
+        when(feeRuleEngine.getRules()).thenReturn(CompiledFeeRules.compile(1, List.of(new City("tallinn", "Tallinn-Harku", "Tallinn-Pirita,Kunda")),
+                DefaultFeeRules.vehicleTypes(), DefaultFeeRules.baseFeeRules(), DefaultFeeRules.extraFeeRules()));
+        weatherProperties.getLookup().setMaxStaleness(Duration.ofHours(3));
+        // Within the full resolution window, where the staleness bound applies
+        LocalDateTime observedAt = LocalDateTime.now().minusDays(1).withHour(12).truncatedTo(ChronoUnit.HOURS);
+        weatherSnapshotService.refresh(List.of(
+                new WeatherData("Tallinn-Harku", -5.0, 5.0, "clear", observedAt),
+                new WeatherData("Tallinn-Pirita", 5.0, 5.0, "clear", observedAt.plusHours(2))));
+
+        assertTrue(deliveryFeeService.isCalculatedInMemory("Tallinn", observedAt.plusHours(1)));
+        assertTrue(deliveryFeeService.isCalculatedInMemory("Tallinn", observedAt.plusHours(4)));
+        assertFalse(deliveryFeeService.isCalculatedInMemory("Tallinn", observedAt.plusHours(6)));
+        verifyNoInteractions(weatherDataRepository);
+    }
+
+    /**
+     * Verifies that the fee matrix holds the fee or error of every city and vehicle type for the snapshot,
+     * is reused until the snapshot changes, and answers quotes for the latest weather including forbidden vehicles.
+     */
+    @Test
+    void testFeeMatrix() {
+        weatherSnapshotService.refresh(List.of(new WeatherData("Tallinn-Harku", -5.0, 25.0, "clear", TEST_DATE_TIME)));
+        FeeMatrix matrix = deliveryFeeService.getFeeMatrix();
+
+        assertEquals(4.0, matrix.getResults().get("tallinn").get("car").getFee());
+        assertEquals(DeliveryFeeErrorCode.VEHICLE_USE_FORBIDDEN, matrix.getResults().get("tallinn").get("bike").getErrorCode());
+        assertEquals(DeliveryFeeErrorCode.WEATHER_DATA_UNAVAILABLE, matrix.getResults().get("tartu").get("car").getErrorCode());
+        assertEquals(TEST_DATE_TIME, matrix.getObservedAtByCity().get("tallinn"));
+        assertNull(matrix.getObservedAtByCity().get("tartu"));
+        assertSame(matrix, deliveryFeeService.getFeeMatrix());
+
+        assertEquals(4.0, deliveryFeeService.calculateDeliveryFee("Tallinn", "Car", null));
+        assertThrows(VehicleUseForbiddenException.class, () -> deliveryFeeService.calculateDeliveryFee("Tallinn", "bike", TEST_DATE_TIME));
+        verifyNoInteractions(weatherDataRepository);
+
+        // A newer observation that changes no fee keeps the ETag and only moves the last modified time
+        weatherSnapshotService.refresh(List.of(new WeatherData("Tallinn-Harku", -5.0, 24.0, "clear", TEST_DATE_TIME.plusMinutes(30))));
+        FeeMatrix unchangedMatrix = deliveryFeeService.getFeeMatrix();
+        assertNotSame(matrix, unchangedMatrix);
+        assertEquals(matrix.getETag(), unchangedMatrix.getETag());
+        assertEquals(new FeeQuote(0.0, TEST_DATE_TIME.plusMinutes(30)).lastModified(), unchangedMatrix.getLastModified());
+
+        weatherSnapshotService.refresh(List.of(new WeatherData("Tallinn-Harku", -5.0, 5.0, "clear", TEST_DATE_TIME.plusHours(1))));
+        FeeMatrix nextMatrix = deliveryFeeService.getFeeMatrix();
+        assertNotEquals(matrix.getETag(), nextMatrix.getETag());
+        assertEquals(3.5, nextMatrix.getResults().get("tallinn").get("bike").getFee());
+    }
+
+    /**
+     * Verifies that a quote carries the timestamp of the observation it was calculated with,
+     * both when answered from the fee matrix and when the database is queried.
+     */
+    @Test
+    void testQuoteObservationTimestamp() {
+        weatherSnapshotService.refresh(List.of(new WeatherData("Tallinn-Harku", -5.0, 5.0, "clear", TEST_DATE_TIME)));
+        LocalDateTime earlierDateTime = TEST_DATE_TIME.minusHours(2);
+        when(weatherDataRepository.findObservationsAtOrBefore("Tallinn-Harku", earlierDateTime, PageRequest.of(0, 1)))
+                .thenReturn(observations(new WeatherData("Tallinn-Harku", 5.0, 5.0, "clear", earlierDateTime.minusMinutes(15))));
+
+        assertEquals(new FeeQuote(4.0, TEST_DATE_TIME), deliveryFeeService.quoteDeliveryFee("Tallinn", "car", null));
+        assertEquals(new FeeQuote(3.0, earlierDateTime.minusMinutes(15)), deliveryFeeService.quoteDeliveryFee("Tallinn", "bike", earlierDateTime));
+        assertNotEquals(deliveryFeeService.quoteDeliveryFee("Tallinn", "car", null).eTag(),
+                deliveryFeeService.quoteDeliveryFee("Tallinn", "bike", null).eTag());
+    }
+
+    /**
+     * Verifies that weather data older than the maximum staleness at the quoted time is rejected,
+     * both from the fee matrix and from the database, while fresh enough data is still used.
+     */
+    @Test
+    void whenWeatherDataIsTooOld_thenThrowException() {
+        weatherProperties.getLookup().setMaxStaleness(Duration.ofHours(3));
+        weatherSnapshotService.refresh(List.of(new WeatherData("Tallinn-Harku", -5.0, 5.0, "clear", TEST_DATE_TIME)));
+        when(weatherDataRepository.findLatestObservations("Tartu-Tõravere", PageRequest.of(0, 1)))
+                .thenReturn(observations(new WeatherData("Tartu-Tõravere", -5.0, 5.0, "clear", TEST_DATE_TIME)));
+
+        assertEquals(4.0, deliveryFeeService.calculateDeliveryFee("Tallinn", "car", TEST_DATE_TIME.plusHours(3)));
+        assertThrows(WeatherDataUnavailableException.class, () -> deliveryFeeService.calculateDeliveryFee("Tallinn", "car", TEST_DATE_TIME.plusHours(4)));
+        assertThrows(WeatherDataUnavailableException.class, () -> deliveryFeeService.calculateDeliveryFee("Tallinn", "car", null));
+        assertThrows(WeatherDataUnavailableException.class, () -> deliveryFeeService.calculateDeliveryFee("Tartu", "car", null));
+    }
+
+    /**
+     * Verifies that the weather of a city falls back to the next of its stations with fresh enough data,
+     * and that the missing data of the primary station is reported if none of the stations has any.
+     */
+    @Test
+    void whenPrimaryStationHasNoFreshData_thenFallbackStationIsUsed() {
+        when(feeRuleEngine.getRules()).thenReturn(CompiledFeeRules.compile(1, List.of(new City("tallinn", "Tallinn-Harku", "Tallinn-Pirita,Kunda")),
+                DefaultFeeRules.vehicleTypes(), DefaultFeeRules.baseFeeRules(), DefaultFeeRules.extraFeeRules()));
+        weatherProperties.getLookup().setMaxStaleness(Duration.ofHours(3));
+        // Within the full resolution window, where the staleness bound applies
+        LocalDateTime observedAt = LocalDateTime.now().minusDays(1).withHour(12).truncatedTo(ChronoUnit.HOURS);
+        weatherSnapshotService.refresh(List.of(
+                new WeatherData("Tallinn-Harku", -5.0, 5.0, "clear", observedAt),
+                new WeatherData("Tallinn-Pirita", 5.0, 5.0, "clear", observedAt.plusHours(2))));
+
+        assertEquals(new FeeQuote(3.5, observedAt), deliveryFeeService.quoteDeliveryFee("Tallinn", "bike", observedAt.plusHours(1)));
+        assertEquals(new FeeQuote(3.0, observedAt.plusHours(2)), deliveryFeeService.quoteDeliveryFee("TALLINN", "bike", observedAt.plusHours(4)));
+        WeatherDataUnavailableException e = assertThrows(WeatherDataUnavailableException.class,
+                () -> deliveryFeeService.calculateDeliveryFee("Tallinn", "bike", observedAt.plusHours(6)));
+        assertTrue(e.getMessage().contains("Tallinn-Harku"));
+        verify(weatherDataRepository).findObservationsAtOrBefore("Kunda", observedAt.plusHours(6), PageRequest.of(0, 1));
+        assertEquals(2, meterRegistry.get("delivery.fee.quotes").tags("city", "tallinn", "vehicle.type", "bike", "outcome", "ok").timer().count());
+    }
+
+    /**
+     * Verifies that the staleness bound does not reject backdated quotes in days the retention job has downsampled,
+     * where an observation many hours old is still the weather at the quoted time, but does within the full resolution window.
+     */
+    @Test
+    void whenQuotedRangeIsDownsampled_thenStalenessBoundDoesNotApply() {
+        weatherProperties.getLookup().setMaxStaleness(Duration.ofHours(3));
+        LocalDateTime downsampledDateTime = LocalDateTime.now().minusDays(100).withHour(20);
+        when(weatherDataRepository.findObservationsAtOrBefore("Tallinn-Harku", downsampledDateTime, PageRequest.of(0, 1)))
+                .thenReturn(observations(new WeatherData("Tallinn-Harku", -5.0, 5.0, "clear", downsampledDateTime.minusHours(14))));
+        LocalDateTime fullResolutionDateTime = LocalDateTime.now().minusDays(10).withHour(20);
+        when(weatherDataRepository.findObservationsAtOrBefore("Tallinn-Harku", fullResolutionDateTime, PageRequest.of(0, 1)))
+                .thenReturn(observations(new WeatherData("Tallinn-Harku", -5.0, 5.0, "clear", fullResolutionDateTime.minusHours(14))));
+
+        assertEquals(new FeeQuote(3.5, downsampledDateTime.minusHours(14)),
+                deliveryFeeService.quoteDeliveryFee("Tallinn", "bike", downsampledDateTime));
+        assertThrows(WeatherDataUnavailableException.class, () -> deliveryFeeService.calculateDeliveryFee("Tallinn", "bike", fullResolutionDateTime));
+    }
+
+    /**
+     * Verifies that a quote for a future time is priced with the latest weather while it is fresh, as staleness is
+     * measured now rather than at the quoted time.
+     */
+    @Test
+    void whenQuotedTimeIsInFuture_thenFreshWeatherIsUsed() {
+        weatherProperties.getLookup().setMaxStaleness(Duration.ofHours(3));
+        LocalDateTime observedAt = LocalDateTime.now().minusMinutes(30);
+        weatherSnapshotService.refresh(List.of(new WeatherData("Tallinn-Harku", -5.0, 5.0, "clear", observedAt)));
+
+        assertEquals(new FeeQuote(3.5, observedAt), deliveryFeeService.quoteDeliveryFee("Tallinn", "bike", LocalDateTime.now().plusDays(1)));
+
+        weatherProperties.getLookup().setMaxStaleness(Duration.ofMinutes(10));
+        assertThrows(WeatherDataUnavailableException.class,
+                () -> deliveryFeeService.quoteDeliveryFee("Tallinn", "bike", LocalDateTime.now().plusDays(1)));
+    }
+
+    /**
+     * Verifies that a quote by coordinates takes the base fee from the city of the nearest registry station, the
+     * weather from the nearest station or interpolated from the nearest stations, and that locations without a
+     * supported city nearby or with invalid coordinates are rejected.
+     */
+    @Test
+    void testQuoteByCoordinates() {
+        weatherSnapshotService.refresh(List.of(
+                positioned(new WeatherData("Tallinn-Harku", 2.0, 5.0, "clear", TEST_DATE_TIME), 59.0, 24.0),
+                positioned(new WeatherData("Tallinn-Pirita", -28.0, 5.0, "clear", TEST_DATE_TIME.plusMinutes(10)), 59.0, 24.2),
+                positioned(new WeatherData("Kunda", -28.0, 5.0, "clear", TEST_DATE_TIME), 58.0, 24.0)));
+
+        assertEquals(new FeeQuote(3.0, TEST_DATE_TIME), deliveryFeeService.quoteDeliveryFeeNear(59.0, 24.05, "bike", null, 1));
+        // Weighted 9:1 by the inverse squared distances, which gives about -1.0 degrees
+        assertEquals(new FeeQuote(3.5, TEST_DATE_TIME), deliveryFeeService.quoteDeliveryFeeNear(59.0, 24.05, "bike", null, 2));
+        // The nearest station belongs to no city, so only its weather is used
+        assertEquals(new FeeQuote(4.0, TEST_DATE_TIME.plusMinutes(10)), deliveryFeeService.quoteDeliveryFeeNear(59.0, 24.19, "bike", null, 1));
+        assertThrows(UnsupportedCityException.class, () -> deliveryFeeService.quoteDeliveryFeeNear(0.0, 0.0, "bike", null, 1));
+        assertThrows(IllegalArgumentException.class, () -> deliveryFeeService.quoteDeliveryFeeNear(91.0, 24.0, "bike", null, 1));
+        assertThrows(IllegalArgumentException.class, () -> deliveryFeeService.quoteDeliveryFeeNear(59.0, 24.0, "bike", null, 0));
+        assertEquals(3, meterRegistry.get("delivery.fee.quotes").tags("city", "tallinn", "vehicle.type", "bike", "outcome", "ok").timer().count());
+    }
+
+    /**
+     * Verifies that a backdated quote by coordinates queries the database for at most two stations more than
+     * requested, even if more candidates have neither snapshot nor history data for the quoted time.
+     */
+    @Test
+    void whenNearbyStationsHaveNoWeather_thenDatabaseLookupsAreBounded() {
+        List<WeatherData> stations = new ArrayList<>();
+        stations.add(positioned(new WeatherData("Tallinn-Harku", 2.0, 5.0, "clear", TEST_DATE_TIME), 59.0, 24.0));
+        for (int i = 1; i <= 6; i++) {
+            stations.add(positioned(new WeatherData("Station " + i, 2.0, 5.0, "clear", TEST_DATE_TIME), 59.0, 24.0 + i * 0.01));
+        }
+        weatherSnapshotService.refresh(stations);
+        when(weatherDataRepository.findObservationsAtOrBefore(anyString(), any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(Collections.emptyList());
+
+        assertThrows(WeatherDataUnavailableException.class,
+                () -> deliveryFeeService.quoteDeliveryFeeNear(59.0, 24.0, "bike", TEST_DATE_TIME.minusDays(1), 1));
+
+        verify(weatherDataRepository, times(3)).findObservationsAtOrBefore(anyString(), any(LocalDateTime.class), any(Pageable.class));
+    }
+
+    private static WeatherData positioned(WeatherData weatherData, double latitude, double longitude) {
+        weatherData.setLatitude(latitude);
+        weatherData.setLongitude(longitude);
+        return weatherData;
+    }
+
+    /**
+     * Verifies that weather lookups refused by the bulkhead fail only the requests that need them, each
+     * distinct lookup once, and that requests priced from the snapshot still succeed.
+     */
+    @Test
+    void whenDatabaseIsBusy_thenBatchReportsServiceBusyPerRequest() {
+        weatherSnapshotService.refresh(List.of(new WeatherData("Tartu-Tõravere", 5.0, 5.0, "clear", TEST_DATE_TIME)));
+        doThrow(new ServiceBusyException("Too many concurrent weather lookups")).when(weatherLookupBulkhead).execute(any());
+
+        List<DeliveryFeeResult> results = deliveryFeeService.calculateDeliveryFees(List.of(
+                deliveryFeeRequest("Tallinn", "car"),
+                deliveryFeeRequest("Tartu", "car"),
+                deliveryFeeRequest("Tallinn", "scooter")));
+
+        assertEquals(DeliveryFeeErrorCode.SERVICE_BUSY, results.get(0).getErrorCode());
+        assertEquals(3.5, results.get(1).getFee());
+        assertEquals(DeliveryFeeErrorCode.SERVICE_BUSY, results.get(2).getErrorCode());
+        verify(weatherLookupBulkhead, times(1)).execute(any());
+        assertEquals(2, meterRegistry.get("delivery.fee.quotes").tags("outcome", "service_busy").timers().stream().mapToLong(Timer::count).sum());
+    }
+
+    /**
+     * Verifies that a batch reports per-request fees and error codes without failing as a whole,
+     * and that the weather data of each distinct station and datetime is looked up only once.
+     */
+    @Test
+    void testBatchCalculation() {
+        when(weatherDataRepository.findObservationsAtOrBefore("Tallinn-Harku", TEST_DATE_TIME, PageRequest.of(0, 1)))
+                .thenReturn(observations(new WeatherData("Tallinn-Harku", 5.0, 25.0, "clear", TEST_DATE_TIME)));
+
+        List<DeliveryFeeResult> results = deliveryFeeService.calculateDeliveryFees(List.of(
+                deliveryFeeRequest("Tallinn", "car"),
+                deliveryFeeRequest("Tallinn", "bike"),
+                deliveryFeeRequest("UnknownCity", "car"),
+                deliveryFeeRequest("Tallinn", "tank"),
+                deliveryFeeRequest(null, "car")));
+
+        assertEquals(4.0, results.get(0).getFee());
+        assertEquals(DeliveryFeeErrorCode.VEHICLE_USE_FORBIDDEN, results.get(1).getErrorCode());
+        assertEquals(DeliveryFeeErrorCode.UNSUPPORTED_CITY, results.get(2).getErrorCode());
+        assertEquals(DeliveryFeeErrorCode.UNSUPPORTED_VEHICLE_TYPE, results.get(3).getErrorCode());
+        assertEquals(DeliveryFeeErrorCode.INVALID_REQUEST, results.get(4).getErrorCode());
+        verify(weatherDataRepository, times(1)).findObservationsAtOrBefore(anyString(), any(LocalDateTime.class), any(Pageable.class));
+    }
+
+    private DeliveryFeeRequest deliveryFeeRequest(String city, String vehicleType) {
+        DeliveryFeeRequest request = new DeliveryFeeRequest();
+        request.setCity(city);
+        request.setVehicleType(vehicleType);
+        request.setDateTime(TEST_DATE_TIME);
+        return request;
+    }
+
     // Can add a lot more both unit and integration tests...
     // for example test different weather conditions together, database, boundary values, XML parsing etc.
 }
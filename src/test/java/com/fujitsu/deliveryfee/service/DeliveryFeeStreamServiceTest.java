@@ -0,0 +1,78 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fujitsu.deliveryfee.dto.DeliveryFeeErrorCode;
+import com.fujitsu.deliveryfee.dto.DeliveryFeeRequest;
+import com.fujitsu.deliveryfee.dto.DeliveryFeeResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+
+/**
+ * Unit tests for the {@link DeliveryFeeStreamService} class.
+ *
+ * These tests ensure that NDJSON requests are answered line by line in the order of the requests,
+ * and that malformed lines are reported without interrupting the stream.
+ */
+@ExtendWith(MockitoExtension.class)
+class DeliveryFeeStreamServiceTest {
+
+    @Mock
+    private DeliveryFeeService deliveryFeeService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private DeliveryFeeStreamService deliveryFeeStreamService;
+
+    @BeforeEach
+    void setUp() {
+        deliveryFeeStreamService = new DeliveryFeeStreamService(deliveryFeeService, objectMapper);
+    }
+
+
+    /**
+     * Verifies that every non-blank line produces exactly one result line in the same order,
+     * and that malformed lines produce an INVALID_REQUEST result.
+     */
+    @Test
+    void testStreamingPreservesOrderAndReportsMalformedLines() throws IOException {
+        when(deliveryFeeService.calculateDeliveryFees(anyList())).thenAnswer(invocation -> {
+            List<DeliveryFeeRequest> requests = invocation.getArgument(0);
+            return requests.stream()
+                    .map(request -> request == null
+                            ? DeliveryFeeResult.failure(DeliveryFeeErrorCode.INVALID_REQUEST, "City and vehicle type are required")
+                            : DeliveryFeeResult.success(request.getCity().length()))
+                    .toList();
+        });
+        String input = """
+                {"city":"Tartu","vehicleType":"bike","dateTime":"2024-03-28T12:00:00"}
+
+                not json
+                {"city":"Tallinn","vehicleType":"car"}
+                """;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        DeliveryFeeStreamService.DeliveryFeeStreamSummary summary = deliveryFeeStreamService.streamDeliveryFees(
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), output);
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        assertEquals(5.0, objectMapper.readTree(lines[0]).get("fee").asDouble());
+        assertTrue(lines[1].contains("INVALID_REQUEST"));
+        assertEquals(7.0, objectMapper.readTree(lines[2]).get("fee").asDouble());
+        assertEquals(3, summary.processed());
+        assertEquals(1, summary.failed());
+    }
+}
@@ -0,0 +1,88 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.config.WeatherProperties;
+import com.fujitsu.deliveryfee.repository.BaseFeeRuleRepository;
+import com.fujitsu.deliveryfee.repository.CityRepository;
+import com.fujitsu.deliveryfee.repository.ExtraFeeRuleRepository;
+import com.fujitsu.deliveryfee.repository.LeaderLeaseRepository;
+import com.fujitsu.deliveryfee.repository.VehicleTypeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+
+/**
+ * Unit tests for the {@link FeeRuleEngine} class in cluster mode.
+ *
+ * These tests ensure that a reload publishes a new rules version for the other nodes, and that
+ * a node recompiles its rules only for shared versions it has not compiled yet.
+ */
+@ExtendWith(MockitoExtension.class)
+class FeeRuleEngineTest {
+
+    @Mock
+    private BaseFeeRuleRepository baseFeeRuleRepository;
+
+    @Mock
+    private ExtraFeeRuleRepository extraFeeRuleRepository;
+
+    @Mock
+    private CityRepository cityRepository;
+
+    @Mock
+    private VehicleTypeRepository vehicleTypeRepository;
+
+    @Mock
+    private LeaderLeaseRepository leaderLeaseRepository;
+
+    private FeeRuleEngine feeRuleEngine;
+
+    @BeforeEach
+    void setUp() {
+        WeatherProperties weatherProperties = new WeatherProperties();
+        weatherProperties.getCluster().setEnabled(true);
+        feeRuleEngine = new FeeRuleEngine(baseFeeRuleRepository, extraFeeRuleRepository, cityRepository, vehicleTypeRepository,
+                leaderLeaseRepository, weatherProperties);
+    }
+
+
+    /**
+     * Verifies that a starting node adopts the shared version without incrementing it, and then
+     * recompiles only when another node has published a newer version.
+     */
+    @Test
+    void whenSharedVersionChanges_thenRulesAreRecompiled() {
+        when(leaderLeaseRepository.findRulesVersion(WeatherClusterService.LEASE_NAME)).thenReturn(3L);
+        feeRuleEngine.initialize();
+        CompiledFeeRules initialRules = feeRuleEngine.getRules();
+
+        feeRuleEngine.synchronize(3);
+        assertSame(initialRules, feeRuleEngine.getRules());
+
+        feeRuleEngine.synchronize(4);
+        assertEquals(initialRules.getVersion() + 1, feeRuleEngine.getRules().getVersion());
+        verify(leaderLeaseRepository, never()).incrementRulesVersion(anyString());
+    }
+
+
+    /**
+     * Verifies that a reload publishes a new shared version, which the node itself then does not recompile again.
+     */
+    @Test
+    void whenRulesAreReloaded_thenNewVersionIsPublished() {
+        when(leaderLeaseRepository.findRulesVersion(WeatherClusterService.LEASE_NAME)).thenReturn(3L, 4L);
+        feeRuleEngine.initialize();
+
+        feeRuleEngine.reload();
+        CompiledFeeRules reloadedRules = feeRuleEngine.getRules();
+        feeRuleEngine.synchronize(4);
+
+        verify(leaderLeaseRepository).incrementRulesVersion(WeatherClusterService.LEASE_NAME);
+        assertSame(reloadedRules, feeRuleEngine.getRules());
+    }
+}
@@ -0,0 +1,55 @@
+package com.fujitsu.deliveryfee.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Unit tests for the {@link QuoteCachePolicy} class.
+ *
+ * These tests ensure that quote responses are cacheable until the next scheduled weather import,
+ * and must be revalidated if imports are not scheduled.
+ */
+class QuoteCachePolicyTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2024-03-28T12:05:30Z"), ZoneOffset.UTC);
+
+
+    /**
+     * Verifies that the max age ends at the next import of the cron schedule.
+     */
+    @Test
+    void whenImportsAreScheduled_thenMaxAgeEndsAtNextImport() {
+        QuoteCachePolicy quoteCachePolicy = new QuoteCachePolicy("0 15 * * * *", CLOCK);
+        assertEquals(Duration.ofMinutes(9).plusSeconds(30), quoteCachePolicy.getMaxAge());
+        assertEquals("max-age=570, public", quoteCachePolicy.getCacheControl().getHeaderValue());
+    }
+
+
+    /**
+     * Verifies that the max age ends at the earliest next import of the feed and provider schedules,
+     * and that disabled schedules are ignored.
+     */
+    @Test
+    void whenProvidersHaveOwnSchedules_thenMaxAgeEndsAtEarliestImport() {
+        QuoteCachePolicy quoteCachePolicy = new QuoteCachePolicy(List.of("0 15 * * * *", "0 */10 * * * *", "-"), CLOCK);
+        assertEquals(Duration.ofMinutes(4).plusSeconds(30), quoteCachePolicy.getMaxAge());
+    }
+
+
+    /**
+     * Verifies that responses have to be revalidated if the scheduled import is disabled.
+     */
+    @Test
+    void whenImportsAreDisabled_thenMaxAgeIsZero() {
+        QuoteCachePolicy quoteCachePolicy = new QuoteCachePolicy("-", CLOCK);
+        assertEquals(Duration.ZERO, quoteCachePolicy.getMaxAge());
+    }
+}
@@ -0,0 +1,95 @@
+package com.fujitsu.deliveryfee.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Tests for {@link StationIndex}.
+ *
+ * Verifies the nearest stations found by the k-d tree against a search of every station,
+ * and the handling of the maximum distance, the station count and invalid coordinates.
+ */
+class StationIndexTest {
+
+    private static final Map<String, StationIndex.Position> ESTONIA = Map.of(
+            "Tallinn-Harku", new StationIndex.Position(59.398, 24.603),
+            "Tartu-Tõravere", new StationIndex.Position(58.264, 26.466),
+            "Pärnu", new StationIndex.Position(58.419, 24.470));
+
+
+    /**
+     * Verifies that the nearest stations are returned nearest first with their great-circle distances,
+     * and that stations beyond the maximum distance are left out.
+     */
+    @Test
+    void testFindNearest() {
+        StationIndex index = StationIndex.build(ESTONIA);
+
+        List<StationIndex.Neighbor> neighbors = index.findNearest(59.437, 24.7536, 3, 500);
+        assertEquals(List.of("Tallinn-Harku", "Pärnu", "Tartu-Tõravere"), neighbors.stream().map(StationIndex.Neighbor::stationName).toList());
+        assertEquals(9.6, neighbors.get(0).distanceKm(), 0.1);
+        assertEquals(List.of("Tallinn-Harku"), index.findNearest(59.437, 24.7536, 3, 50).stream().map(StationIndex.Neighbor::stationName).toList());
+        assertEquals(1, index.findNearest(58.4, 25.0, 1, 500).size());
+        assertTrue(index.findNearest(0.0, 0.0, 3, 50).isEmpty());
+        assertTrue(StationIndex.EMPTY.findNearest(59.437, 24.7536, 3, 50).isEmpty());
+    }
+
+
+    /**
+     * Verifies that the index finds the same nearest stations as a search of every station,
+     * for random stations and locations around the globe.
+     */
+    @Test
+    void whenStationsAreRandom_thenNearestMatchSearchOfEveryStation() {
+        Random random = new Random(42);
+        Map<String, StationIndex.Position> positions = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            positions.put("Station-" + i, new StationIndex.Position(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180));
+        }
+        StationIndex index = StationIndex.build(positions);
+        assertEquals(2000, index.size());
+
+        for (int i = 0; i < 200; i++) {
+            double latitude = random.nextDouble() * 180 - 90;
+            double longitude = random.nextDouble() * 360 - 180;
+            List<String> expected = positions.entrySet().stream()
+                    .sorted(Comparator.comparingDouble(entry -> distanceKm(latitude, longitude, entry.getValue())))
+                    .limit(5)
+                    .map(Map.Entry::getKey)
+                    .toList();
+            List<StationIndex.Neighbor> neighbors = index.findNearest(latitude, longitude, 5, 20_000);
+            assertEquals(expected, neighbors.stream().map(StationIndex.Neighbor::stationName).toList());
+            assertEquals(distanceKm(latitude, longitude, positions.get(expected.get(0))), neighbors.get(0).distanceKm(), 1e-6);
+        }
+    }
+
+
+    /**
+     * Verifies that coordinates out of range are rejected.
+     */
+    @Test
+    void whenCoordinatesAreInvalid_thenIllegalArgumentExceptionIsThrown() {
+        StationIndex index = StationIndex.build(ESTONIA);
+
+        assertThrows(IllegalArgumentException.class, () -> index.findNearest(90.1, 24.0, 1, 50));
+        assertThrows(IllegalArgumentException.class, () -> index.findNearest(59.0, -180.1, 1, 50));
+        assertThrows(IllegalArgumentException.class, () -> index.findNearest(Double.NaN, 24.0, 1, 50));
+    }
+
+    // Haversine distance, computed independently of the index
+    private static double distanceKm(double latitude, double longitude, StationIndex.Position position) {
+        double dLatitude = Math.toRadians(position.latitude() - latitude);
+        double dLongitude = Math.toRadians(position.longitude() - longitude);
+        double a = Math.pow(Math.sin(dLatitude / 2), 2)
+                + Math.cos(Math.toRadians(latitude)) * Math.cos(Math.toRadians(position.latitude())) * Math.pow(Math.sin(dLongitude / 2), 2);
+        return 2 * StationIndex.EARTH_RADIUS_KM * Math.asin(Math.sqrt(a));
+    }
+}
@@ -0,0 +1,123 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.config.WeatherProperties;
+import com.fujitsu.deliveryfee.model.WeatherData;
+import com.fujitsu.deliveryfee.repository.LeaderLeaseRepository;
+import com.fujitsu.deliveryfee.repository.WeatherDataRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+
+/**
+ * Unit tests for the {@link WeatherClusterService} class.
+ *
+ * These tests ensure that the leader lease is acquired for the configured duration, that other nodes adopt
+ * the snapshot version published by the leader and the fee rules changed on any node, and that a single
+ * instance is always its own leader.
+ */
+@ExtendWith(MockitoExtension.class)
+class WeatherClusterServiceTest {
+
+    @Mock
+    private LeaderLeaseRepository leaderLeaseRepository;
+
+    @Mock
+    private WeatherDataRepository weatherDataRepository;
+
+    @Mock
+    private WeatherHistoryService weatherHistoryService;
+
+    @Mock
+    private FeeRuleEngine feeRuleEngine;
+
+    private final WeatherProperties weatherProperties = new WeatherProperties();
+    private final WeatherSnapshotService weatherSnapshotService = new WeatherSnapshotService();
+
+    private static final Instant NOW = Instant.parse("2024-03-28T12:00:00Z");
+
+    private WeatherClusterService weatherClusterService;
+
+    @BeforeEach
+    void setUp() {
+        weatherProperties.getCluster().setEnabled(true);
+        weatherProperties.getCluster().setNodeId("node-1");
+        weatherClusterService = new WeatherClusterService(leaderLeaseRepository, weatherDataRepository, weatherProperties,
+                weatherSnapshotService, weatherHistoryService, feeRuleEngine, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+
+    /**
+     * Verifies that the lease is requested for this node until the lease duration has passed,
+     * and that the node is only the leader if the conditional update succeeded.
+     */
+    @Test
+    void testTryAcquireLeadership() {
+        Instant expiresAt = NOW.plus(Duration.ofMinutes(5));
+        when(leaderLeaseRepository.acquire(WeatherClusterService.LEASE_NAME, "node-1", NOW, expiresAt)).thenReturn(1, 0);
+        assertTrue(weatherClusterService.tryAcquireLeadership());
+        assertFalse(weatherClusterService.tryAcquireLeadership());
+    }
+
+
+    /**
+     * Verifies that a snapshot version published by the leader is adopted together with the newest
+     * stored observations, and that an unchanged version does not query the weather data.
+     */
+    @Test
+    void whenLeaderPublishedNewVersion_thenSnapshotIsSynchronized() {
+        LocalDateTime observedAt = LocalDateTime.of(2024, 3, 28, 11, 45);
+        when(leaderLeaseRepository.findSnapshotVersion(WeatherClusterService.LEASE_NAME)).thenReturn(42L);
+        when(weatherDataRepository.findLatestForEachStation())
+                .thenReturn(List.of(new WeatherData("Tallinn-Harku", -5.0, 5.0, "Clear", observedAt)));
+
+        weatherClusterService.synchronizeSnapshot();
+        weatherClusterService.synchronizeSnapshot();
+
+        assertEquals(42, weatherSnapshotService.getSnapshot().getVersion());
+        assertEquals(observedAt, weatherSnapshotService.getSnapshot().getLatest("Tallinn-Harku").timestamp());
+        verify(weatherDataRepository, times(1)).findLatestForEachStation();
+        verify(weatherHistoryService, times(1)).synchronize();
+    }
+
+
+    /**
+     * Verifies that the fee rules version published in the lease is passed on to the fee rule engine,
+     * which recompiles if it has not compiled that version yet.
+     */
+    @Test
+    void whenRulesVersionIsPublished_thenFeeRulesAreSynchronized() {
+        when(leaderLeaseRepository.findRulesVersion(WeatherClusterService.LEASE_NAME)).thenReturn(7L);
+        when(leaderLeaseRepository.findSnapshotVersion(WeatherClusterService.LEASE_NAME)).thenReturn(0L);
+
+        weatherClusterService.synchronizeSnapshot();
+
+        verify(feeRuleEngine).synchronize(7L);
+        verifyNoInteractions(weatherDataRepository);
+    }
+
+
+    /**
+     * Verifies that without the cluster mode the node is always the leader and never touches the lease.
+     */
+    @Test
+    void whenClusterIsDisabled_thenNodeIsAlwaysLeader() {
+        weatherProperties.getCluster().setEnabled(false);
+        assertTrue(weatherClusterService.tryAcquireLeadership());
+        assertEquals(1, weatherClusterService.publishImport());
+        weatherClusterService.synchronizeSnapshot();
+        verifyNoInteractions(leaderLeaseRepository, weatherDataRepository, feeRuleEngine);
+    }
+}
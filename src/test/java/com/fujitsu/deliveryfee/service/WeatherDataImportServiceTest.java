@@ -1,21 +1,53 @@
 package com.fujitsu.deliveryfee.service;
 
+import com.fujitsu.deliveryfee.config.WeatherProperties;
 import com.fujitsu.deliveryfee.exception.WeatherDataProcessingException;
+import com.fujitsu.deliveryfee.integration.Observations;
+import com.fujitsu.deliveryfee.integration.StationData;
+import com.fujitsu.deliveryfee.integration.WeatherProvider;
+import com.fujitsu.deliveryfee.model.WeatherData;
+import com.fujitsu.deliveryfee.repository.WeatherDataRepository;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.ResponseExtractor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
 import static org.mockito.Mockito.*;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
 
 
 /**
  * Unit tests for the {@link WeatherDataImportService} class.
  *
  * These tests ensure that the service responsible for importing weather data behaves correctly under various scenarios,
- * including error handling when dealing with malformed XML data.
+ * including error handling when dealing with malformed XML data and skipping feeds that have already been imported.
  */
 @ExtendWith(MockitoExtension.class)
 public class WeatherDataImportServiceTest {
@@ -23,9 +55,111 @@ public class WeatherDataImportServiceTest {
     @Mock
     private RestTemplate restTemplate;
 
-    @InjectMocks
+    @Mock
+    private WeatherDataRepository weatherDataRepository;
+
+    @Mock
+    private WeatherProperties weatherProperties;
+
+    @Spy
+    private WeatherSnapshotService weatherSnapshotService = new WeatherSnapshotService();
+
+    @Mock
+    private WeatherHistoryService weatherHistoryService;
+
+    @Mock
+    private DeliveryFeeMetrics deliveryFeeMetrics;
+
+    @Mock
+    private WeatherClusterService weatherClusterService;
+
+    @Spy
+    private WeatherFeedCircuitBreaker weatherFeedCircuitBreaker = new WeatherFeedCircuitBreaker(2, Duration.ofMinutes(10), Clock.systemUTC());
+
+    @Mock
+    private FeeRuleEngine feeRuleEngine;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
     private WeatherDataImportService weatherDataImportService;
 
+    private static final String FEED = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <observations timestamp="1711615085">
+                <station>
+                    <name>Kuressaare linn</name>
+                    <wmocode></wmocode>
+                    <airtemperature>4.1</airtemperature>
+                </station>
+                <station>
+                    <name>Tallinn-Harku</name>
+                    <wmocode>26038</wmocode>
+                    <longitude>24.602891666624284</longitude>
+                    <phenomenon>Light snow shower</phenomenon>
+                    <airtemperature>-2.5</airtemperature>
+                    <windspeed>4.7</windspeed>
+                </station>
+                <station>
+                    <name>Pärnu</name>
+                    <wmocode>41803</wmocode>
+                    <phenomenon></phenomenon>
+                    <airtemperature></airtemperature>
+                    <windspeed>3.2</windspeed>
+                </station>
+            </observations>
+            """;
+
+    private static final LocalDateTime FEED_OBSERVED_AT = LocalDateTime.ofInstant(Instant.ofEpochSecond(1711615085), ZoneId.systemDefault());
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(weatherProperties.getStations()).thenReturn(List.of("Tallinn-Harku", "Pärnu"));
+        lenient().when(weatherProperties.getFeed()).thenReturn(new WeatherProperties.Feed());
+        lenient().when(weatherClusterService.tryAcquireLeadership()).thenReturn(true);
+        lenient().when(weatherClusterService.publishImport()).thenReturn(7L);
+        lenient().when(feeRuleEngine.getRules()).thenReturn(CompiledFeeRules.EMPTY);
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        weatherDataImportService = importService(new EstonianWeatherProvider(restTemplate, weatherProperties, deliveryFeeMetrics));
+    }
+
+    private WeatherDataImportService importService(WeatherProvider... providers) {
+        return new WeatherDataImportService(new WeatherProviders(List.of(providers), weatherProperties, restTemplate, deliveryFeeMetrics),
+                weatherDataRepository, weatherProperties, weatherSnapshotService, weatherHistoryService, deliveryFeeMetrics,
+                weatherClusterService, weatherFeedCircuitBreaker, feeRuleEngine, taskScheduler, transactionTemplate);
+    }
+
+    // A provider answering with the given observations after the given delay
+    private WeatherProvider provider(String name, Duration timeout, long delayMillis, Observations observations) {
+        WeatherProvider provider = mock(WeatherProvider.class);
+        lenient().when(provider.getName()).thenReturn(name);
+        lenient().when(provider.getTimeout()).thenReturn(timeout);
+        lenient().when(provider.fetch(anySet())).thenAnswer(invocation -> {
+            Thread.sleep(delayMillis);
+            return observations;
+        });
+        return provider;
+    }
+
+    private static StationData station(String name, double airTemperature, LocalDateTime observedAt) {
+        StationData station = new StationData();
+        station.setName(name);
+        station.setAirTemperature(airTemperature);
+        station.setWindSpeed(5.0);
+        station.setObservedAt(observedAt);
+        return station;
+    }
+
+    // Makes the mocked RestTemplate hand a response with the given status and XML to the response extractor of the service
+    private void mockFeed(HttpStatus status, String xml) {
+        when(restTemplate.execute(anyString(), eq(HttpMethod.GET), any(), any(ResponseExtractor.class)))
+                .thenAnswer(invocation -> invocation.<ResponseExtractor<?>>getArgument(3)
+                        .extractData(new MockClientHttpResponse(xml.getBytes(StandardCharsets.UTF_8), status)));
+    }
+
 
     /**
      * Tests the behavior of the {@link WeatherDataImportService#fetchAndSaveWeatherData} method
@@ -38,9 +172,331 @@ public class WeatherDataImportServiceTest {
      */
     @Test
     void whenXmlDataIsMalformed_thenThrowWeatherDataProcessingException() {
-        when(restTemplate.getForObject(anyString(), eq(String.class))).thenReturn("malformed xml");
+        mockFeed(HttpStatus.OK, "malformed xml");
         assertThrows(WeatherDataProcessingException.class, () -> weatherDataImportService.fetchAndSaveWeatherData(),
                 "Malformed XML data should throw a WeatherDataProcessingException.");
     }
 
+
+    /**
+     * Verifies that a failed import on startup is logged instead of failing the application startup.
+     */
+    @Test
+    void whenImportOnStartupFails_thenNoExceptionIsThrown() {
+        mockFeed(HttpStatus.OK, "malformed xml");
+        assertDoesNotThrow(() -> weatherDataImportService.importOnStartup());
+        verify(weatherDataRepository, never()).saveAll(anyList());
+    }
+
+
+    /**
+     * Verifies that connection failures are retried up to the maximum number of attempts, and that the
+     * circuit breaker stops contacting the feed once the failure threshold is reached.
+     */
+    @Test
+    void whenFeedIsUnreachable_thenRequestsAreRetriedAndCircuitOpens() {
+        WeatherProperties.Feed feed = new WeatherProperties.Feed();
+        feed.setRetryBackoff(Duration.ofMillis(1));
+        when(weatherProperties.getFeed()).thenReturn(feed);
+        when(restTemplate.execute(anyString(), eq(HttpMethod.GET), any(), any(ResponseExtractor.class)))
+                .thenThrow(new ResourceAccessException("Connection refused"));
+
+        assertThrows(ResourceAccessException.class, () -> weatherDataImportService.fetchAndSaveWeatherData());
+        assertThrows(ResourceAccessException.class, () -> weatherDataImportService.fetchAndSaveWeatherData());
+        assertDoesNotThrow(() -> weatherDataImportService.fetchAndSaveWeatherData());
+
+        verify(restTemplate, times(2 * feed.getMaxAttempts())).execute(anyString(), eq(HttpMethod.GET), any(), any(ResponseExtractor.class));
+        verify(deliveryFeeMetrics).recordImport(any(), eq("circuit_open"));
+        verify(weatherDataRepository, never()).saveAll(anyList());
+    }
+
+
+    /**
+     * Verifies that only the configured stations are read from the feed and saved together in one call,
+     * including stations that report empty values.
+     */
+    @Test
+    void whenFeedContainsUnconfiguredStations_thenOnlyConfiguredStationsAreSaved() {
+        mockFeed(HttpStatus.OK, FEED);
+        when(weatherDataRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        weatherDataImportService.fetchAndSaveWeatherData();
+
+        ArgumentCaptor<List<WeatherData>> saved = ArgumentCaptor.forClass(List.class);
+        verify(weatherDataRepository, times(1)).saveAll(saved.capture());
+        assertEquals(2, saved.getValue().size());
+        WeatherData tallinn = saved.getValue().get(0);
+        assertEquals("Tallinn-Harku", tallinn.getStationName());
+        assertEquals("26038", tallinn.getWmoCode());
+        assertEquals(-2.5, tallinn.getAirTemperature());
+        assertEquals(4.7, tallinn.getWindSpeed());
+        assertEquals("Light snow shower", tallinn.getWeatherPhenomenon());
+        assertEquals(FEED_OBSERVED_AT, tallinn.getTimestamp());
+        WeatherData parnu = saved.getValue().get(1);
+        assertEquals(FEED_OBSERVED_AT, parnu.getTimestamp());
+        assertEquals("Pärnu", parnu.getStationName());
+        assertNull(parnu.getAirTemperature());
+        assertNotNull(weatherSnapshotService.getSnapshot().getLatest("Pärnu"));
+        assertEquals(7, weatherSnapshotService.getSnapshot().getVersion());
+        verify(weatherHistoryService).record(saved.getValue());
+        verify(deliveryFeeMetrics).recordImportedStations(2, 2);
+        verify(deliveryFeeMetrics).recordImport(any(), eq("imported"));
+    }
+
+
+    /**
+     * Verifies that gzip compression is requested, and that a compressed feed is decompressed while it is
+     * parsed, with the compressed size recorded as the transferred bytes.
+     */
+    @Test
+    void whenFeedIsCompressed_thenItIsDecompressed() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(FEED.getBytes(StandardCharsets.UTF_8));
+        }
+        MockClientHttpRequest request = new MockClientHttpRequest();
+        when(restTemplate.execute(anyString(), eq(HttpMethod.GET), any(), any(ResponseExtractor.class)))
+                .thenAnswer(invocation -> {
+                    invocation.<RequestCallback>getArgument(2).doWithRequest(request);
+                    MockClientHttpResponse response = new MockClientHttpResponse(compressed.toByteArray(), HttpStatus.OK);
+                    response.getHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+                    return invocation.<ResponseExtractor<?>>getArgument(3).extractData(response);
+                });
+        when(weatherDataRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        weatherDataImportService.fetchAndSaveWeatherData();
+
+        assertEquals("gzip, deflate", request.getHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING));
+        verify(deliveryFeeMetrics).recordImportedStations(2, 2);
+        verify(deliveryFeeMetrics).recordFeedBytes(EstonianWeatherProvider.NAME, compressed.size());
+        verify(deliveryFeeMetrics).recordFeedTimeToFirstByte(eq(EstonianWeatherProvider.NAME), any(Duration.class));
+    }
+
+
+    /**
+     * Verifies that a feed whose observation time has already been imported is not saved again,
+     * and that a feed reported as not modified is not read at all.
+     */
+    @Test
+    void whenFeedIsUnchanged_thenImportIsSkipped() {
+        mockFeed(HttpStatus.OK, FEED);
+        when(weatherDataRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        weatherDataImportService.fetchAndSaveWeatherData();
+        weatherDataImportService.fetchAndSaveWeatherData();
+        verify(weatherDataRepository, times(1)).saveAll(anyList());
+
+        reset(restTemplate);
+        mockFeed(HttpStatus.NOT_MODIFIED, "");
+        weatherDataImportService.fetchAndSaveWeatherData();
+        verify(weatherDataRepository, times(1)).saveAll(anyList());
+    }
+
+
+    /**
+     * Verifies that once the stations to import change, e.g. by a city added to the registry, a feed whose observation
+     * time has already been imported is read again, so the new station is imported without waiting for the next feed.
+     */
+    @Test
+    void whenImportedStationsChange_thenImportedFeedIsReadAgain() {
+        mockFeed(HttpStatus.OK, FEED);
+        when(weatherDataRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        weatherDataImportService.fetchAndSaveWeatherData();
+
+        when(weatherProperties.getStations()).thenReturn(List.of("Tallinn-Harku", "Pärnu", "Kuressaare linn"));
+        when(weatherDataRepository.findStationNamesWithTimestamp(anySet(), eq(FEED_OBSERVED_AT))).thenReturn(List.of("Tallinn-Harku", "Pärnu"));
+        weatherDataImportService.fetchAndSaveWeatherData();
+        weatherDataImportService.fetchAndSaveWeatherData();
+
+        ArgumentCaptor<List<WeatherData>> saved = ArgumentCaptor.forClass(List.class);
+        verify(weatherDataRepository, times(2)).saveAll(saved.capture());
+        assertEquals(1, saved.getAllValues().get(1).size());
+        assertEquals("Kuressaare linn", saved.getAllValues().get(1).get(0).getStationName());
+    }
+
+
+    /**
+     * Verifies that a node which does not hold the leader lease does not fetch the feed.
+     */
+    @Test
+    void whenNodeIsNotLeader_thenFeedIsNotFetched() {
+        when(weatherClusterService.tryAcquireLeadership()).thenReturn(false);
+        weatherDataImportService.fetchAndSaveWeatherData();
+        verifyNoInteractions(restTemplate, weatherDataRepository);
+        verify(weatherClusterService, never()).publishImport();
+    }
+
+
+    /**
+     * Verifies that stations which already have weather data for the observation time of the feed,
+     * e.g. from an import before a restart, are not stored twice.
+     */
+    @Test
+    void whenStationAlreadyHasObservation_thenItIsNotSavedAgain() {
+        mockFeed(HttpStatus.OK, FEED);
+        when(weatherDataRepository.findStationNamesWithTimestamp(anySet(), eq(FEED_OBSERVED_AT))).thenReturn(List.of("Tallinn-Harku"));
+        when(weatherDataRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        weatherDataImportService.fetchAndSaveWeatherData();
+
+        ArgumentCaptor<List<WeatherData>> saved = ArgumentCaptor.forClass(List.class);
+        verify(weatherDataRepository).saveAll(saved.capture());
+        assertEquals(1, saved.getValue().size());
+        assertEquals("Pärnu", saved.getValue().get(0).getStationName());
+    }
+
+
+    /**
+     * Verifies that the providers are fetched in parallel, and that conflicting observations of a station are resolved
+     * in favour of the newest observation, or of the provider listed first if they were observed at the same time.
+     */
+    @Test
+    void whenProvidersReportSameStation_thenNewestObservationWins() {
+        WeatherProvider first = provider("first", Duration.ofSeconds(5), 500, new Observations(FEED_OBSERVED_AT,
+                List.of(station("Tallinn-Harku", -1.0, null), station("Pärnu", 1.0, null))));
+        WeatherProvider second = provider("second", Duration.ofSeconds(5), 500, new Observations(FEED_OBSERVED_AT,
+                List.of(station("Tallinn-Harku", -9.0, FEED_OBSERVED_AT.plusMinutes(10)), station("Pärnu", 9.0, null))));
+        when(weatherDataRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        long start = System.nanoTime();
+        importService(first, second).fetchAndSaveWeatherData();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis < 900, "Providers should be fetched in parallel, took " + elapsedMillis + " ms");
+        ArgumentCaptor<List<WeatherData>> saved = ArgumentCaptor.forClass(List.class);
+        verify(weatherDataRepository).saveAll(saved.capture());
+        assertEquals(2, saved.getValue().size());
+        assertEquals(-9.0, saved.getValue().get(0).getAirTemperature());
+        assertEquals(FEED_OBSERVED_AT.plusMinutes(10), saved.getValue().get(0).getTimestamp());
+        assertEquals(1.0, saved.getValue().get(1).getAirTemperature());
+        verify(first).acknowledge();
+        verify(second).acknowledge();
+        verify(deliveryFeeMetrics).recordImportedStations(4, 2);
+    }
+
+
+    /**
+     * Verifies that a provider exceeding its timeout fails without holding up the import,
+     * while the observations of the other providers are still saved.
+     */
+    @Test
+    void whenProviderTimesOut_thenOtherProvidersAreStillImported() {
+        WeatherProvider fast = provider("fast", Duration.ofSeconds(5), 0, new Observations(FEED_OBSERVED_AT, List.of(station("Pärnu", 1.0, null))));
+        WeatherProvider slow = provider("slow", Duration.ofMillis(100), 5000, new Observations(FEED_OBSERVED_AT, List.of()));
+        when(weatherDataRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        long start = System.nanoTime();
+        assertThrows(ResourceAccessException.class, () -> importService(fast, slow).fetchAndSaveWeatherData());
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis < 2000, "The import should not wait for the slow provider, took " + elapsedMillis + " ms");
+        verify(weatherDataRepository).saveAll(anyList());
+        verify(fast).acknowledge();
+        verify(slow, never()).acknowledge();
+        verify(deliveryFeeMetrics).recordProviderFailure("slow");
+        verify(deliveryFeeMetrics).recordImport(any(), eq("partial"));
+    }
+
+
+    /**
+     * Verifies that a provider with its own schedule is imported by itself on a trigger of that schedule,
+     * and not on the schedule of {@code weather.feed.cron}.
+     */
+    @Test
+    void whenProviderHasOwnSchedule_thenItIsImportedOnItsOwnTrigger() {
+        WeatherProvider hourly = provider("hourly", Duration.ofSeconds(5), 0, new Observations(FEED_OBSERVED_AT, List.of(station("Pärnu", 1.0, null))));
+        WeatherProvider frequent = provider("frequent", Duration.ofSeconds(5), 0,
+                new Observations(FEED_OBSERVED_AT.plusMinutes(5), List.of(station("Pärnu", 2.0, null))));
+        when(frequent.getCron()).thenReturn("0 */5 * * * *");
+        when(weatherDataRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        WeatherDataImportService importService = importService(hourly, frequent);
+
+        importService.scheduleProviders();
+        importService.fetchAndSaveWeatherData();
+
+        verify(hourly).fetch(anySet());
+        verify(frequent, never()).fetch(anySet());
+        ArgumentCaptor<Runnable> trigger = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler).schedule(trigger.capture(), eq(new CronTrigger("0 */5 * * * *")));
+
+        trigger.getValue().run();
+
+        verify(hourly, times(1)).fetch(anySet());
+        verify(frequent).fetch(anySet());
+        verify(weatherDataRepository, times(2)).saveAll(anyList());
+    }
+
+
+    /**
+     * Verifies that the observations are saved and their snapshot version published in one transaction, and that
+     * neither the in-memory data nor the provider see the observations if publishing the version fails.
+     */
+    @Test
+    void whenPublishingImportFails_thenSnapshotIsNotRefreshedAndProviderNotAcknowledged() {
+        WeatherProvider provider = provider("provider", Duration.ofSeconds(5), 0, new Observations(FEED_OBSERVED_AT, List.of(station("Pärnu", 1.0, null))));
+        when(weatherDataRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(weatherClusterService.publishImport()).thenThrow(new IllegalStateException("Lease update failed"));
+
+        assertThrows(IllegalStateException.class, () -> importService(provider).fetchAndSaveWeatherData());
+
+        verify(transactionTemplate).execute(any());
+        assertNull(weatherSnapshotService.getSnapshot().getLatest("Pärnu"));
+        verify(weatherHistoryService, never()).record(anyList());
+        verify(provider, never()).acknowledge();
+    }
+
+
+    /**
+     * Verifies that observations without an observation time are skipped, rather than stored again with the time
+     * of every import.
+     */
+    @Test
+    void whenObservationHasNoTimestamp_thenItIsSkipped() {
+        WeatherProvider provider = provider("untimed", Duration.ofSeconds(5), 0,
+                new Observations(null, List.of(station("Tallinn-Harku", -1.0, null), station("Pärnu", 1.0, FEED_OBSERVED_AT))));
+        when(weatherDataRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        importService(provider).fetchAndSaveWeatherData();
+
+        ArgumentCaptor<List<WeatherData>> saved = ArgumentCaptor.forClass(List.class);
+        verify(weatherDataRepository).saveAll(saved.capture());
+        assertEquals(1, saved.getValue().size());
+        assertEquals("Pärnu", saved.getValue().get(0).getStationName());
+    }
+
+
+    /**
+     * Verifies that a JSON provider reads the configured stations with their own observation times,
+     * falling back to the observation time of the feed.
+     */
+    @Test
+    void whenJsonFeedIsFetched_thenConfiguredStationsAreSaved() {
+        WeatherProperties.Provider settings = new WeatherProperties.Provider();
+        settings.setName("json");
+        settings.setUrl("https://example.com/observations.json");
+        mockFeed(HttpStatus.OK, """
+                {"timestamp": 1711615085, "source": {"name": "example"}, "stations": [
+                    {"name": "Riga", "airtemperature": 3.0},
+                    {"name": "Tallinn-Harku", "wmocode": "26038", "timestamp": 1711615685, "airtemperature": -2.5,
+                     "windspeed": 4.7, "phenomenon": "Light snow shower"},
+                    {"name": "Pärnu", "airtemperature": null, "windspeed": 3.2}
+                ]}
+                """);
+        when(weatherDataRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        importService(new JsonWeatherProvider(settings, restTemplate, deliveryFeeMetrics)).fetchAndSaveWeatherData();
+
+        ArgumentCaptor<List<WeatherData>> saved = ArgumentCaptor.forClass(List.class);
+        verify(weatherDataRepository).saveAll(saved.capture());
+        assertEquals(2, saved.getValue().size());
+        WeatherData tallinn = saved.getValue().get(0);
+        assertEquals("Tallinn-Harku", tallinn.getStationName());
+        assertEquals(-2.5, tallinn.getAirTemperature());
+        assertEquals("Light snow shower", tallinn.getWeatherPhenomenon());
+        assertEquals(FEED_OBSERVED_AT.plusMinutes(10), tallinn.getTimestamp());
+        WeatherData parnu = saved.getValue().get(1);
+        assertNull(parnu.getAirTemperature());
+        assertEquals(3.2, parnu.getWindSpeed());
+        assertEquals(FEED_OBSERVED_AT, parnu.getTimestamp());
+    }
+
 }
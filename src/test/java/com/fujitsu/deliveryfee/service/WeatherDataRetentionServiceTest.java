@@ -0,0 +1,162 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.config.WeatherProperties;
+import com.fujitsu.deliveryfee.model.ArchivedPartition;
+import com.fujitsu.deliveryfee.model.WeatherData;
+import com.fujitsu.deliveryfee.repository.ArchivedPartitionRepository;
+import com.fujitsu.deliveryfee.repository.WeatherDataRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+
+/**
+ * Unit tests for the {@link WeatherDataRetentionService} class.
+ *
+ * These tests ensure that old weather data is archived in full before it is downsampled, that only
+ * observations which do not change any fee are deleted, and that partitions recorded as processed in the
+ * database are not processed again, while an archive file alone does not mark a partition as processed.
+ */
+@ExtendWith(MockitoExtension.class)
+class WeatherDataRetentionServiceTest {
+
+    @Mock
+    private WeatherDataRepository weatherDataRepository;
+
+    @Mock
+    private ArchivedPartitionRepository archivedPartitionRepository;
+
+    @Spy
+    private WeatherProperties weatherProperties = new WeatherProperties();
+
+    @Mock
+    private FeeRuleEngine feeRuleEngine;
+
+    @Mock
+    private WeatherClusterService weatherClusterService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private WeatherDataRetentionService weatherDataRetentionService;
+
+    @TempDir
+    private Path archiveDirectory;
+
+    private static final LocalDate OLD_DAY = LocalDate.now().minusDays(100);
+
+    @BeforeEach
+    void setUp() {
+        weatherProperties.getRetention().setArchiveDirectory(archiveDirectory.toString());
+        lenient().when(weatherClusterService.tryAcquireLeadership()).thenReturn(true);
+        lenient().when(feeRuleEngine.getRules())
+                .thenReturn(CompiledFeeRules.compile(1, DefaultFeeRules.baseFeeRules(), DefaultFeeRules.extraFeeRules()));
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+
+    /**
+     * Verifies that a partition outside the full resolution window is archived in full, and that an observation
+     * is deleted only if its weather fees equal those of the previous kept observation of the station.
+     */
+    @Test
+    void whenPartitionIsOutsideWindow_thenItIsArchivedAndDownsampled() throws IOException {
+        List<WeatherData> weatherData = List.of(
+                new WeatherData(1L, "Tallinn-Harku", "26038", -15.0, 5.0, "Clear", OLD_DAY.atTime(0, 15)),
+                new WeatherData(2L, "Tallinn-Harku", "26038", -14.0, 6.0, "Clear", OLD_DAY.atTime(1, 15)),
+                new WeatherData(3L, "Tallinn-Harku", "26038", -5.0, 6.0, "Clear", OLD_DAY.atTime(2, 15)),
+                new WeatherData(4L, "Tallinn-Harku", "26038", -5.0, 6.0, "Light rain", OLD_DAY.atTime(3, 15)));
+        when(weatherDataRepository.findOldestTimestamp()).thenReturn(OLD_DAY.atTime(0, 15));
+        when(weatherDataRepository.findAllObservedBetween(any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(List.of());
+        when(weatherDataRepository.findAllObservedBetween(OLD_DAY.atStartOfDay(), OLD_DAY.plusDays(1).atStartOfDay())).thenReturn(weatherData);
+
+        weatherDataRetentionService.pruneWeatherData();
+
+        verify(weatherDataRepository, times(1)).deleteAllByIdInBatch(List.of(2L));
+        ArgumentCaptor<ArchivedPartition> partitions = ArgumentCaptor.forClass(ArchivedPartition.class);
+        verify(archivedPartitionRepository, times(10)).save(partitions.capture());
+        ArchivedPartition oldPartition = partitions.getAllValues().get(0);
+        assertEquals(OLD_DAY, oldPartition.getPartitionDay());
+        assertEquals(4, oldPartition.getObservations());
+        assertEquals(1, oldPartition.getDeleted());
+        List<String> archived = readArchive(archiveDirectory.resolve("weather-data-" + OLD_DAY + ".csv.gz"));
+        assertEquals(5, archived.size());
+        assertEquals("2,\"Tallinn-Harku\",\"26038\",-14.0,6.0,\"Clear\"," + OLD_DAY.atTime(1, 15), archived.get(2));
+        assertTrue(Files.exists(archiveDirectory.resolve("weather-data-" + LocalDate.now().minusDays(91) + ".csv.gz")));
+        assertFalse(Files.exists(archiveDirectory.resolve("weather-data-" + LocalDate.now().minusDays(89) + ".csv.gz")));
+    }
+
+
+    /**
+     * Verifies that partitions recorded as processed are skipped.
+     */
+    @Test
+    void whenPartitionIsProcessed_thenItIsSkipped() {
+        LocalDate cutoffDate = LocalDate.now().minusDays(90);
+        when(weatherDataRepository.findOldestTimestamp()).thenReturn(cutoffDate.minusDays(1).atTime(12, 0));
+        when(archivedPartitionRepository.existsById(cutoffDate.minusDays(1))).thenReturn(true);
+
+        weatherDataRetentionService.pruneWeatherData();
+
+        verify(weatherDataRepository, never()).findAllObservedBetween(any(LocalDateTime.class), any(LocalDateTime.class));
+        verify(weatherDataRepository, never()).deleteAllByIdInBatch(any());
+        verify(archivedPartitionRepository, never()).save(any());
+    }
+
+
+    /**
+     * Verifies that a partition whose archive was written by a run that failed before its observations were deleted
+     * is archived again and downsampled, and that a failed delete does not record the partition as processed.
+     */
+    @Test
+    void whenPartitionWasArchivedButNotDownsampled_thenItIsProcessedAgain() throws IOException {
+        LocalDate day = LocalDate.now().minusDays(91);
+        List<WeatherData> weatherData = List.of(
+                new WeatherData(1L, "Tallinn-Harku", "26038", -15.0, 5.0, "Clear", day.atTime(0, 15)),
+                new WeatherData(2L, "Tallinn-Harku", "26038", -14.0, 6.0, "Clear", day.atTime(1, 15)));
+        when(weatherDataRepository.findOldestTimestamp()).thenReturn(day.atTime(0, 15));
+        when(weatherDataRepository.findAllObservedBetween(day.atStartOfDay(), day.plusDays(1).atStartOfDay())).thenReturn(weatherData);
+        Path archive = archiveDirectory.resolve("weather-data-" + day + ".csv.gz");
+        Files.createFile(archive);
+        doThrow(new IllegalStateException("Connection lost")).doNothing().when(weatherDataRepository).deleteAllByIdInBatch(List.of(2L));
+
+        assertThrows(IllegalStateException.class, () -> weatherDataRetentionService.pruneWeatherData());
+        verify(archivedPartitionRepository, never()).save(any());
+
+        weatherDataRetentionService.pruneWeatherData();
+
+        verify(weatherDataRepository, times(2)).deleteAllByIdInBatch(List.of(2L));
+        verify(archivedPartitionRepository).save(any(ArchivedPartition.class));
+        assertEquals(3, readArchive(archive).size());
+    }
+
+    private static List<String> readArchive(Path archive) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(archive)), StandardCharsets.UTF_8))) {
+            return reader.lines().toList();
+        }
+    }
+}
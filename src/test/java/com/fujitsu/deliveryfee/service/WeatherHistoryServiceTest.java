@@ -0,0 +1,89 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.config.WeatherProperties;
+import com.fujitsu.deliveryfee.model.City;
+import com.fujitsu.deliveryfee.model.WeatherData;
+import com.fujitsu.deliveryfee.model.WeatherObservation;
+import com.fujitsu.deliveryfee.repository.WeatherDataRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+
+/**
+ * Unit tests for the {@link WeatherHistoryService} class.
+ *
+ * These tests ensure that the in-memory history covers the stations of the city registry besides the configured
+ * stations, and that it follows the registry when the fee rules are recompiled.
+ */
+@ExtendWith(MockitoExtension.class)
+class WeatherHistoryServiceTest {
+
+    @Mock
+    private WeatherDataRepository weatherDataRepository;
+
+    @Mock
+    private FeeRuleEngine feeRuleEngine;
+
+    private final WeatherProperties weatherProperties = new WeatherProperties();
+
+    private WeatherHistoryService weatherHistoryService;
+
+    private static final LocalDateTime OBSERVED_AT = LocalDateTime.now().minusHours(1).truncatedTo(ChronoUnit.SECONDS);
+
+    @BeforeEach
+    void setUp() {
+        weatherProperties.setStations(List.of("Tallinn-Harku"));
+        weatherHistoryService = new WeatherHistoryService(weatherDataRepository, weatherProperties, feeRuleEngine);
+    }
+
+    private static CompiledFeeRules registry(City... cities) {
+        return CompiledFeeRules.compile(1, List.of(cities), DefaultFeeRules.vehicleTypes(), DefaultFeeRules.baseFeeRules(), DefaultFeeRules.extraFeeRules());
+    }
+
+    private static List<WeatherObservation> observations(String stationName) {
+        return List.of(WeatherObservation.of(new WeatherData(stationName, -5.0, 5.0, "clear", OBSERVED_AT)));
+    }
+
+
+    /**
+     * Verifies that the timelines of the fallback stations of the registry are loaded besides the configured stations,
+     * that a station added to the registry is loaded when the rules are recompiled, and that a removed station is dropped
+     * without reloading the other stations.
+     */
+    @Test
+    void whenRegistryChanges_thenHistoryFollowsItsStations() {
+        when(feeRuleEngine.getRules()).thenReturn(registry(new City("tallinn", "Tallinn-Harku", "Tallinn-Pirita")));
+        when(weatherDataRepository.findObservationsSince(eq("Tallinn-Harku"), any(LocalDateTime.class))).thenReturn(observations("Tallinn-Harku"));
+        when(weatherDataRepository.findObservationsSince(eq("Tallinn-Pirita"), any(LocalDateTime.class))).thenReturn(observations("Tallinn-Pirita"));
+        when(weatherDataRepository.findObservationsSince(eq("Narva"), any(LocalDateTime.class))).thenReturn(observations("Narva"));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Consumer<CompiledFeeRules>> listener = ArgumentCaptor.forClass(Consumer.class);
+        verify(feeRuleEngine).addListener(listener.capture());
+
+        weatherHistoryService.loadHistory();
+        assertNotNull(weatherHistoryService.findAtOrBefore("Tallinn-Harku", OBSERVED_AT));
+        assertNotNull(weatherHistoryService.findAtOrBefore("Tallinn-Pirita", OBSERVED_AT));
+        assertNull(weatherHistoryService.findAtOrBefore("Narva", OBSERVED_AT));
+
+        listener.getValue().accept(registry(new City("narva", "Narva", null)));
+
+        assertNotNull(weatherHistoryService.findAtOrBefore("Narva", OBSERVED_AT));
+        assertNull(weatherHistoryService.findAtOrBefore("Tallinn-Pirita", OBSERVED_AT));
+        assertNotNull(weatherHistoryService.findAtOrBefore("Tallinn-Harku", OBSERVED_AT));
+        verify(weatherDataRepository, times(1)).findObservationsSince(eq("Tallinn-Harku"), any(LocalDateTime.class));
+    }
+}
@@ -0,0 +1,43 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.exception.ServiceBusyException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Tests for {@link WeatherLookupBulkhead}.
+ *
+ * Verifies that lookups beyond the concurrency limit are rejected after the timeout
+ * and that permits are returned once a lookup has finished, even if it failed.
+ */
+class WeatherLookupBulkheadTest {
+
+    /**
+     * Verifies that a lookup is rejected while all permits are taken and that the permit is released afterwards.
+     */
+    @Test
+    void whenAllPermitsAreTaken_thenLookupIsRejected() {
+        WeatherLookupBulkhead bulkhead = new WeatherLookupBulkhead(1, Duration.ofMillis(10));
+        // The outer lookup holds the only permit while the inner one waits for it
+        assertThrows(ServiceBusyException.class, () -> bulkhead.execute(() -> bulkhead.execute(() -> "inner")));
+        assertEquals(1, bulkhead.getAvailablePermits());
+        assertEquals("lookup", bulkhead.execute(() -> "lookup"));
+    }
+
+
+    /**
+     * Verifies that a failing lookup releases its permit.
+     */
+    @Test
+    void whenLookupFails_thenPermitIsReleased() {
+        WeatherLookupBulkhead bulkhead = new WeatherLookupBulkhead(1, Duration.ofMillis(10));
+        assertThrows(IllegalStateException.class, () -> bulkhead.execute(() -> {
+            throw new IllegalStateException("Database unavailable");
+        }));
+        assertEquals(1, bulkhead.getAvailablePermits());
+    }
+}
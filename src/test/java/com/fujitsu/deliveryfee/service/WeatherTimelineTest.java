@@ -0,0 +1,91 @@
+package com.fujitsu.deliveryfee.service;
+
+import com.fujitsu.deliveryfee.model.WeatherObservation;
+import com.fujitsu.deliveryfee.model.WeatherPhenomenon;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Tests for {@link WeatherTimeline}.
+ *
+ * Verifies the lookup of the latest observation at or before a datetime, the handling of
+ * observations added out of order and the dropping of entries older than the retention cutoff.
+ */
+class WeatherTimelineTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 28, 0, 15);
+
+    private static WeatherObservation observation(double airTemperature, LocalDateTime timestamp) {
+        return new WeatherObservation(airTemperature, 5.0, WeatherPhenomenon.SNOW.getFlag(), timestamp);
+    }
+
+
+    /**
+     * Verifies that the latest observation at or before the requested time is found, and that times
+     * before the first entry are not answered.
+     */
+    @Test
+    void testFindAtOrBefore() {
+        WeatherTimeline timeline = WeatherTimeline.EMPTY.merge(List.of(
+                observation(1.0, START),
+                observation(2.0, START.plusHours(1)),
+                observation(3.0, START.plusHours(2))), START.minusDays(1));
+
+        assertEquals(3, timeline.size());
+        assertNull(timeline.findAtOrBefore(START.minusSeconds(1)));
+        assertEquals(observation(1.0, START), timeline.findAtOrBefore(START));
+        assertEquals(observation(1.0, START), timeline.findAtOrBefore(START.plusMinutes(59)));
+        assertEquals(observation(2.0, START.plusHours(1)), timeline.findAtOrBefore(START.plusHours(1)));
+        assertEquals(observation(3.0, START.plusHours(2)), timeline.findAtOrBefore(START.plusYears(1)));
+        assertNull(WeatherTimeline.EMPTY.findAtOrBefore(START));
+    }
+
+
+    /**
+     * Verifies that observations added out of order are sorted in and that missing values are kept as null.
+     */
+    @Test
+    void whenObservationsAreAddedOutOfOrder_thenTheyAreSortedIn() {
+        WeatherObservation missingValues = new WeatherObservation(null, null, null, START.plusMinutes(30));
+        WeatherTimeline timeline = WeatherTimeline.EMPTY
+                .merge(List.of(observation(1.0, START), observation(3.0, START.plusHours(1))), START)
+                .merge(List.of(missingValues), START);
+
+        assertEquals(3, timeline.size());
+        assertEquals(missingValues, timeline.findAtOrBefore(START.plusMinutes(45)));
+        assertEquals(observation(3.0, START.plusHours(1)), timeline.findAtOrBefore(START.plusHours(1)));
+    }
+
+
+    /**
+     * Verifies that sub-second timestamps are compared exactly, as the database would.
+     */
+    @Test
+    void whenTimestampHasFractionalSeconds_thenItIsComparedExactly() {
+        LocalDateTime timestamp = START.plusNanos(500_000_000);
+        WeatherTimeline timeline = WeatherTimeline.EMPTY.merge(List.of(observation(1.0, timestamp)), START);
+
+        assertNull(timeline.findAtOrBefore(START.plusNanos(200_000_000)));
+        assertEquals(observation(1.0, timestamp), timeline.findAtOrBefore(timestamp));
+    }
+
+
+    /**
+     * Verifies that entries older than the cutoff are dropped, so the timeline no longer answers for their times.
+     */
+    @Test
+    void whenEntriesAreOlderThanCutoff_thenTheyAreDropped() {
+        WeatherTimeline timeline = WeatherTimeline.EMPTY
+                .merge(List.of(observation(1.0, START), observation(2.0, START.plusHours(1))), START)
+                .merge(List.of(observation(3.0, START.plusHours(2)), observation(0.0, START.minusHours(1))), START.plusMinutes(30));
+
+        assertEquals(2, timeline.size());
+        assertNull(timeline.findAtOrBefore(START.plusMinutes(45)));
+        assertEquals(observation(2.0, START.plusHours(1)), timeline.findAtOrBefore(START.plusMinutes(90)));
+    }
+}